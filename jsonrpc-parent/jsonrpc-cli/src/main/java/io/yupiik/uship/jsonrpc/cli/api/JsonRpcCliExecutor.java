@@ -15,6 +15,7 @@
  */
 package io.yupiik.uship.jsonrpc.cli.api;
 
+import io.yupiik.uship.jsonrpc.cli.internal.CommandLineParser;
 import io.yupiik.uship.jsonrpc.cli.internal.HelpCommand;
 import io.yupiik.uship.jsonrpc.cli.internal.KeyValueToObjectMapper;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
@@ -34,6 +35,7 @@ import jakarta.json.JsonStructure;
 import jakarta.json.JsonValue;
 import jakarta.json.bind.Jsonb;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.ParameterizedType;
@@ -41,6 +43,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -48,13 +51,19 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -88,16 +97,16 @@ public class JsonRpcCliExecutor {
     @Inject
     private KeyValueToObjectMapper kvom;
 
+    private final Map<Registration.Parameter, BiConsumer<JsonObjectBuilder, Map<String, String>>> parameterBindings = new ConcurrentHashMap<>();
+
     public CompletionStage<?> execute(final String... args) {
         if (args.length == 0 || !registry.getHandlers().containsKey(args[0])) {
             stderr.println(helpCommand.help(HelpCommand.HelpFormat.TEXT, null));
             return completedFuture(null);
         }
         try {
-            final var registration = registry.getHandlers().get(args[0]).registration();
             final var options = Stream.of(args).skip(1).collect(toList());
-            return handler.execute(createCommandRequest(args[0], options, registration), null, null)
-                    .handle((r, e) -> onResponse(options, r, e));
+            return doExecute(args[0], options).handle((r, e) -> onResponse(options, r, e));
         } catch (final CliException re) {
             stderr.println(re.getMessage());
             return toFailure(re);
@@ -107,6 +116,69 @@ public class JsonRpcCliExecutor {
         }
     }
 
+    /**
+     * Executes a script, i.e. a stream of commands, one per line.
+     * A line can be either a command line (as passed to the CLI, quotes are supported),
+     * a JSON array of arguments or a JSON-RPC request object (NDJSON).
+     * Empty lines and lines starting with {@code #} are ignored.
+     * <p>
+     * Commands are executed on {@code executor} with at most {@code maxConcurrency} commands in flight - until their response
+     * is rendered - (reading the script blocks when this limit is reached) and responses are rendered in the script order.
+     * Note that it means commands must be independent when {@code maxConcurrency > 1}
+     * (a command reading the {@code --cli-response-dump} of a previous one must use {@code maxConcurrency = 1}).
+     *
+     * @param reader         the script.
+     * @param executor       the executor to run commands on.
+     * @param maxConcurrency the maximum number of commands executed concurrently.
+     * @return the exit status of each command (in script order), {@code 0} means success.
+     */
+    public CompletionStage<List<Integer>> executeScript(final BufferedReader reader, final Executor executor, final int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Invalid concurrency: " + maxConcurrency);
+        }
+
+        final var permits = new Semaphore(maxConcurrency);
+        final var statuses = new ArrayList<Integer>();
+        CompletionStage<List<Integer>> rendering = completedFuture(statuses);
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                final var command = line.strip();
+                if (command.isEmpty() || command.startsWith("#")) {
+                    continue;
+                }
+
+                permits.acquire();
+                final var currentLine = lineNumber;
+                final var options = new AtomicReference<List<String>>(List.of());
+                final var response = CompletableFuture
+                        .supplyAsync(() -> doExecute(command, options), executor)
+                        .thenCompose(identity());
+                rendering = rendering.thenCompose(result -> response.handle((r, e) -> {
+                    try {
+                        final int status = toStatus(options.get(), r, e);
+                        if (status != 0) {
+                            stderr.println("Command at line " + currentLine + " failed (status=" + status + "): " + command);
+                            stderr.flush();
+                        }
+                        result.add(status);
+                        return result;
+                    } finally { // release once rendered to keep commands ordered when maxConcurrency=1
+                        permits.release();
+                    }
+                }));
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return rendering;
+    }
+
     protected Object onResponse(final List<String> options, final Object response, final Throwable exception) {
         if (response instanceof Response) {
             final var jsonRpcResponse = (Response) response;
@@ -171,6 +243,43 @@ public class JsonRpcCliExecutor {
         return response;
     }
 
+    private CompletionStage<?> doExecute(final String command, final AtomicReference<List<String>> optionsRef) {
+        if (command.startsWith("{")) { // plain JSON-RPC request
+            final var request = jsonb.fromJson(command, JsonObject.class);
+            return handler.execute(request, null, null);
+        }
+
+        final List<String> args = command.startsWith("[") ?
+                jsonb.fromJson(command, JsonArray.class).stream()
+                        .map(it -> it.getValueType() == JsonValue.ValueType.STRING ? ((JsonString) it).getString() : it.toString())
+                        .collect(toList()) :
+                new ArrayList<>(CommandLineParser.parse(command));
+        if (args.isEmpty() || !registry.getHandlers().containsKey(args.get(0))) {
+            throw new CliException("Unknown command: " + command);
+        }
+        final var options = args.subList(1, args.size());
+        optionsRef.set(options);
+        return doExecute(args.get(0), options);
+    }
+
+    private CompletionStage<?> doExecute(final String command, final List<String> options) {
+        final var registration = registry.getHandlers().get(command).registration();
+        return handler.execute(createCommandRequest(command, options, registration), null, null);
+    }
+
+    private int toStatus(final List<String> options, final Object response, final Throwable error) {
+        try {
+            final var result = onResponse(options, response, error == null ? null : unwrap(error));
+            return result instanceof Response && ((Response) result).getError() != null ? 1 : 0;
+        } catch (final RuntimeException | Error re) {
+            return 1;
+        }
+    }
+
+    private Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     protected String interpolate(final String key) { // to enhance
         return key;
     }
@@ -267,67 +376,79 @@ public class JsonRpcCliExecutor {
                 .flatMap(this::handleGlobalArgs)
                 .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
 
-        registration.parameters().stream()
-                .filter(it -> indexedArgs.containsKey(it.name()) || indexedArgs.keySet().stream().anyMatch(p -> p.startsWith(it.name())))
-                .forEach(p -> {
-                    if (p.type() == String.class || (p.type() instanceof Class && ((Class<?>) p.type()).isEnum())) {
-                        builder.add(p.name(), indexedArgs.get(p.name()));
-                    } else if (p.type() == Integer.class || p.type() == int.class) {
-                        builder.add(p.name(), Integer.parseInt(indexedArgs.get(p.name())));
-                    } else if (p.type() == Long.class || p.type() == long.class) {
-                        builder.add(p.name(), Long.parseLong(indexedArgs.get(p.name())));
-                    } else if (p.type() == Double.class || p.type() == double.class) {
-                        builder.add(p.name(), Double.parseDouble(indexedArgs.get(p.name())));
-                    } else if (p.type() == Boolean.class || p.type() == boolean.class) {
-                        builder.add(p.name(), Boolean.parseBoolean(indexedArgs.get(p.name())));
-                    } else if (p.type() instanceof ParameterizedType) {
-                        final ParameterizedType pt = (ParameterizedType) p.type();
-                        if (pt.getRawType() instanceof Class) {
-                            final Class<?> rawClass = (Class<?>) pt.getRawType();
-                            if (Collection.class.isAssignableFrom(rawClass)) {
-                                final Map<String, String> values = new CliMap(filterMap(indexedArgs, p));
-                                if (values.isEmpty() && indexedArgs.containsKey(p.name())) {
-                                    builder.add(p.name(), jsonb.fromJson(indexedArgs.get(p.name()), JsonArray.class));
-                                } else {
-                                    final AtomicReference<Object> ref = new AtomicReference<>();
-                                    kvom.createBinder((i, v) -> ref.set(v), p.type(), p.name(), f -> false, f -> null)
-                                            .set(null, values);
-                                    if (ref.get() != null) {
-                                        builder.add(p.name(), jsonb.fromJson(jsonb.toJson(ref.get()), JsonArray.class));
-                                    }
-                                }
-                            } else if (Map.class.isAssignableFrom(rawClass)) {
-                                final Map<String, String> values = new CliMap(filterMap(indexedArgs, p));
-                                if (values.isEmpty() && indexedArgs.containsKey(p.name())) {
-                                    builder.add(p.name(), jsonb.fromJson(indexedArgs.get(p.name()), JsonObject.class));
-                                } else {
-                                    final AtomicReference<Object> ref = new AtomicReference<>();
-                                    kvom.createBinder((i, v) -> ref.set(v), p.type(), p.name(), f -> false, f -> null)
-                                            .set(null, values);
-                                    if (ref.get() != null) {
-                                        builder.add(p.name(), jsonb.fromJson(jsonb.toJson(ref.get()), JsonObject.class));
-                                    }
-                                }
-                            } else {
-                                throw new IllegalArgumentException("Unsupported command parameter: " + p.type());
-                            }
-                        } else {
-                            throw new IllegalArgumentException("Unsupported command parameter: " + p.type());
-                        }
-                    } else if (p.type() instanceof Class) { // assume object
-                        final var values = new CliMap(filterMap(indexedArgs, p).entrySet().stream()
-                                .collect(toMap(e -> e.getKey().substring(p.name().length() + 1), Map.Entry::getValue)));
-                        if (values.isEmpty() && indexedArgs.containsKey(p.name())) { // json param
-                            builder.add(p.name(), jsonb.fromJson(indexedArgs.get(p.name()), JsonObject.class));
-                        } else {
-                            final Object instance = kvom.getOrCreate((Class<?>) p.type()).bind(values);
-                            builder.add(p.name(), jsonb.fromJson(jsonb.toJson(instance), JsonObject.class));
-                        }
+        for (final var parameter : registration.parameters()) {
+            final var name = parameter.name();
+            if (indexedArgs.containsKey(name) || indexedArgs.keySet().stream().anyMatch(it -> it.startsWith(name))) {
+                parameterBindings.computeIfAbsent(parameter, this::createParameterBinding).accept(builder, indexedArgs);
+            }
+        }
+        return builder;
+    }
+
+    // resolves once the way to bind a parameter (type dispatch, KeyValueToObjectMapper binders) to not redo it per invocation
+    private BiConsumer<JsonObjectBuilder, Map<String, String>> createParameterBinding(final Registration.Parameter p) {
+        final var name = p.name();
+        final var type = p.type();
+        if (type == String.class || (type instanceof Class && ((Class<?>) type).isEnum())) {
+            return (builder, args) -> builder.add(name, args.get(name));
+        }
+        if (type == Integer.class || type == int.class) {
+            return (builder, args) -> builder.add(name, Integer.parseInt(args.get(name)));
+        }
+        if (type == Long.class || type == long.class) {
+            return (builder, args) -> builder.add(name, Long.parseLong(args.get(name)));
+        }
+        if (type == Double.class || type == double.class) {
+            return (builder, args) -> builder.add(name, Double.parseDouble(args.get(name)));
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return (builder, args) -> builder.add(name, Boolean.parseBoolean(args.get(name)));
+        }
+        if (type instanceof ParameterizedType) {
+            final ParameterizedType pt = (ParameterizedType) type;
+            if (pt.getRawType() instanceof Class) {
+                final Class<?> rawClass = (Class<?>) pt.getRawType();
+                final Class<? extends JsonValue> jsonType;
+                if (Collection.class.isAssignableFrom(rawClass)) {
+                    jsonType = JsonArray.class;
+                } else if (Map.class.isAssignableFrom(rawClass)) {
+                    jsonType = JsonObject.class;
+                } else {
+                    throw new IllegalArgumentException("Unsupported command parameter: " + type);
+                }
+                // instance is the holder of the value for this binder
+                final var binder = kvom.createBinder(
+                        (holder, value) -> AtomicReference.class.cast(holder).set(value), type, name, f -> false, f -> null);
+                return (builder, args) -> {
+                    final Map<String, String> values = new CliMap(filterMap(args, name));
+                    if (values.isEmpty() && args.containsKey(name)) {
+                        builder.add(name, jsonb.fromJson(args.get(name), jsonType));
                     } else {
-                        throw new IllegalArgumentException("Unsupported command parameter: " + p.type());
+                        final var ref = new AtomicReference<>();
+                        binder.set(ref, values);
+                        if (ref.get() != null) {
+                            builder.add(name, jsonb.fromJson(jsonb.toJson(ref.get()), jsonType));
+                        }
                     }
-                });
-        return builder;
+                };
+            }
+            throw new IllegalArgumentException("Unsupported command parameter: " + type);
+        }
+        if (type instanceof Class) { // assume object
+            final var bindable = kvom.getOrCreate((Class<?>) type);
+            final int prefixLength = name.length() + 1;
+            return (builder, args) -> {
+                final var values = new CliMap(filterMap(args, name).entrySet().stream()
+                        .collect(toMap(e -> e.getKey().substring(prefixLength), Map.Entry::getValue)));
+                if (values.isEmpty() && args.containsKey(name)) { // json param
+                    builder.add(name, jsonb.fromJson(args.get(name), JsonObject.class));
+                } else {
+                    final Object instance = bindable.bind(values);
+                    builder.add(name, jsonb.fromJson(jsonb.toJson(instance), JsonObject.class));
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unsupported command parameter: " + type);
     }
 
     private Stream<Map.Entry<String, String>> handleGlobalArgs(final Map.Entry<String, String> entry) {
@@ -352,9 +473,9 @@ public class JsonRpcCliExecutor {
         return value;
     }
 
-    private Map<String, String> filterMap(final Map<String, String> indexedArgs, final Registration.Parameter param) {
-        final var prefix1 = param.name() + '.';
-        final var prefix2 = param.name() + '-';
+    private Map<String, String> filterMap(final Map<String, String> indexedArgs, final String name) {
+        final var prefix1 = name + '.';
+        final var prefix2 = name + '-';
         return indexedArgs.entrySet().stream()
                 .filter(e -> e.getKey().startsWith(prefix1) || e.getKey().startsWith(prefix2))
                 .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
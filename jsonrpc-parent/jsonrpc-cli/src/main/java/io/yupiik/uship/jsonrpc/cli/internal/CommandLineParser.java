@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.cli.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+public final class CommandLineParser {
+    private CommandLineParser() {
+        // no-op
+    }
+
+    public static Collection<String> parse(final String raw) {
+        final Collection<String> result = new ArrayList<>();
+
+        Character end = null;
+        boolean escaped = false;
+        final StringBuilder current = new StringBuilder();
+        for (int i = 0; i < raw.length(); i++) {
+            final char c = raw.charAt(i);
+            if (escaped) {
+                escaped = false;
+                current.append(c);
+            } else if ((end != null && end == c) || (c == ' ' && end == null)) {
+                if (current.length() > 0) {
+                    result.add(current.toString());
+                    current.setLength(0);
+                }
+                end = null;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"' || c == '\'') {
+                end = c;
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            result.add(current.toString());
+        }
+
+        return result;
+    }
+}
@@ -17,6 +17,9 @@ package io.yupiik.uship.jsonrpc.cli.internal;
 
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
@@ -64,26 +67,55 @@ import static java.util.stream.Collectors.toSet;
  */
 @ApplicationScoped
 public class KeyValueToObjectMapper {
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     private final ConcurrentMap<Class<?>, ClassBinder<?>> classes = new ConcurrentHashMap<>();
 
+    // method handles are resolved once when the binder is created to avoid reflection at binding time
     private static BiConsumer<Object, Object> setWithField(final Field field) {
+        final MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (final IllegalAccessException iae) { // fallback on plain reflection
+            return (instance, value) -> {
+                try {
+                    field.set(instance, value);
+                } catch (final IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
         return (instance, value) -> {
             try {
-                field.set(instance, value);
-            } catch (final IllegalAccessException e) {
+                handle.invokeExact(instance, value);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
                 throw new IllegalStateException(e);
             }
         };
     }
 
     private static BiConsumer<Object, Object> setWithSetter(final Method method) {
+        final MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE);
+        } catch (final IllegalAccessException iae) { // fallback on plain reflection
+            return (instance, value) -> {
+                try {
+                    method.invoke(instance, value);
+                } catch (final IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                } catch (final InvocationTargetException e) {
+                    throw new IllegalStateException(e.getTargetException());
+                }
+            };
+        }
         return (instance, value) -> {
             try {
-                method.invoke(instance, value);
-            } catch (final IllegalAccessException e) {
+                handle.invokeExact(instance, value);
+            } catch (final Throwable e) { // same behavior than the reflection flavor
                 throw new IllegalStateException(e);
-            } catch (final InvocationTargetException e) {
-                throw new IllegalStateException(e.getTargetException());
             }
         };
     }
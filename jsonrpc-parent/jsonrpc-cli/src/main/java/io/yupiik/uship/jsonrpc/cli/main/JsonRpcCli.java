@@ -16,47 +16,85 @@
 package io.yupiik.uship.jsonrpc.cli.main;
 
 import io.yupiik.uship.jsonrpc.cli.api.JsonRpcCliExecutor;
+import io.yupiik.uship.jsonrpc.cli.internal.CommandLineParser;
 import jakarta.enterprise.inject.se.SeContainer;
 import jakarta.enterprise.inject.se.SeContainerInitializer;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
-
-import static java.util.concurrent.CompletableFuture.completedFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class JsonRpcCli {
     public static void main(final String... args) {
-        final var cli = new JsonRpcCli();
-        try (final SeContainer container = cli.createContainer()) {
-            final var commandHandler = cli.getCommandHandler(container);
-            if (args.length == 2 && ("-f".equalsIgnoreCase(args[0]) || "--file".equalsIgnoreCase(args[0]))) {
-                CompletionStage<?> global = completedFuture(null);
-                try (final BufferedReader reader = Files.newBufferedReader(Paths.get(args[1]))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        final String argLine = line.trim();
-                        if (line.isEmpty() || line.startsWith("#")) {
-                            continue;
-                        }
-                        global = global.thenCompose(i -> commandHandler.execute(parse(argLine).toArray(new String[0])));
-                    }
-                    global.toCompletableFuture().get(); // await
+        final int exitCode = new JsonRpcCli().run(args);
+        if (exitCode != 0) { // after the container is closed
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * @param args the command line.
+     * @return the exit code, {@code 0} on success.
+     */
+    public int run(final String... args) {
+        final boolean script = (args.length == 2 || args.length == 4) && ("-f".equalsIgnoreCase(args[0]) || "--file".equalsIgnoreCase(args[0]));
+        final int concurrency;
+        if (script && args.length == 4) {
+            concurrency = parseParallelism(args[2], args[3]);
+            if (concurrency <= 0) {
+                System.err.println("Invalid parallelism: '" + args[2] + " " + args[3] + "'. " +
+                        "Usage: -f|--file <file or - for stdin> [-p|--parallelism <positive integer>]");
+                return -1;
+            }
+        } else {
+            concurrency = 1;
+        }
+
+        try (final SeContainer container = createContainer()) {
+            final var commandHandler = getCommandHandler(container);
+            if (script) {
+                final var counter = new AtomicInteger();
+                final var executor = Executors.newFixedThreadPool(concurrency, r -> {
+                    final var thread = new Thread(r, JsonRpcCli.class.getName() + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                try (final BufferedReader reader = "-".equals(args[1]) ?
+                        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)) :
+                        Files.newBufferedReader(Paths.get(args[1]))) {
+                    final var statuses = commandHandler.executeScript(reader, executor, concurrency).toCompletableFuture().get();
+                    return statuses.stream().anyMatch(it -> it != 0) ? -1 : 0;
                 } catch (final IOException e) {
                     throw new IllegalArgumentException(e);
+                } finally {
+                    executor.shutdownNow();
                 }
-            } else {
-                commandHandler.execute(args).toCompletableFuture().get();
             }
+            commandHandler.execute(args).toCompletableFuture().get();
+            return 0;
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
+            return -1;
         } catch (final ExecutionException e) {
-            System.exit(-1);
+            return -1;
+        }
+    }
+
+    private static int parseParallelism(final String option, final String value) {
+        if (!"-p".equalsIgnoreCase(option) && !"--parallelism".equalsIgnoreCase(option)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (final NumberFormatException nfe) {
+            return -1;
         }
     }
 
@@ -83,34 +121,6 @@ public final class JsonRpcCli {
     }
 
     public static Collection<String> parse(final String raw) {
-        final Collection<String> result = new ArrayList<>();
-
-        Character end = null;
-        boolean escaped = false;
-        final StringBuilder current = new StringBuilder();
-        for (int i = 0; i < raw.length(); i++) {
-            final char c = raw.charAt(i);
-            if (escaped) {
-                escaped = false;
-                current.append(c);
-            } else if ((end != null && end == c) || (c == ' ' && end == null)) {
-                if (current.length() > 0) {
-                    result.add(current.toString());
-                    current.setLength(0);
-                }
-                end = null;
-            } else if (c == '\\') {
-                escaped = true;
-            } else if (c == '"' || c == '\'') {
-                end = c;
-            } else {
-                current.append(c);
-            }
-        }
-        if (current.length() > 0) {
-            result.add(current.toString());
-        }
-
-        return result;
+        return CommandLineParser.parse(raw);
     }
 }
@@ -17,16 +17,50 @@ package io.yupiik.uship.jsonrpc.cli.api;
 
 import io.yupiik.uship.jsonrpc.cli.test.CliSupport;
 import io.yupiik.uship.jsonrpc.cli.test.CliTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @CliSupport
 class JsonRpcCliExecutorTest {
+    @Inject
+    private JsonRpcCliExecutor executor;
+
+    @Test
+    void script(@StdOut final CliSupport.ResettableStream stdout,
+                @StdErr final CliSupport.ResettableStream stderr) throws ExecutionException, InterruptedException {
+        final var threads = Executors.newFixedThreadPool(2);
+        try {
+            final var statuses = executor.executeScript(new BufferedReader(new StringReader("" +
+                            "# comment\n" +
+                            "obj --name first\n" +
+                            "\n" +
+                            "[\"obj\", \"--name\", \"second\"]\n" +
+                            "{\"jsonrpc\":\"2.0\",\"method\":\"obj\",\"params\":{\"name\":\"third\"}}\n" +
+                            "sample-to-string --first\n")), threads, 2)
+                    .toCompletableFuture()
+                    .get();
+            assertEquals(List.of(0, 0, 0, 1), statuses);
+            assertEquals("\n  name: first\n\n  name: second\n\n  name: third\n", stdout.asString());
+            assertEquals("" +
+                    "Arguments parity should be pair (name + value): [--first]\n" +
+                    "Command at line 6 failed (status=1): sample-to-string --first\n", stderr.asString());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
     @CliTest(command = "foo", stderr = CliTest.IGNORE_STREAM)
     void unknownCommand(@StdErr final CliSupport.ResettableStream stderr) {
         assertHelp(stderr);
@@ -29,6 +29,8 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class KeyValueToObjectMapperTest {
     private final KeyValueToObjectMapper mapper = new KeyValueToObjectMapper();
@@ -204,6 +206,37 @@ class KeyValueToObjectMapperTest {
                 mapper.getOrCreate(Address.class).bind(singletonMap("value", "success")));
     }
 
+    @Test
+    void cachedBinding() {
+        final var binder = mapper.getOrCreate(Validated.class);
+        assertSame(binder, mapper.getOrCreate(Validated.class));
+
+        // binder is reused so field and setter handles must work for multiple instances
+        final var first = binder.bind(Map.of("name", "first", "count", "1"));
+        final var second = binder.bind(Map.of("name", "second", "count", "2"));
+        assertEquals("first", first.name);
+        assertEquals(1, first.total);
+        assertEquals("second", second.name);
+        assertEquals(2, second.total);
+
+        // setter exceptions are wrapped as with plain reflection
+        final var error = assertThrows(IllegalStateException.class, () -> binder.bind(Map.of("count", "-1")));
+        assertEquals(IllegalArgumentException.class, error.getCause().getClass());
+        assertEquals("count must be positive", error.getCause().getMessage());
+    }
+
+    public static class Validated {
+        private String name;
+        private int total; // no count field so setCount is a virtual field
+
+        public void setCount(final int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("count must be positive");
+            }
+            this.total = count;
+        }
+    }
+
     public static class People {
         private Map<String, Person> people;
 
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.cli.main;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonRpcCliTest {
+    @Test
+    void invalidParallelism() { // rejected before the container is started
+        assertEquals(-1, new JsonRpcCli().run("-f", "-", "-p", "abc"));
+        assertEquals(-1, new JsonRpcCli().run("-f", "-", "-p", "0"));
+        assertEquals(-1, new JsonRpcCli().run("-f", "-", "--unknown", "2"));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.core.impl;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Enforces request limits while the JSON is read (before the parser buffers it)
+ * using a minimal lexing (only strings and structures are tracked).
+ * The size is measured in UTF-8 bytes to match the {@code Content-Length} check whatever the decoded charset.
+ * A negative limit disables the related check.
+ */
+class LimitingJsonReader extends FilterReader {
+    private final long maxSize;
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final int maxBatchSize;
+
+    private long size;
+    private int depth;
+    private int stringLength;
+    private int batchSize;
+    private boolean inString;
+    private boolean escaped;
+    private boolean batch;
+
+    LimitingJsonReader(final Reader delegate, final long maxSize, final int maxDepth,
+                       final int maxStringLength, final int maxBatchSize) {
+        super(delegate);
+        this.maxSize = maxSize;
+        this.maxDepth = maxDepth;
+        this.maxStringLength = maxStringLength;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int c = super.read();
+        if (c >= 0) {
+            onChar((char) c);
+        }
+        return c;
+    }
+
+    @Override
+    public int read(final char[] buffer, final int offset, final int length) throws IOException {
+        final int read = super.read(buffer, offset, length);
+        for (int i = offset; i < offset + read; i++) {
+            onChar(buffer[i]);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        throw new IOException("skip() not supported");
+    }
+
+    private void onChar(final char c) throws LimitExceededException {
+        if (maxSize >= 0) {
+            // a surrogate pair is 4 bytes so each half counts for 2
+            size += c < 0x80 ? 1 : (c < 0x800 || Character.isSurrogate(c) ? 2 : 3);
+            if (size > maxSize) {
+                throw new LimitExceededException("Request too big, limit it to " + maxSize + " bytes max please.");
+            }
+        }
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                return;
+            }
+            if (maxStringLength >= 0 && ++stringLength > maxStringLength) {
+                throw new LimitExceededException("String too long, limit it to " + maxStringLength + " characters max please.");
+            }
+            return;
+        }
+        switch (c) {
+            case '"':
+                inString = true;
+                stringLength = 0;
+                break;
+            case '[':
+            case '{':
+                if (depth == 0) {
+                    batch = c == '[';
+                } else if (batch && depth == 1 && c == '{' && maxBatchSize >= 0 && ++batchSize > maxBatchSize) {
+                    throw new LimitExceededException("Too much request at once, limit it to " + maxBatchSize + " max please.");
+                }
+                depth++;
+                if (maxDepth >= 0 && depth > maxDepth) {
+                    throw new LimitExceededException("Request too deep, limit it to " + maxDepth + " levels max please.");
+                }
+                break;
+            case ']':
+            case '}':
+                depth--;
+                break;
+            default:
+        }
+    }
+
+    static class LimitExceededException extends IOException {
+        LimitExceededException(final String message) {
+            super(message);
+        }
+    }
+}
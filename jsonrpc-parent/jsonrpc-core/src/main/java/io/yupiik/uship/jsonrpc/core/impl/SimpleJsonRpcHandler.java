@@ -52,6 +52,12 @@ public class SimpleJsonRpcHandler {
     private SimpleJsonRpcMethodRegistry registry;
     private Object2JsonSerializer toJsonValue;
 
+    // negative values disable the related limit
+    private long maxRequestSize = 10 * 1024 * 1024;
+    private int maxRequestDepth = 64;
+    private int maxStringLength = -1;
+    private int maxBulkRequests = 50;
+
     protected void setJsonb(final Jsonb jsonb) {
         this.jsonb = jsonb;
         this.toJsonValue = new Object2JsonSerializer(jsonb);
@@ -61,13 +67,43 @@ public class SimpleJsonRpcHandler {
         this.registry = registry;
     }
 
+    public void setMaxRequestSize(final long maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    public void setMaxRequestDepth(final int maxRequestDepth) {
+        this.maxRequestDepth = maxRequestDepth;
+    }
+
+    public void setMaxStringLength(final int maxStringLength) {
+        this.maxStringLength = maxStringLength;
+    }
+
+    public void setMaxBulkRequests(final int maxBulkRequests) {
+        this.maxBulkRequests = maxBulkRequests;
+    }
+
     public JsonStructure readRequest(final HttpServletRequest request, final Reader reader) throws IOException {
+        final long maxRequestSize = getMaxRequestSize();
+        if (maxRequestSize >= 0 && request != null && request.getContentLengthLong() > maxRequestSize) { // don't even read it
+            reader.close();
+            throw new JsonRpcException(10_100, "Request too big, limit it to " + maxRequestSize + " bytes max please.");
+        }
         return readRequest(reader);
     }
 
     public JsonStructure readRequest(final Reader reader) throws IOException {
-        try (final var in = reader) {
+        try (final var in = new LimitingJsonReader(reader, getMaxRequestSize(), getMaxRequestDepth(), getMaxStringLength(), getMaxBulkRequests())) {
             return jsonb.fromJson(in, JsonStructure.class);
+        } catch (final RuntimeException re) { // parser wraps the reader exception
+            var cause = re.getCause();
+            while (cause != null && cause != cause.getCause()) {
+                if (LimitingJsonReader.LimitExceededException.class.isInstance(cause)) {
+                    throw new JsonRpcException(10_100, cause.getMessage());
+                }
+                cause = cause.getCause();
+            }
+            throw re;
         }
     }
 
@@ -180,7 +216,7 @@ public class SimpleJsonRpcHandler {
                 return handleRequest(request.asJsonObject(), httpRequest, httpResponse);
             case ARRAY: // batch
                 final var requests = request.asJsonArray();
-                if (requests.size() > getMaxBulkRequests()) {
+                if (getMaxBulkRequests() >= 0 && requests.size() > getMaxBulkRequests()) {
                     return completedFuture(toErrorResponse(null, new JsonRpcException(
                             10_100, "Too much request at once, limit it to " + getMaxBulkRequests() + " max please.", null), request));
                 }
@@ -200,6 +236,18 @@ public class SimpleJsonRpcHandler {
     }
 
     protected int getMaxBulkRequests() {
-        return 50;
+        return maxBulkRequests;
+    }
+
+    protected long getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    protected int getMaxRequestDepth() {
+        return maxRequestDepth;
+    }
+
+    protected int getMaxStringLength() {
+        return maxStringLength;
     }
 }
@@ -140,15 +140,20 @@ public class SimpleJsonRpcMethodRegistry {
                         }));
         final String jsonRpcMethod = registration.jsonRpcMethod();
         final JsonRpcMethodRegistration existing = handlers.get(jsonRpcMethod);
-        if (existing != null && (existing.registration == null || existing.registration.method() == null || registration.method() == null)) {
-            throw new IllegalArgumentException("Ambiguous method: '" + jsonRpcMethod + "'");
-        } else if (existing != null && existing.registration.method() != registration.method() &&
-                registration.method().getDeclaringClass().isAssignableFrom(existing.registration.method().getDeclaringClass())) {
-            return () -> { // we ignore this registration then
-            };
+        if (existing != null) {
+            // build time registrations (quarkus) have no method so rely on the bean class there
+            final Class<?> existingOwner = existing.registration == null ? null : findOwner(existing.registration);
+            final Class<?> owner = findOwner(registration);
+            if (existingOwner == null || owner == null) {
+                throw new IllegalArgumentException("Ambiguous method: '" + jsonRpcMethod + "'");
+            }
+            if (existing.registration.method() != registration.method() && owner.isAssignableFrom(existingOwner)) {
+                return () -> { // we ignore this registration then
+                };
+            }
         }
         logger.info(() -> "Registering '" + registration.jsonRpcMethod() + "'" + ofNullable(registration.clazz())
-                .map(c -> (" (" + c.getName() + "." + registration.method().getName() + ')'))
+                .map(c -> (" (" + c.getName() + (registration.method() != null ? "." + registration.method().getName() : "") + ')'))
                 .orElse("") +
                 (existing != null ? " (override)" : ""));
         final JsonRpcMethodRegistration jsonRpcMethodRegistration = new JsonRpcMethodRegistration(registration, handler);
@@ -196,6 +201,10 @@ public class SimpleJsonRpcMethodRegistry {
                         .collect(toList()), config.documentation()));
     }
 
+    private Class<?> findOwner(final Registration registration) {
+        return registration.method() != null ? registration.method().getDeclaringClass() : registration.clazz();
+    }
+
     private Class<?> extractClass(final Object bean) {
         Class<?> c = bean == null ? Object.class : bean.getClass();
         while (c != null && (c.getName().contains("$$") || c.getName().contains("_"))) {
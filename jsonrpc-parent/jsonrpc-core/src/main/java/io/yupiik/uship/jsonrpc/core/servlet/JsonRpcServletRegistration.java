@@ -21,6 +21,7 @@ import jakarta.servlet.ServletContainerInitializer;
 import jakarta.servlet.ServletContext;
 
 import java.util.Set;
+import java.util.stream.Stream;
 
 @Dependent
 public class JsonRpcServletRegistration implements ServletContainerInitializer {
@@ -33,5 +34,11 @@ public class JsonRpcServletRegistration implements ServletContainerInitializer {
         jsonrpc.setLoadOnStartup(1);
         jsonrpc.setAsyncSupported(true);
         jsonrpc.addMapping("/jsonrpc");
+        Stream.of("maxRequestSize", "maxRequestDepth", "maxStringLength", "maxBulkRequests").forEach(name -> { // request limits can be set on the context
+            final var value = servletContext.getInitParameter("jsonrpc." + name);
+            if (value != null) {
+                jsonrpc.setInitParameter(name, value);
+            }
+        });
     }
 }
@@ -21,6 +21,7 @@ import jakarta.json.JsonException;
 import jakarta.json.JsonStructure;
 import jakarta.json.bind.Jsonb;
 import jakarta.json.bind.JsonbException;
+import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -49,11 +50,37 @@ public class SimpleJsonRpcServlet extends HttpServlet {
         this.jsonb = jsonb;
     }
 
+    @Override
+    public void init() throws ServletException {
+        if (handler == null || getServletConfig() == null) { // bridged servlets (spring) are not initialized with a config
+            return;
+        }
+        final var maxRequestSize = getInitParameter("maxRequestSize");
+        if (maxRequestSize != null) {
+            handler.setMaxRequestSize(Long.parseLong(maxRequestSize.strip()));
+        }
+        final var maxRequestDepth = getInitParameter("maxRequestDepth");
+        if (maxRequestDepth != null) {
+            handler.setMaxRequestDepth(Integer.parseInt(maxRequestDepth.strip()));
+        }
+        final var maxStringLength = getInitParameter("maxStringLength");
+        if (maxStringLength != null) {
+            handler.setMaxStringLength(Integer.parseInt(maxStringLength.strip()));
+        }
+        final var maxBulkRequests = getInitParameter("maxBulkRequests");
+        if (maxBulkRequests != null) {
+            handler.setMaxBulkRequests(Integer.parseInt(maxBulkRequests.strip()));
+        }
+    }
+
     @Override
     protected void service(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
         final JsonStructure request;
         try {
             request = handler.readRequest(req, req.getReader());
+        } catch (final JsonRpcException limitEx) { // request limits
+            forwardResponse(handler.createResponse(null, limitEx.getCode(), limitEx.getMessage()), resp);
+            return;
         } catch (final JsonbException | JsonException jsonbEx) {
             forwardResponse(handler.createResponse(null, -32700, jsonbEx.getMessage()), resp);
             return;
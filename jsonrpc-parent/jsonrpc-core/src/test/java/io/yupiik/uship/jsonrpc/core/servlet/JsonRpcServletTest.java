@@ -20,17 +20,28 @@ import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcError;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
+import io.yupiik.uship.jsonrpc.core.impl.JsonRpcMethodRegistry;
+import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcHandler;
 import io.yupiik.uship.jsonrpc.core.protocol.JsonRpcException;
 import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.openwebbeans.junit5.Cdi;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.stream.IntStream;
 
+import static java.util.Collections.enumeration;
+import static java.util.stream.Collectors.joining;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @Cdi(classes = JsonRpcServletTest.Endpoints.class)
@@ -38,6 +49,12 @@ class JsonRpcServletTest {
     @Inject
     private JsonRpcServlet handler;
 
+    @Inject
+    private JsonRpcMethodRegistry registry;
+
+    @Inject
+    private Jsonb jsonb;
+
     @Test
     void missingJsonRpc() throws IOException, ServletException {
         final var servlet = new ServletSimulator();
@@ -121,6 +138,73 @@ class JsonRpcServletTest {
                 "]", result);
     }
 
+    @Test
+    void tooDeep() throws IOException, ServletException {
+        final var servlet = new ServletSimulator();
+        final var result = servlet.serve(handler,
+                "{\"jsonrpc\":\"2.0\",\"method\":\"test1\",\"params\":" + "[".repeat(100) + "]".repeat(100) + "}",
+                HttpServletResponse.SC_OK);
+        assertEquals("{\"jsonrpc\":\"2.0\",\"error\":{\"code\":10100,\"message\":\"Request too deep, limit it to 64 levels max please.\"}}", result);
+    }
+
+    @Test
+    void initParameters() throws IOException, ServletException {
+        final var limitedHandler = new SimpleJsonRpcHandler() {{
+            setJsonb(jsonb);
+            setRegistry(registry);
+        }};
+        final var servlet = new SimpleJsonRpcServlet() {{
+            setJsonb(jsonb);
+            setHandler(limitedHandler);
+            setBeforeExecutionEvent(e -> {
+            });
+        }};
+        servlet.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "jsonrpc";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+
+            @Override
+            public String getInitParameter(final String name) {
+                return Map.of("maxRequestSize", "64", "maxRequestDepth", "2", "maxBulkRequests", "1").get(name);
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return enumeration(List.of("maxRequestSize", "maxRequestDepth", "maxBulkRequests"));
+            }
+        });
+        assertEquals(
+                "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":10100,\"message\":\"Request too deep, limit it to 2 levels max please.\"}}",
+                new ServletSimulator().serve(servlet, "{\"jsonrpc\":\"2.0\",\"method\":\"test1\",\"params\":[[[]]]}", HttpServletResponse.SC_OK));
+        assertEquals(
+                "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":10100,\"message\":\"Request too big, limit it to 64 bytes max please.\"}}",
+                new ServletSimulator().serve(servlet, "{\"jsonrpc\":\"2.0\",\"method\":\"test1\",\"params\":[\"" + "a".repeat(64) + "\"]}", HttpServletResponse.SC_OK));
+        assertEquals(
+                "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":10100,\"message\":\"Too much request at once, limit it to 1 max please.\"}}",
+                new ServletSimulator().serve(servlet, "[{\"jsonrpc\":\"2.0\",\"method\":\"t\"},{\"jsonrpc\":\"2.0\",\"method\":\"t\"}]", HttpServletResponse.SC_OK));
+        // 58 characters but 68 bytes
+        assertEquals(
+                "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":10100,\"message\":\"Request too big, limit it to 64 bytes max please.\"}}",
+                new ServletSimulator().serve(servlet, "{\"jsonrpc\":\"2.0\",\"method\":\"test1\",\"params\":[\"" + "\u00e9".repeat(10) + "\"]}", HttpServletResponse.SC_OK));
+    }
+
+    @Test
+    void tooMuchBulkRequests() throws IOException, ServletException {
+        final var servlet = new ServletSimulator();
+        final var result = servlet.serve(handler, "[" + IntStream.range(0, 51)
+                        .mapToObj(i -> "{\"jsonrpc\":\"2.0\",\"method\":\"test1\",\"params\":[\"niamor\"]}")
+                        .collect(joining(",")) + "]",
+                HttpServletResponse.SC_OK);
+        assertEquals("{\"jsonrpc\":\"2.0\",\"error\":{\"code\":10100,\"message\":\"Too much request at once, limit it to 50 max please.\"}}", result);
+    }
+
     public static class Foo {
         private String name;
 
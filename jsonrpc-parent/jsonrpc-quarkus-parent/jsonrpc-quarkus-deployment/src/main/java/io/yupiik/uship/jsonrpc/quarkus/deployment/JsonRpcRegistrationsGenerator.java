@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.quarkus.deployment;
+
+import io.quarkus.gizmo.BytecodeCreator;
+import io.quarkus.gizmo.CatchBlockCreator;
+import io.quarkus.gizmo.ClassCreator;
+import io.quarkus.gizmo.ClassOutput;
+import io.quarkus.gizmo.FieldDescriptor;
+import io.quarkus.gizmo.MethodCreator;
+import io.quarkus.gizmo.MethodDescriptor;
+import io.quarkus.gizmo.ResultHandle;
+import io.yupiik.uship.backbone.reflect.ParameterizedTypeImpl;
+import io.yupiik.uship.jsonrpc.core.impl.Registration;
+import io.yupiik.uship.jsonrpc.quarkus.runtime.JsonRpcRegistrations;
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationTarget;
+import org.jboss.jandex.AnnotationValue;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.PrimitiveType;
+import org.jboss.jandex.Type;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Generates, from the Jandex index, one invoker per {@code @JsonRpcMethod} (a plain method call, no reflection)
+ * and a {@link JsonRpcRegistrations} implementation creating all the registrations with build time resolved metadata.
+ */
+class JsonRpcRegistrationsGenerator {
+    static final String REGISTRATIONS_CLASS = "io.yupiik.uship.jsonrpc.quarkus.generated.JsonRpcRegistrationsImpl";
+
+    private static final DotName JSON_RPC = DotName.createSimple("io.yupiik.uship.jsonrpc.core.api.JsonRpc");
+    private static final DotName JSON_RPC_METHOD = DotName.createSimple("io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod");
+    private static final DotName JSON_RPC_PARAM = DotName.createSimple("io.yupiik.uship.jsonrpc.core.api.JsonRpcParam");
+    private static final DotName JSON_RPC_ERROR = DotName.createSimple("io.yupiik.uship.jsonrpc.core.api.JsonRpcError");
+    private static final DotName JSON_RPC_ERRORS = DotName.createSimple("io.yupiik.uship.jsonrpc.core.api.JsonRpcError$List");
+    private static final DotName OBJECT = DotName.createSimple(Object.class.getName());
+
+    private static final Map<PrimitiveType.Primitive, Class<?>> WRAPPERS = Map.of(
+            PrimitiveType.Primitive.BOOLEAN, Boolean.class,
+            PrimitiveType.Primitive.BYTE, Byte.class,
+            PrimitiveType.Primitive.CHAR, Character.class,
+            PrimitiveType.Primitive.SHORT, Short.class,
+            PrimitiveType.Primitive.INT, Integer.class,
+            PrimitiveType.Primitive.LONG, Long.class,
+            PrimitiveType.Primitive.FLOAT, Float.class,
+            PrimitiveType.Primitive.DOUBLE, Double.class);
+    private static final Map<PrimitiveType.Primitive, Class<?>> PRIMITIVES = Map.of(
+            PrimitiveType.Primitive.BOOLEAN, boolean.class,
+            PrimitiveType.Primitive.BYTE, byte.class,
+            PrimitiveType.Primitive.CHAR, char.class,
+            PrimitiveType.Primitive.SHORT, short.class,
+            PrimitiveType.Primitive.INT, int.class,
+            PrimitiveType.Primitive.LONG, long.class,
+            PrimitiveType.Primitive.FLOAT, float.class,
+            PrimitiveType.Primitive.DOUBLE, double.class);
+
+    private final IndexView index;
+    private final ClassOutput output;
+
+    JsonRpcRegistrationsGenerator(final IndexView index, final ClassOutput output) {
+        this.index = index;
+        this.output = output;
+    }
+
+    /**
+     * @return {@code true} if there is at least one JSON-RPC bean and the registrations were generated.
+     */
+    boolean generate() {
+        final var beans = index.getAnnotations(JSON_RPC).stream()
+                .filter(it -> it.target().kind() == AnnotationTarget.Kind.CLASS)
+                .map(it -> it.target().asClass())
+                .filter(it -> !Modifier.isAbstract(it.flags()) && !Modifier.isInterface(it.flags()))
+                .distinct()
+                .collect(toList());
+        if (beans.isEmpty()) {
+            return false;
+        }
+
+        try (final var registrations = ClassCreator.builder()
+                .classOutput(output)
+                .className(REGISTRATIONS_CLASS)
+                .interfaces(JsonRpcRegistrations.class)
+                .build()) {
+            final var factories = new ArrayList<MethodDescriptor>();
+            for (final var bean : beans) {
+                for (final var method : findMethods(bean)) {
+                    final var invoker = generateInvoker(method, factories.size());
+                    factories.add(generateRegistrationFactory(registrations, bean, method, invoker, factories.size()));
+                }
+            }
+
+            final var create = registrations.getMethodCreator("create", Collection.class, Function.class);
+            final var list = create.newInstance(MethodDescriptor.ofConstructor(ArrayList.class, int.class), create.load(factories.size()));
+            for (final var factory : factories) {
+                create.invokeInterfaceMethod(
+                        MethodDescriptor.ofMethod(List.class, "add", boolean.class, Object.class),
+                        list, create.invokeVirtualMethod(factory, create.getThis(), create.getMethodParam(0)));
+            }
+            create.returnValue(list);
+        }
+        return true;
+    }
+
+    private List<MethodInfo> findMethods(final ClassInfo bean) { // mimic Class#getMethods, subclasses win
+        final var signatures = new HashSet<String>();
+        final var methods = new ArrayList<MethodInfo>();
+        var current = bean;
+        while (current != null && !OBJECT.equals(current.name())) {
+            for (final var method : current.methods()) {
+                if (!Modifier.isPublic(method.flags()) || Modifier.isStatic(method.flags()) ||
+                        getMethodAnnotation(method, JSON_RPC_METHOD) == null ||
+                        !signatures.add(method.name() + method.parameters())) {
+                    continue;
+                }
+                methods.add(method);
+            }
+            current = current.superName() == null ? null : index.getClassByName(current.superName());
+        }
+        return methods;
+    }
+
+    // Function<Object[], Object> calling the method directly on the bean (client proxy)
+    private String generateInvoker(final MethodInfo method, final int id) {
+        final var className = REGISTRATIONS_CLASS + "$Invoker" + id;
+        try (final var invoker = ClassCreator.builder()
+                .classOutput(output)
+                .className(className)
+                .interfaces(Function.class)
+                .build()) {
+            final var instance = invoker.getFieldCreator("instance", Object.class)
+                    .setModifiers(Modifier.PRIVATE | Modifier.FINAL)
+                    .getFieldDescriptor();
+
+            final var constructor = invoker.getMethodCreator("<init>", void.class, Object.class);
+            constructor.invokeSpecialMethod(MethodDescriptor.ofConstructor(Object.class), constructor.getThis());
+            constructor.writeInstanceField(instance, constructor.getThis(), constructor.getMethodParam(0));
+            constructor.returnValue(null);
+
+            final var apply = invoker.getMethodCreator("apply", Object.class, Object.class);
+            final BytecodeCreator body;
+            if (method.exceptions().isEmpty()) {
+                body = apply;
+            } else { // align on the reflection behavior: runtime exceptions are propagated, checked ones wrapped
+                final var tryBlock = apply.tryBlock();
+                final var runtime = tryBlock.addCatch(RuntimeException.class);
+                runtime.throwException(runtime.getCaughtException());
+                final CatchBlockCreator checked = tryBlock.addCatch(Exception.class);
+                checked.throwException(checked.newInstance(
+                        MethodDescriptor.ofConstructor(IllegalStateException.class, Throwable.class),
+                        checked.getCaughtException()));
+                apply.throwException(IllegalStateException.class, "unreachable");
+                body = tryBlock;
+            }
+
+            final var args = body.checkCast(body.getMethodParam(0), Object[].class);
+            final var parameters = method.parameters();
+            final var values = new ResultHandle[parameters.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = toArgument(body, body.readArrayValue(args, i), parameters.get(i));
+            }
+            final var target = body.checkCast(
+                    body.readInstanceField(instance, body.getThis()), method.declaringClass().name().toString());
+            final var result = body.invokeVirtualMethod(MethodDescriptor.of(method), target, values);
+            final var returnType = method.returnType();
+            if (returnType.kind() == Type.Kind.VOID) {
+                body.returnValue(body.loadNull());
+            } else if (returnType.kind() == Type.Kind.PRIMITIVE) {
+                final var primitive = returnType.asPrimitiveType().primitive();
+                final var wrapper = WRAPPERS.get(primitive);
+                body.returnValue(body.invokeStaticMethod(
+                        MethodDescriptor.ofMethod(wrapper, "valueOf", wrapper, PRIMITIVES.get(primitive)), result));
+            } else {
+                body.returnValue(result);
+            }
+        }
+        return className;
+    }
+
+    private MethodDescriptor generateRegistrationFactory(final ClassCreator creator, final ClassInfo bean,
+                                                         final MethodInfo method, final String invoker, final int id) {
+        final var factory = creator.getMethodCreator("registration" + id, Registration.class, Function.class);
+        final var config = getMethodAnnotation(method, JSON_RPC_METHOD);
+        final var beanClass = factory.loadClass(bean.name().toString());
+        final var instance = factory.invokeInterfaceMethod(
+                MethodDescriptor.ofMethod(Function.class, "apply", Object.class, Object.class),
+                factory.getMethodParam(0), beanClass);
+
+        final var parameterTypes = method.parameters();
+        final var parameters = factory.newInstance(MethodDescriptor.ofConstructor(ArrayList.class, int.class), factory.load(parameterTypes.size()));
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            final int position = i;
+            final var param = method.annotations().stream()
+                    .filter(it -> JSON_RPC_PARAM.equals(it.name()) &&
+                            it.target().kind() == AnnotationTarget.Kind.METHOD_PARAMETER &&
+                            it.target().asMethodParameter().position() == position)
+                    .findFirst();
+            final var name = param
+                    .map(it -> it.value())
+                    .map(AnnotationValue::asString)
+                    .filter(it -> !it.isBlank())
+                    .orElseGet(() -> ofNullable(method.parameterName(position)).orElse("arg" + position));
+            factory.invokeInterfaceMethod(
+                    MethodDescriptor.ofMethod(List.class, "add", boolean.class, Object.class),
+                    parameters, factory.newInstance(
+                            MethodDescriptor.ofConstructor(Registration.Parameter.class,
+                                    java.lang.reflect.Type.class, String.class, int.class, boolean.class, String.class),
+                            toType(factory, parameterTypes.get(i)),
+                            factory.load(name),
+                            factory.load(i),
+                            factory.load(param.map(it -> it.value("required")).map(AnnotationValue::asBoolean).orElse(false)),
+                            factory.load(param.map(it -> it.value("documentation")).map(AnnotationValue::asString).orElse(""))));
+        }
+
+        final var errors = findErrors(method);
+        final var exceptionMappings = factory.newInstance(MethodDescriptor.ofConstructor(ArrayList.class, int.class), factory.load(errors.size()));
+        for (final var error : errors) {
+            final var handled = ofNullable(error.value("handled")).map(AnnotationValue::asClassArray).orElseGet(() -> new Type[0]);
+            final var types = factory.newInstance(MethodDescriptor.ofConstructor(ArrayList.class, int.class), factory.load(handled.length));
+            for (final var type : handled) {
+                factory.invokeInterfaceMethod(
+                        MethodDescriptor.ofMethod(List.class, "add", boolean.class, Object.class),
+                        types, factory.loadClass(type.name().toString()));
+            }
+            factory.invokeInterfaceMethod(
+                    MethodDescriptor.ofMethod(List.class, "add", boolean.class, Object.class),
+                    exceptionMappings, factory.newInstance(
+                            MethodDescriptor.ofConstructor(Registration.ExceptionMapping.class, Collection.class, int.class, String.class),
+                            types,
+                            factory.load(error.value("code").asInt()),
+                            factory.load(ofNullable(error.value("documentation")).map(AnnotationValue::asString).orElse(""))));
+        }
+
+        final var jsonRpcMethod = config.value("name").asString();
+        factory.returnValue(factory.newInstance(
+                MethodDescriptor.ofConstructor(Registration.class,
+                        Class.class, java.lang.reflect.Method.class, String.class, java.lang.reflect.Type.class,
+                        Function.class, Collection.class, Collection.class, String.class),
+                beanClass,
+                factory.loadNull(), // no reflection at all
+                factory.load(jsonRpcMethod.isEmpty() ? method.declaringClass().name() + "." + method.name() : jsonRpcMethod),
+                toType(factory, method.returnType()),
+                factory.newInstance(MethodDescriptor.ofConstructor(invoker, Object.class), instance),
+                parameters,
+                exceptionMappings,
+                factory.load(ofNullable(config.value("documentation")).map(AnnotationValue::asString).orElse(""))));
+        return factory.getMethodDescriptor();
+    }
+
+    private List<AnnotationInstance> findErrors(final MethodInfo method) {
+        return Stream.concat(
+                        Stream.ofNullable(getMethodAnnotation(method, JSON_RPC_ERROR)),
+                        Stream.ofNullable(getMethodAnnotation(method, JSON_RPC_ERRORS))
+                                .flatMap(it -> Stream.of(it.value().asNestedArray())))
+                .filter(Objects::nonNull)
+                .collect(toList());
+    }
+
+    private AnnotationInstance getMethodAnnotation(final MethodInfo method, final DotName name) {
+        return method.annotations().stream()
+                .filter(it -> name.equals(it.name()) && it.target().kind() == AnnotationTarget.Kind.METHOD)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private ResultHandle toArgument(final BytecodeCreator creator, final ResultHandle value, final Type type) {
+        if (type.kind() == Type.Kind.PRIMITIVE) {
+            final var primitive = type.asPrimitiveType().primitive();
+            final var wrapper = WRAPPERS.get(primitive);
+            return creator.invokeVirtualMethod(
+                    MethodDescriptor.ofMethod(wrapper, PRIMITIVES.get(primitive).getName() + "Value", PRIMITIVES.get(primitive)),
+                    creator.checkCast(value, wrapper));
+        }
+        return creator.checkCast(value, erasure(type));
+    }
+
+    private String erasure(final Type type) {
+        switch (type.kind()) {
+            case TYPE_VARIABLE:
+                final var bounds = type.asTypeVariable().bounds();
+                return bounds.isEmpty() ? Object.class.getName() : erasure(bounds.get(0));
+            case WILDCARD_TYPE:
+                return erasure(type.asWildcardType().extendsBound());
+            case UNRESOLVED_TYPE_VARIABLE:
+                return Object.class.getName();
+            case ARRAY: // binary name: [Lfoo.Bar;
+                final var array = type.asArrayType();
+                return "[".repeat(array.dimensions()) + descriptor(array.component());
+            default:
+                return type.name().toString();
+        }
+    }
+
+    private String descriptor(final Type type) {
+        if (type.kind() == Type.Kind.PRIMITIVE) {
+            return org.objectweb.asm.Type.getDescriptor(PRIMITIVES.get(type.asPrimitiveType().primitive()));
+        }
+        return 'L' + erasure(type) + ';';
+    }
+
+    // runtime java.lang.reflect.Type matching the build time one (type variables are erased)
+    private ResultHandle toType(final BytecodeCreator creator, final Type type) {
+        switch (type.kind()) {
+            case VOID:
+                return creator.readStaticField(FieldDescriptor.of(Void.class, "TYPE", Class.class));
+            case PRIMITIVE:
+                return creator.readStaticField(FieldDescriptor.of(WRAPPERS.get(type.asPrimitiveType().primitive()), "TYPE", Class.class));
+            case PARAMETERIZED_TYPE:
+                final var arguments = type.asParameterizedType().arguments();
+                final var args = creator.newArray(java.lang.reflect.Type.class, arguments.size());
+                for (int i = 0; i < arguments.size(); i++) {
+                    creator.writeArrayValue(args, i, toType(creator, arguments.get(i)));
+                }
+                return creator.newInstance(
+                        MethodDescriptor.ofConstructor(ParameterizedTypeImpl.class, java.lang.reflect.Type.class, java.lang.reflect.Type[].class),
+                        creator.loadClass(type.name().toString()), args);
+            case ARRAY: // Class.forName("[L...;") like, done without string to avoid any loader issue
+                final var array = type.asArrayType();
+                final var component = array.component().kind() == Type.Kind.PRIMITIVE ?
+                        toType(creator, array.component()) :
+                        creator.loadClass(erasure(array.component()));
+                final var dimensions = creator.newArray(int.class, array.dimensions());
+                for (int i = 0; i < array.dimensions(); i++) {
+                    creator.writeArrayValue(dimensions, i, creator.load(0));
+                }
+                return creator.invokeVirtualMethod(
+                        MethodDescriptor.ofMethod(Object.class, "getClass", Class.class),
+                        creator.invokeStaticMethod(
+                                MethodDescriptor.ofMethod(Array.class, "newInstance", Object.class, Class.class, int[].class),
+                                component, dimensions));
+            case CLASS:
+                return creator.loadClass(type.name().toString());
+            default:
+                return creator.loadClass(erasure(type));
+        }
+    }
+}
@@ -17,8 +17,16 @@ package io.yupiik.uship.jsonrpc.quarkus.deployment;
 
 import io.quarkus.arc.deployment.AdditionalBeanBuildItem;
 import io.quarkus.arc.deployment.QualifierRegistrarBuildItem;
+import io.quarkus.deployment.GeneratedClassGizmoAdaptor;
+import io.quarkus.deployment.annotations.BuildProducer;
 import io.quarkus.deployment.annotations.BuildStep;
+import io.quarkus.deployment.annotations.ExecutionTime;
+import io.quarkus.deployment.annotations.Record;
+import io.quarkus.deployment.builditem.CombinedIndexBuildItem;
+import io.quarkus.deployment.builditem.GeneratedClassBuildItem;
+import io.quarkus.deployment.recording.RecorderContext;
 import io.yupiik.uship.jsonrpc.quarkus.cdi.JsonRpcBeans;
+import io.yupiik.uship.jsonrpc.quarkus.runtime.JsonRpcRecorder;
 import org.jboss.jandex.DotName;
 
 import java.util.Map;
@@ -32,11 +40,21 @@ public class QuarkusExtension {
                 .build();
     }
 
-
     @BuildStep
     QualifierRegistrarBuildItem enableJsonRpcQualifier() {
         return new QualifierRegistrarBuildItem(() -> Map.of(
                 DotName.createSimple("io.yupiik.uship.jsonrpc.core.api.JsonRpc"),
                 Set.of()));
     }
+
+    @BuildStep
+    @Record(ExecutionTime.STATIC_INIT)
+    void generateRegistrations(final CombinedIndexBuildItem index,
+                               final BuildProducer<GeneratedClassBuildItem> generatedClasses,
+                               final RecorderContext recorderContext,
+                               final JsonRpcRecorder recorder) {
+        if (new JsonRpcRegistrationsGenerator(index.getIndex(), new GeneratedClassGizmoAdaptor(generatedClasses, true)).generate()) {
+            recorder.setRegistrations(recorderContext.newInstance(JsonRpcRegistrationsGenerator.REGISTRATIONS_CLASS));
+        }
+    }
 }
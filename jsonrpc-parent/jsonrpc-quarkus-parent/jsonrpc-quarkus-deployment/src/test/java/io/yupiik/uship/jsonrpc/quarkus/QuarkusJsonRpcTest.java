@@ -17,6 +17,8 @@ package io.yupiik.uship.jsonrpc.quarkus;
 
 import io.quarkus.test.common.http.TestHTTPResource;
 import io.quarkus.test.junit.QuarkusTest;
+import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcMethodRegistry;
+import io.yupiik.uship.jsonrpc.quarkus.bean.GeneratedInvokerEndpoints;
 import jakarta.json.spi.JsonProvider;
 import org.junit.jupiter.api.Test;
 
@@ -30,6 +32,7 @@ import java.net.http.HttpResponse;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @QuarkusTest
 class QuarkusJsonRpcTest {
@@ -39,6 +42,9 @@ class QuarkusJsonRpcTest {
     @Inject
     JsonProvider jsonProvider;
 
+    @Inject
+    SimpleJsonRpcMethodRegistry registry;
+
     @Test
     void run() throws URISyntaxException, IOException, InterruptedException {
         final var res = HttpClient.newHttpClient().send(
@@ -57,4 +63,32 @@ class QuarkusJsonRpcTest {
         assertEquals(200, res.statusCode(), res::body);
         assertEquals("{\"jsonrpc\":\"2.0\",\"result\":\"Hi test\"}", res.body());
     }
+
+    @Test
+    void primitives() throws URISyntaxException, IOException, InterruptedException {
+        final var res = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder()
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                jsonProvider.createObjectBuilder()
+                                        .add("jsonrpc", "2.0")
+                                        .add("method", "add")
+                                        .add("params", jsonProvider.createArrayBuilder()
+                                                .add(1)
+                                                .add(2))
+                                        .build()
+                                        .toString()))
+                        .uri(url.toURI().resolve("/jsonrpc"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(UTF_8));
+        assertEquals(200, res.statusCode(), res::body);
+        assertEquals("{\"jsonrpc\":\"2.0\",\"result\":3}", res.body());
+    }
+
+    @Test
+    void generatedInvoker() {
+        final var registration = registry.getHandlers().get("add").registration();
+        assertNull(registration.method()); // registered at build time, without any reflection
+        assertEquals(GeneratedInvokerEndpoints.class, registration.clazz());
+        assertEquals(3, registration.invoker().apply(new Object[]{1, 2}));
+    }
 }
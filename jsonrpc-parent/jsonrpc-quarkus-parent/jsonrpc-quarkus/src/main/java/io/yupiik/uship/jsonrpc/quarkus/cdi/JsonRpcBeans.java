@@ -23,6 +23,7 @@ import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcHandler;
 import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcMethodRegistry;
 import io.yupiik.uship.jsonrpc.core.servlet.JsonRpcBeforeExecution;
 import io.yupiik.uship.jsonrpc.core.servlet.SimpleJsonRpcServlet;
+import io.yupiik.uship.jsonrpc.quarkus.runtime.JsonRpcRecorder;
 import jakarta.json.bind.Jsonb;
 import jakarta.json.bind.JsonbBuilder;
 import jakarta.json.bind.JsonbConfig;
@@ -35,6 +36,7 @@ import javax.enterprise.event.Event;
 import javax.enterprise.inject.Disposes;
 import javax.enterprise.inject.Instance;
 import javax.enterprise.inject.Produces;
+import java.util.List;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.stream.StreamSupport;
@@ -71,10 +73,14 @@ public class JsonRpcBeans {
     @Produces
     @DefaultBean
     @ApplicationScoped
-    public SimpleJsonRpcHandler handler(final Jsonb jsonb, final SimpleJsonRpcMethodRegistry registry) {
+    public SimpleJsonRpcHandler handler(final Jsonb jsonb, final SimpleJsonRpcMethodRegistry registry, final Config config) {
         return new SimpleJsonRpcHandler() {{
             setJsonb(jsonb);
             setRegistry(registry);
+            config.getOptionalValue("jsonrpc.maxRequestSize", Long.class).ifPresent(this::setMaxRequestSize);
+            config.getOptionalValue("jsonrpc.maxRequestDepth", Integer.class).ifPresent(this::setMaxRequestDepth);
+            config.getOptionalValue("jsonrpc.maxStringLength", Integer.class).ifPresent(this::setMaxStringLength);
+            config.getOptionalValue("jsonrpc.maxBulkRequests", Integer.class).ifPresent(this::setMaxBulkRequests);
         }};
     }
 
@@ -87,15 +93,20 @@ public class JsonRpcBeans {
                                                 @JsonRpc final Instance<Object> instances) {
         return new SimpleJsonRpcMethodRegistry() {
             {
-                final var endpoints = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
-                                instances.iterator(),
-                                Spliterator.IMMUTABLE), false)
-                        .map(Object.class::cast)
-                        .collect(toList());
-
                 setJsonb(jsonb);
                 setJsonProvider(provider);
-                setJsonRpcInstances(endpoints);
+
+                final var registrations = JsonRpcRecorder.registrations();
+                if (registrations != null) { // generated at build time, no need to scan the beans
+                    registrations.create(type -> instances.select(type).get()).forEach(this::registerMethod);
+                    setJsonRpcInstances(List.of());
+                } else {
+                    setJsonRpcInstances(StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                                    instances.iterator(),
+                                    Spliterator.IMMUTABLE), false)
+                            .map(Object.class::cast)
+                            .collect(toList()));
+                }
                 setBaseUrl(config.getOptionalValue("jsonrpc.baseUrl", String.class)
                         .orElseGet(() -> "http://localhost:" + config.getOptionalValue("quarkus.http.port", Integer.class).orElse(8080) + "/jsonrpc"));
                 init();
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.quarkus.runtime;
+
+import io.quarkus.runtime.RuntimeValue;
+import io.quarkus.runtime.annotations.Recorder;
+
+@Recorder
+public class JsonRpcRecorder {
+    private static volatile JsonRpcRegistrations registrations;
+
+    public void setRegistrations(final RuntimeValue<JsonRpcRegistrations> value) {
+        registrations = value.getValue();
+    }
+
+    // null when the build did not generate the registrations, reflection is used in such a case
+    public static JsonRpcRegistrations registrations() {
+        return registrations;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.quarkus.runtime;
+
+import io.yupiik.uship.jsonrpc.core.impl.Registration;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Implemented by a class generated at build time which creates the registrations of all {@code @JsonRpc} beans
+ * without any reflection (invokers are plain generated method calls).
+ */
+public interface JsonRpcRegistrations {
+    /**
+     * @param instances lookup of the JSON-RPC bean instance from its class.
+     * @return the registrations to add to the registry.
+     */
+    Collection<Registration> create(Function<Class<?>, Object> instances);
+}
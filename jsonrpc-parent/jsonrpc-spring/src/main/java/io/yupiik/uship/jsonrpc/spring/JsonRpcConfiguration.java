@@ -29,6 +29,62 @@ public class JsonRpcConfiguration {
      */
     private String binding = "/jsonrpc";
 
+    /**
+     * Max size of a request body in bytes, a negative value disables the limit.
+     */
+    private long maxRequestSize = 10 * 1024 * 1024;
+
+    /**
+     * Max nesting level of a request, a negative value disables the limit.
+     */
+    private int maxRequestDepth = 64;
+
+    /**
+     * Max length of a JSON string in a request, a negative value disables the limit.
+     */
+    private int maxStringLength = -1;
+
+    /**
+     * Max number of requests in a bulk request, a negative value disables the limit.
+     */
+    private int maxBulkRequests = 50;
+
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    public JsonRpcConfiguration setMaxStringLength(final int maxStringLength) {
+        this.maxStringLength = maxStringLength;
+        return this;
+    }
+
+    public int getMaxBulkRequests() {
+        return maxBulkRequests;
+    }
+
+    public JsonRpcConfiguration setMaxBulkRequests(final int maxBulkRequests) {
+        this.maxBulkRequests = maxBulkRequests;
+        return this;
+    }
+
+    public long getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public JsonRpcConfiguration setMaxRequestSize(final long maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+        return this;
+    }
+
+    public int getMaxRequestDepth() {
+        return maxRequestDepth;
+    }
+
+    public JsonRpcConfiguration setMaxRequestDepth(final int maxRequestDepth) {
+        this.maxRequestDepth = maxRequestDepth;
+        return this;
+    }
+
     public String getBinding() {
         return binding;
     }
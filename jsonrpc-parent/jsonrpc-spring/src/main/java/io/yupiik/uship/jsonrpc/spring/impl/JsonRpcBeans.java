@@ -18,6 +18,7 @@ package io.yupiik.uship.jsonrpc.spring.impl;
 import io.yupiik.uship.jakartajavax.bridge.BridgeJakarta2JavaxServlet;
 import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
 import io.yupiik.uship.jsonrpc.core.api.service.SimpleJsonRpcExtractor;
+import io.yupiik.uship.jsonrpc.core.impl.Registration;
 import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcHandler;
 import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcMethodRegistry;
 import io.yupiik.uship.jsonrpc.core.servlet.SimpleJsonRpcServlet;
@@ -29,30 +30,27 @@ import jakarta.json.bind.config.PropertyOrderStrategy;
 import jakarta.json.spi.JsonProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.NoneNestedConditions;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.context.WebServerInitializedEvent;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+import static org.springframework.util.ClassUtils.isPresent;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
 @Configuration
 @EnableConfigurationProperties(JsonRpcConfiguration.class)
 public class JsonRpcBeans {
-    @Bean
-    @ConditionalOnMissingBean
-    SpringJsonRpcServlet springJsonRpcServlet() {
-        return new SpringJsonRpcServlet();
-    }
-
-    @Bean
-    @ConditionalOnMissingBean(name = "jsonRpcServlet")
-    ServletRegistrationBean<BridgeJakarta2JavaxServlet> jsonRpcServlet(final JsonRpcConfiguration configuration,
-                                                                       final SpringJsonRpcServlet servlet) {
-        return new ServletRegistrationBean<>(new BridgeJakarta2JavaxServlet(servlet), configuration.getBinding());
-    }
-
     @Bean
     @ConditionalOnMissingBean
     SimpleJsonRpcMethodRegistry jsonRpcRegistry() {
@@ -84,6 +82,49 @@ public class JsonRpcBeans {
                 .withPropertyOrderStrategy(PropertyOrderStrategy.LEXICOGRAPHICAL));
     }
 
+    // registered as before the reactive support (even without a web application) unless the application is a reactive one
+    @Configuration
+    @Conditional(NotReactiveWebApplication.class)
+    static class ServletJsonRpcBeans {
+        @Bean
+        @ConditionalOnMissingBean
+        SpringJsonRpcServlet springJsonRpcServlet() {
+            return new SpringJsonRpcServlet();
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(name = "jsonRpcServlet")
+        ServletRegistrationBean<BridgeJakarta2JavaxServlet> jsonRpcServlet(final JsonRpcConfiguration configuration,
+                                                                           final SpringJsonRpcServlet servlet) {
+            return new ServletRegistrationBean<>(new BridgeJakarta2JavaxServlet(servlet), configuration.getBinding());
+        }
+    }
+
+    @Configuration
+    @ConditionalOnWebApplication(type = REACTIVE)
+    static class ReactiveJsonRpcBeans {
+        @Bean
+        @ConditionalOnMissingBean(name = "jsonRpcRouter")
+        RouterFunction<ServerResponse> jsonRpcRouter(final JsonRpcConfiguration configuration,
+                                                     final SimpleJsonRpcHandler handler,
+                                                     final SimpleJsonRpcMethodRegistry registry,
+                                                     final Jsonb jsonb) {
+            final long maxRequestSize = configuration.getMaxRequestSize();
+            return route(POST(configuration.getBinding()), new ReactiveJsonRpcHandlerFunction(
+                    handler, registry, jsonb, maxRequestSize < 0 ? -1 : (int) Math.min(Integer.MAX_VALUE, maxRequestSize)));
+        }
+    }
+
+    static class NotReactiveWebApplication extends NoneNestedConditions {
+        NotReactiveWebApplication() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnWebApplication(type = REACTIVE)
+        static class Reactive {
+        }
+    }
+
     private static class SpringJsonRpcServlet extends SimpleJsonRpcServlet {
         @Override
         @Autowired
@@ -115,9 +156,19 @@ public class JsonRpcBeans {
         public void setRegistry(final SimpleJsonRpcMethodRegistry registry) {
             super.setRegistry(registry);
         }
+
+        @Autowired
+        public void setConfiguration(final JsonRpcConfiguration configuration) {
+            setMaxRequestSize(configuration.getMaxRequestSize());
+            setMaxRequestDepth(configuration.getMaxRequestDepth());
+            setMaxStringLength(configuration.getMaxStringLength());
+            setMaxBulkRequests(configuration.getMaxBulkRequests());
+        }
     }
 
     private static class SpringJsonRpcMethodRegistry extends SimpleJsonRpcMethodRegistry {
+        private static final boolean REACTOR = isPresent("reactor.core.publisher.Mono", SpringJsonRpcMethodRegistry.class.getClassLoader());
+
         @Autowired
         private JsonRpcConfiguration configuration;
 
@@ -136,6 +187,11 @@ public class JsonRpcBeans {
             super.setJsonProvider(jsonProvider);
         }
 
+        @Override
+        public Unregisterable registerMethod(final Registration registration) {
+            return super.registerMethod(REACTOR ? ReactorRegistrations.adapt(registration) : registration);
+        }
+
         @EventListener
         public void onStart(final WebServerInitializedEvent initializedEvent) {
             setJsonRpcInstances(context.getBeansWithAnnotation(JsonRpc.class).values());
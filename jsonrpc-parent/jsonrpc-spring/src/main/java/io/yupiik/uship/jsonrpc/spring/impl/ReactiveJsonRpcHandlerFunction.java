@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.spring.impl;
+
+import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcHandler;
+import io.yupiik.uship.jsonrpc.core.impl.SimpleJsonRpcMethodRegistry;
+import io.yupiik.uship.jsonrpc.core.protocol.JsonRpcException;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonStructure;
+import jakarta.json.JsonValue;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.ParameterizedType;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.web.reactive.function.BodyExtractors.toDataBuffers;
+
+/**
+ * WebFlux flavor of {@link io.yupiik.uship.jsonrpc.core.servlet.SimpleJsonRpcServlet}:
+ * the body is aggregated without blocking (up to {@code maxBodySize} bytes, a negative value disables the limit),
+ * parsed from memory and the handler execution is bridged to a {@link Mono}. Methods returning a {@code CompletionStage}
+ * (or a {@code Mono}/{@code Flux}) run on the event loop, others can block so they are executed on the bounded elastic scheduler.
+ * <p>
+ * Note: since there is no servlet request there, methods injecting {@code HttpServletRequest}
+ * or {@code HttpServletResponse} get {@code null}.
+ */
+public class ReactiveJsonRpcHandlerFunction implements HandlerFunction<ServerResponse> {
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    private final SimpleJsonRpcHandler handler;
+    private final SimpleJsonRpcMethodRegistry registry;
+    private final Jsonb jsonb;
+    private final int maxBodySize;
+
+    public ReactiveJsonRpcHandlerFunction(final SimpleJsonRpcHandler handler, final SimpleJsonRpcMethodRegistry registry,
+                                          final Jsonb jsonb, final int maxBodySize) {
+        this.handler = handler;
+        this.registry = registry;
+        this.jsonb = jsonb;
+        this.maxBodySize = maxBodySize;
+    }
+
+    @Override
+    public Mono<ServerResponse> handle(final ServerRequest request) {
+        final var body = request.body(toDataBuffers());
+        return (maxBodySize >= 0 ? DataBufferUtils.join(body, maxBodySize) : DataBufferUtils.join(body))
+                .map(this::readRequest)
+                // defer to ensure a synchronous failure is mapped as any other execution error
+                .flatMap(json -> {
+                    final var execution = Mono.defer(() -> Mono.<Object>fromCompletionStage(handler.execute(json, null, null)));
+                    return (isAsynchronous(json) ? execution : execution.subscribeOn(Schedulers.boundedElastic()))
+                            .onErrorResume(error -> {
+                                logger.log(Level.SEVERE, error.getMessage(), error);
+                                return Mono.just(handler.createResponse(null, -32603, error.getMessage()));
+                            });
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> handler.createResponse(null, -32700, "Empty request")))
+                .onErrorResume(JsonRpcException.class, e -> Mono.just(handler.createResponse(null, e.getCode(), e.getMessage()))) // limits
+                .onErrorResume(DataBufferLimitException.class, e -> Mono.just(handler.createResponse(
+                        null, 10_100, "Request too big, limit it to " + maxBodySize + " bytes max please.")))
+                .onErrorResume(e -> JsonbException.class.isInstance(e) || JsonException.class.isInstance(e),
+                        e -> Mono.just(handler.createResponse(null, -32700, e.getMessage())))
+                .flatMap(this::forwardResponse);
+    }
+
+    private boolean isAsynchronous(final JsonStructure json) {
+        switch (json.getValueType()) {
+            case OBJECT:
+                return isAsynchronous(json.asJsonObject());
+            case ARRAY:
+                return json.asJsonArray().stream()
+                        .allMatch(it -> it.getValueType() != JsonValue.ValueType.OBJECT || isAsynchronous(it.asJsonObject()));
+            default: // invalid request, nothing is invoked
+                return true;
+        }
+    }
+
+    private boolean isAsynchronous(final JsonObject request) {
+        final var method = request.get("method");
+        if (method == null || method.getValueType() != JsonValue.ValueType.STRING) { // invalid request, nothing is invoked
+            return true;
+        }
+        final var registration = registry.getHandlers().get(JsonString.class.cast(method).getString());
+        if (registration == null) { // unknown method
+            return true;
+        }
+        if (registration.registration() == null) {
+            return false;
+        }
+        final var returnedType = registration.registration().returnedType();
+        return ParameterizedType.class.isInstance(returnedType) &&
+                ParameterizedType.class.cast(returnedType).getRawType() instanceof Class &&
+                CompletionStage.class.isAssignableFrom((Class<?>) ParameterizedType.class.cast(returnedType).getRawType());
+    }
+
+    private JsonStructure readRequest(final DataBuffer buffer) {
+        try { // buffer is fully aggregated so it is an in memory read, the stream releases the buffer when closed
+            return handler.readRequest(new InputStreamReader(buffer.asInputStream(true), UTF_8));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Mono<ServerResponse> forwardResponse(final Object payload) {
+        return ServerResponse.ok()
+                .contentType(APPLICATION_JSON)
+                .bodyValue(jsonb.toJson(payload));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.spring.impl;
+
+import io.yupiik.uship.backbone.reflect.ParameterizedTypeImpl;
+import io.yupiik.uship.jsonrpc.core.impl.Registration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Enables to return {@link Mono} and {@link Flux} from JSON-RPC methods,
+ * they are bridged to {@link CompletionStage} which is natively supported by the registry.
+ * A {@link Flux} is collected as a list (JSON array).
+ * <p>
+ * IMPORTANT: only load it when reactor is available.
+ */
+final class ReactorRegistrations {
+    private ReactorRegistrations() {
+        // no-op
+    }
+
+    static Registration adapt(final Registration registration) {
+        final var type = registration.returnedType();
+        if (!ParameterizedType.class.isInstance(type)) {
+            return registration;
+        }
+        final var pt = ParameterizedType.class.cast(type);
+        if (pt.getRawType() == Mono.class) {
+            return copy(registration, new ParameterizedTypeImpl(CompletionStage.class, pt.getActualTypeArguments()[0]),
+                    result -> Mono.class.cast(result).toFuture());
+        }
+        if (pt.getRawType() == Flux.class) {
+            return copy(registration, new ParameterizedTypeImpl(CompletionStage.class,
+                            new ParameterizedTypeImpl(List.class, pt.getActualTypeArguments()[0])),
+                    result -> Flux.class.cast(result).collectList().toFuture());
+        }
+        return registration;
+    }
+
+    private static Registration copy(final Registration registration, final Type returnedType,
+                                     final Function<Object, CompletionStage<?>> toStage) {
+        final var invoker = registration.invoker();
+        return new Registration(
+                registration.clazz(), registration.method(), registration.jsonRpcMethod(), returnedType,
+                args -> {
+                    final var result = invoker.apply(args);
+                    return result == null ? completedFuture(null) : toStage.apply(result);
+                },
+                registration.parameters(), registration.exceptionMappings(), registration.documentation());
+    }
+}
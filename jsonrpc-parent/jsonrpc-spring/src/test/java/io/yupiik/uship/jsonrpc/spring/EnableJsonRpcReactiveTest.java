@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.jsonrpc.spring;
+
+import io.yupiik.uship.jsonrpc.core.api.JsonRpc;
+import io.yupiik.uship.jsonrpc.core.api.JsonRpcMethod;
+import io.yupiik.uship.jsonrpc.core.api.JsonRpcParam;
+import jakarta.json.spi.JsonProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(
+        classes = EnableJsonRpcReactiveTest.MyApp.class,
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive", "jsonrpc.maxRequestSize=1024"})
+class EnableJsonRpcReactiveTest {
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private JsonProvider jsonProvider;
+
+    @Test
+    void mono() throws IOException, InterruptedException {
+        assertEquals("{\"jsonrpc\":\"2.0\",\"result\":\"yupiik\"}", call(jsonProvider.createObjectBuilder()
+                .add("jsonrpc", "2.0")
+                .add("method", "reverse")
+                .add("params", jsonProvider.createObjectBuilder()
+                        .add("in", "kiipuy"))
+                .build()
+                .toString()));
+    }
+
+    @Test
+    void flux() throws IOException, InterruptedException {
+        assertEquals("{\"jsonrpc\":\"2.0\",\"result\":[\"a\",\"b\"]}", call(jsonProvider.createObjectBuilder()
+                .add("jsonrpc", "2.0")
+                .add("method", "split")
+                .add("params", jsonProvider.createObjectBuilder()
+                        .add("in", "a,b"))
+                .build()
+                .toString()));
+    }
+
+    @Test
+    void synchronousFailure() throws IOException, InterruptedException {
+        final var error = jsonProvider.createReader(new StringReader(call(jsonProvider.createObjectBuilder()
+                        .add("jsonrpc", "2.0")
+                        .add("method", "fail")
+                        .build()
+                        .toString())))
+                .readObject()
+                .getJsonObject("error");
+        assertEquals("failed before the Mono was created", error.getString("message"));
+    }
+
+    @Test
+    void tooBig() throws IOException, InterruptedException {
+        assertEquals(10100, jsonProvider.createReader(new StringReader(call(jsonProvider.createObjectBuilder()
+                        .add("jsonrpc", "2.0")
+                        .add("method", "reverse")
+                        .add("params", jsonProvider.createObjectBuilder()
+                                .add("in", "a".repeat(2048)))
+                        .build()
+                        .toString())))
+                .readObject()
+                .getJsonObject("error")
+                .getInt("code"));
+    }
+
+    @Test
+    void onlySynchronousMethodsAreOffloaded() throws IOException, InterruptedException {
+        assertTrue(threadOf("synchronousThread").startsWith("boundedElastic-"));
+        assertFalse(threadOf("asynchronousThread").startsWith("boundedElastic-"));
+    }
+
+    @Test
+    void parseError() throws IOException, InterruptedException {
+        assertEquals(-32700, jsonProvider.createReader(new StringReader(call("{")))
+                .readObject()
+                .getJsonObject("error")
+                .getInt("code"));
+    }
+
+    private String threadOf(final String method) throws IOException, InterruptedException {
+        return jsonProvider.createReader(new StringReader(call(jsonProvider.createObjectBuilder()
+                        .add("jsonrpc", "2.0")
+                        .add("method", method)
+                        .build()
+                        .toString())))
+                .readObject()
+                .getString("result");
+    }
+
+    private String call(final String payload) throws IOException, InterruptedException {
+        final var response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                        .POST(HttpRequest.BodyPublishers.ofString(payload, StandardCharsets.UTF_8))
+                        .uri(URI.create("http://localhost:" + port + "/jsonrpc"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, response.statusCode());
+        return response.body();
+    }
+
+    @EnableJsonRpc
+    @SpringBootApplication
+    public static class MyApp {
+        @Bean
+        MyEndpoints endpoints() {
+            return new MyEndpoints();
+        }
+    }
+
+    @JsonRpc
+    public static class MyEndpoints {
+        @JsonRpcMethod(name = "reverse")
+        public Mono<String> reverse(@JsonRpcParam(value = "in") final String input) {
+            return Mono.fromSupplier(() -> new StringBuilder(input).reverse().toString());
+        }
+
+        @JsonRpcMethod(name = "split")
+        public Flux<String> split(@JsonRpcParam(value = "in") final String input) {
+            return Flux.fromArray(input.split(","));
+        }
+
+        @JsonRpcMethod(name = "synchronousThread")
+        public String synchronousThread() {
+            return Thread.currentThread().getName();
+        }
+
+        @JsonRpcMethod(name = "asynchronousThread")
+        public Mono<String> asynchronousThread() {
+            return Mono.fromSupplier(() -> Thread.currentThread().getName());
+        }
+
+        @JsonRpcMethod(name = "fail")
+        public Mono<String> fail() {
+            throw new IllegalStateException("failed before the Mono was created");
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    @Param("100")
+    public int batchSize;
+
+    private final AtomicLong inserted = new AtomicLong();
+    private List<BenchEntity> updated;
+
+    @Setup(Level.Trial)
+    public void setup(final H2State state) {
+        updated = IntStream.range(0, Math.min(batchSize, state.rows))
+                .mapToObj(i -> state.database.findById(BenchEntity.class, H2State.id(i)))
+                .collect(toList());
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp(final H2State state) {
+        state.database.execute("delete from BENCH_ENTITY where id like ?", b -> b.bind("batch_%"));
+    }
+
+    @Benchmark
+    public int[] batchInsert(final H2State state) {
+        return state.database.batchInsert(BenchEntity.class, IntStream.range(0, batchSize)
+                .mapToObj(i -> {
+                    final var index = inserted.incrementAndGet();
+                    return new BenchEntity("batch_" + index, "batch", (int) (index % 100));
+                })
+                .iterator());
+    }
+
+    @Benchmark
+    public int[] batchUpdate(final H2State state) {
+        return state.database.batchUpdate(BenchEntity.class, updated.stream()
+                .map(it -> it.setAge((it.getAge() + 1) % 100))
+                .iterator());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.benchmark;
+
+import io.yupiik.uship.persistence.api.Column;
+import io.yupiik.uship.persistence.api.Id;
+import io.yupiik.uship.persistence.api.Table;
+
+@Table("BENCH_ENTITY")
+public class BenchEntity {
+    @Id
+    private String id;
+
+    @Column
+    private String name;
+
+    @Column
+    private int age;
+
+    public BenchEntity() {
+        // no-op
+    }
+
+    public BenchEntity(final String id, final String name, final int age) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public BenchEntity setAge(final int age) {
+        this.age = age;
+        return this;
+    }
+}
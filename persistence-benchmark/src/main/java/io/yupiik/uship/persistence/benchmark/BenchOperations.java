@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.benchmark;
+
+import io.yupiik.uship.persistence.api.operation.Operation;
+import io.yupiik.uship.persistence.api.operation.Statement;
+
+import java.util.List;
+
+@Operation(aliases = @Operation.Alias(alias = "e", type = BenchEntity.class))
+public interface BenchOperations {
+    @Statement("select ${e#fields} from ${e#table} where id = ?")
+    BenchEntity findOne(String id);
+
+    @Statement("select ${e#fields} from ${e#table} where id ${parameters#ids#in}")
+    List<BenchEntity> findAll(List<String> ids);
+
+    @Statement("select count(*) from ${e#table}")
+    long countAll();
+}
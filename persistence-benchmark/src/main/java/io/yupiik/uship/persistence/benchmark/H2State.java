@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.benchmark;
+
+import io.yupiik.uship.persistence.api.Database;
+import io.yupiik.uship.persistence.api.bootstrap.Configuration;
+import io.yupiik.uship.persistence.impl.datasource.PooledDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An in memory H2 database seeded with {@link #rows} {@link BenchEntity} (ids are {@code entity_<index>}).
+ */
+@State(Scope.Benchmark)
+public class H2State {
+    @Param("1000")
+    public int rows;
+
+    public PooledDataSource dataSource;
+    public Database database;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "", 16);
+        database = Database.of(new Configuration().setDataSource(dataSource));
+        createTable(dataSource, database);
+        database.batchInsert(BenchEntity.class, IntStream.range(0, rows)
+                .mapToObj(i -> new BenchEntity(id(i), "name_" + i, i % 100))
+                .collect(toList())
+                .iterator());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    public String randomId() {
+        return id(ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    public static String id(final int index) {
+        return "entity_" + index;
+    }
+
+    public static void createTable(final DataSource dataSource, final Database database) throws SQLException {
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(BenchEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compares {@link io.yupiik.uship.persistence.api.Database#operation(Class)} proxy calls with the equivalent direct calls.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class OperationsBenchmark {
+    private BenchOperations operations;
+    private List<String> ids;
+
+    @Setup(Level.Trial)
+    public void setup(final H2State state) {
+        operations = state.database.operation(BenchOperations.class);
+        ids = IntStream.range(0, Math.min(10, state.rows)).mapToObj(H2State::id).collect(toList());
+    }
+
+    @Benchmark
+    public BenchEntity proxyFindOne(final H2State state) {
+        return operations.findOne(state.randomId());
+    }
+
+    @Benchmark
+    public Optional<BenchEntity> directFindOne(final H2State state) {
+        return state.database.querySingle(BenchEntity.class, "select id, name, age from BENCH_ENTITY where id = ?", b -> b.bind(state.randomId()));
+    }
+
+    @Benchmark
+    public List<BenchEntity> proxyFindAllIn() {
+        return operations.findAll(ids);
+    }
+
+    @Benchmark
+    public long proxyCount() {
+        return operations.countAll();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.benchmark;
+
+import io.yupiik.uship.persistence.api.Database;
+import io.yupiik.uship.persistence.api.bootstrap.Configuration;
+import io.yupiik.uship.persistence.impl.datasource.tomcat.TomcatDataSource;
+import io.yupiik.uship.persistence.impl.translation.H2Translation;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Overhead of the connection binding of {@link TomcatDataSource} ({@code write}/{@code read} blocks).
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TomcatDataSourceBenchmark {
+    @Param("1000")
+    public int rows;
+
+    private String url;
+    private TomcatDataSource dataSource;
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        final var properties = new PoolProperties();
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        properties.setUrl(url);
+        properties.setUsername("sa");
+        properties.setPassword("");
+        properties.setMaxActive(16);
+        properties.setMaxIdle(16);
+        properties.setDefaultAutoCommit(false);
+        dataSource = new TomcatDataSource(properties);
+        // no bound connection there so the translation can't be guessed from the metadata
+        database = Database.of(new Configuration().setDataSource(dataSource).setTranslation(new H2Translation()));
+        dataSource.write(connection -> {
+            try {
+                H2State.createTable(dataSource, database);
+            } catch (final SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return database.batchInsert(BenchEntity.class, IntStream.range(0, rows)
+                    .mapToObj(i -> new BenchEntity(H2State.id(i), "name_" + i, i % 100))
+                    .collect(toList())
+                    .iterator());
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        dataSource.close();
+        // not in a write() block since the commit would fail on the closed database
+        try (final var connection = DriverManager.getConnection(url, "sa", "");
+             final var stmt = connection.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    @Benchmark
+    public Object emptyWrite() {
+        return dataSource.write(connection -> connection);
+    }
+
+    @Benchmark
+    public Object emptyRead() {
+        return dataSource.read(connection -> connection);
+    }
+
+    @Benchmark
+    public BenchEntity readFindById() {
+        return dataSource.read(connection -> database.findById(BenchEntity.class, H2State.id(ThreadLocalRandom.current().nextInt(rows))));
+    }
+
+    @Benchmark
+    public BenchEntity nestedReadFindById() {
+        return dataSource.write(connection -> dataSource.readNested(nested ->
+                database.findById(BenchEntity.class, H2State.id(ThreadLocalRandom.current().nextInt(rows)))));
+    }
+}
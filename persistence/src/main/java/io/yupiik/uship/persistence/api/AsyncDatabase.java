@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.api;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Asynchronous view of a {@link Database}: calls are executed in the configured executor
+ * (virtual threads when available) and the number of concurrent calls is bounded to avoid to queue
+ * more work than the connection pool can handle.
+ * <p>
+ * Results are {@link CompletionStage} so they can be returned as such from JSON-RPC methods.
+ */
+public interface AsyncDatabase {
+    /**
+     * Generic flavor: executes any task using the underlying database.
+     *
+     * @param task the task to execute.
+     * @param <T>  the result type.
+     * @return the task result.
+     */
+    <T> CompletionStage<T> submit(Function<Database, T> task);
+
+    /**
+     * Executes a task with an operation proxy (see {@link Database#operation(Class)}).
+     *
+     * @param api  the operation API.
+     * @param task the task using the API.
+     * @param <M>  the operation API type.
+     * @param <T>  the result type.
+     * @return the task result.
+     */
+    <M, T> CompletionStage<T> operation(Class<M> api, Function<M, T> task);
+
+    <T> CompletionStage<T> insert(T instance);
+
+    <T> CompletionStage<T> update(T instance);
+
+    <T> CompletionStage<T> delete(T instance);
+
+    <T> CompletionStage<T> findById(Class<T> type, Object id);
+
+    <T> CompletionStage<List<T>> query(Class<T> type, String sql, Consumer<StatementBinder> binder);
+
+    <T> CompletionStage<Optional<T>> querySingle(Class<T> type, String sql, Consumer<StatementBinder> binder);
+
+    <T> CompletionStage<T> query(String sql, Consumer<StatementBinder> binder, Function<ResultSetWrapper, T> resultSetMapper);
+
+    CompletionStage<Integer> execute(String sql, Consumer<StatementBinder> binder);
+
+    CompletionStage<int[]> batch(String sql, Iterator<Consumer<StatementBinder>> binders);
+
+    <T> CompletionStage<int[]> batchInsert(Class<T> type, Iterator<T> instances);
+
+    <T> CompletionStage<int[]> batchUpdate(Class<T> type, Iterator<T> instances);
+
+    <T> CompletionStage<int[]> batchDelete(Class<T> type, Iterator<T> instances);
+}
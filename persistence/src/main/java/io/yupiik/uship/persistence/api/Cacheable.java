@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.api;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks an entity as cacheable: {@link Database#findById(Class, Object)} results are kept in memory
+ * and invalidated when the entity is updated or deleted through the same {@link Database}.
+ * <p>
+ * IMPORTANT: cached instances are shared between callers so it is only intended for reference/configuration like
+ * entities which are not mutated once loaded. Modifications done with plain SQL ({@link Database#execute}, {@link Database#batch})
+ * are not detected, use {@link Database#evict(Class, Object)} in such a case.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface Cacheable {
+    /**
+     * @return max number of entities kept in the cache, least recently used are evicted first.
+     */
+    int maxSize() default 1_000;
+
+    /**
+     * @return time to live of a cached entity in milliseconds, negative means no expiration.
+     */
+    long ttl() default 60_000;
+}
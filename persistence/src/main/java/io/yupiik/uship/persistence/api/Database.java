@@ -20,11 +20,18 @@ import io.yupiik.uship.persistence.api.operation.Operation;
 import io.yupiik.uship.persistence.impl.DatabaseImpl;
 
 import java.sql.ResultSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Database operation repository.
@@ -56,10 +63,70 @@ public interface Database {
      */
     <T> T findById(Class<T> type, Object id);
 
+    /**
+     * Finds entities by identifiers using {@code IN} queries, identifiers are chunked to respect the database limits.
+     * Entities are returned in database order and missing identifiers are ignored.
+     * Note that this method does not use the {@link Cacheable} cache.
+     *
+     * @param type entity type.
+     * @param ids  the identifiers (same format than for {@link #findById(Class, Object)}).
+     * @param <T>  entity type.
+     * @return the found entities.
+     */
+    <T> List<T> findAllById(Class<T> type, Collection<?> ids);
+
+    /**
+     * Same as {@link #findAllById(Class, Collection)} but indexes the entities by identifier,
+     * composite identifiers are represented as a {@link List} of the identifier values (sorted with {@link Id#order()}).
+     *
+     * @param type entity type.
+     * @param ids  the identifiers.
+     * @param <T>  entity type.
+     * @return the found entities per identifier.
+     */
+    <T> Map<Object, T> findAllByIdAsMap(Class<T> type, Collection<?> ids);
+
+    /**
+     * Evicts a {@link Cacheable} entity from the local cache without notifying the
+     * {@link io.yupiik.uship.persistence.spi.CacheInvalidationListener}, typically used when receiving
+     * an invalidation from another node.
+     *
+     * @param type entity type.
+     * @param id   the identifier to evict (same format than for {@link #findById(Class, Object)}), {@code null} to evict all entities of this type.
+     */
+    void evict(Class<?> type, Object id);
+
     <T> List<T> query(Class<T> type, String sql, Consumer<StatementBinder> binder);
 
     <T> Optional<T> querySingle(Class<T> type, String sql, Consumer<StatementBinder> binder);
 
+    /**
+     * Lazy flavor of {@link #query(Class, String, Consumer)}: rows are mapped while iterated
+     * using a forward only and read only statement so memory usage does not depend on the number of rows.
+     * Default fetch size is taken from the configuration and can be overriden with {@link StatementBinder#withFetchSize(int)}.
+     * <p>
+     * IMPORTANT: the returned stream holds a connection until closed so ensure to use it in a try-with-resources.
+     *
+     * @param type   the projection type.
+     * @param sql    the query.
+     * @param binder the statement binder.
+     * @param <T>    projection type.
+     * @return a lazy stream of the query results.
+     */
+    <T> Stream<T> stream(Class<T> type, String sql, Consumer<StatementBinder> binder);
+
+    /**
+     * Same as {@link #stream(Class, String, Consumer)} but as an iterator.
+     * It is automatically closed when fully consumed but must be closed explicitly otherwise.
+     *
+     * @param type   the projection type.
+     * @param sql    the query.
+     * @param binder the statement binder.
+     * @param <T>    projection type.
+     * @return a lazy iterator over the query results.
+     */
+    <T> CloseableIterator<T> iterate(Class<T> type, String sql, Consumer<StatementBinder> binder);
+
     <T> T query(String sql,
                 Consumer<StatementBinder> binder,
                 Function<ResultSetWrapper, T> resultSetMapper);
@@ -74,6 +141,22 @@ public interface Database {
 
     <T> int[] batchDelete(Class<T> type, Iterator<T> instances);
 
+    /**
+     * Same as {@link #batch(String, Iterator)} but results are passed to {@code onChunk} each time a chunk is executed
+     * (see {@link Configuration#setBatchChunkSize(int)}) instead of being aggregated in memory.
+     *
+     * @param sql     the statement.
+     * @param binders the bindings, one per statement.
+     * @param onChunk the callback receiving the update counts of each executed chunk.
+     */
+    void batch(String sql, Iterator<Consumer<StatementBinder>> binders, Consumer<int[]> onChunk);
+
+    <T> void batchInsert(Class<T> type, Iterator<T> instances, Consumer<int[]> onChunk);
+
+    <T> void batchUpdate(Class<T> type, Iterator<T> instances, Consumer<int[]> onChunk);
+
+    <T> void batchDelete(Class<T> type, Iterator<T> instances, Consumer<int[]> onChunk);
+
     /**
      * @param type      entity type.
      * @param resultSet resultset positionned at the row to map (next() already called).
@@ -82,10 +165,85 @@ public interface Database {
      */
     <T> T mapOne(Class<T> type, ResultSet resultSet);
 
+    /**
+     * Keyset (seek) pagination over an entity table: entities are sorted by their identifiers
+     * and next page starts after the last identifier of the previous one, so the cost does not depend on the page index
+     * as with {@code OFFSET}.
+     *
+     * @param type              entity type, it must have at least one {@link Id}.
+     * @param pageSize          max number of entities of the page.
+     * @param continuationToken {@link Page#getContinuationToken()} of the previous page or {@code null} for the first page.
+     * @param <T>               entity type.
+     * @return the page.
+     */
+    <T> Page<T> page(Class<T> type, int pageSize, String continuationToken);
+
+    /**
+     * Lazily iterates over all the pages of an entity table, see {@link #page(Class, int, String)}.
+     * Each page is fetched only when consumed and does not hold any connection.
+     *
+     * @param type     entity type.
+     * @param pageSize max number of entities per page.
+     * @param <T>      entity type.
+     * @return the pages.
+     */
+    default <T> Stream<Page<T>> pages(final Class<T> type, final int pageSize) {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<Page<T>>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private String continuationToken;
+            private boolean done;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super Page<T>> action) {
+                if (done) {
+                    return false;
+                }
+                final var page = page(type, pageSize, continuationToken);
+                continuationToken = page.getContinuationToken();
+                done = !page.hasNext();
+                action.accept(page);
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * Loads parents with their children (one-to-many relationships) in a single query, see {@link JoinFetch}.
+     * Rows are aggregated while streaming (ordered by parent identifier) so only the current parent is kept in memory.
+     * The stream must be closed (it holds a connection until it is fully consumed).
+     *
+     * @param request the parent and joins to load.
+     * @param binder  the binder for the parameters of {@link JoinFetch#setWhere(String)}.
+     * @param <P>     parent type.
+     * @return the parents with their children set.
+     */
+    <P> Stream<P> joinFetch(JoinFetch<P> request, Consumer<StatementBinder> binder);
+
+    /**
+     * Reads an entity table with several queries in parallel, each one reading a range of the partition key
+     * on its own connection, see {@link PartitionedScan}.
+     * Partitions run in the asynchronous executor (see {@link Configuration#setAsyncExecutor(java.util.concurrent.Executor)}).
+     * The stream must be closed (it holds connections until it is fully consumed).
+     * It is rejected with a datasource binding connections to the caller thread ({@code TomcatDataSource}).
+     *
+     * @param request the scan definition.
+     * @param binder  the binder for the parameters of {@link PartitionedScan#setWhere(String)}, called for each partition.
+     * @param <T>     entity type.
+     * @return the entities of all partitions.
+     */
+    <T> Stream<T> partitionedScan(PartitionedScan<T> request, Consumer<StatementBinder> binder);
+
     <T> List<T> mapAll(Class<T> type, ResultSet resultSet);
 
     <T> Entity<T> getOrCreateEntity(Class<T> type);
 
+    /**
+     * With a datasource binding connections to the caller thread ({@code TomcatDataSource}), each call runs in its own
+     * {@code read} (lookups and queries) or {@code write} (other calls) block so it does not join a transaction of the caller.
+     *
+     * @return an asynchronous view of this database, see {@link Configuration#setAsyncExecutor(java.util.concurrent.Executor)}.
+     */
+    AsyncDatabase async();
+
     static Database of(final Configuration configuration) {
         return new DatabaseImpl(configuration);
     }
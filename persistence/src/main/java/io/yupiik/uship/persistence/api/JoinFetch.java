@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Describes a join fetch for {@link Database#joinFetch(JoinFetch, java.util.function.Consumer)}:
+ * a parent entity and its child entities loaded in a single query.
+ * <p>
+ * The parent table is aliased {@code p} and the joined tables {@code j1}, {@code j2}, ... (in the order of the joins),
+ * these aliases can be used in {@link #setWhere(String)}.
+ * Children are matched by a foreign key column (child side) referencing the parent identifier (single column).
+ * Usage:
+ * {@code database.joinFetch(new JoinFetch<>(Order.class).join(OrderLine.class, "order_id", Order::setLines).setWhere("p.customer = ?"), b -> b.bind(customer))}.
+ *
+ * @param <P> the parent type.
+ */
+public class JoinFetch<P> {
+    private final Class<P> type;
+    private final List<Join<P, ?>> joins = new ArrayList<>();
+    private String where;
+
+    public JoinFetch(final Class<P> type) {
+        this.type = type;
+    }
+
+    /**
+     * Adds a one-to-many relationship to load.
+     *
+     * @param type       the child entity type.
+     * @param foreignKey the child column referencing the parent identifier.
+     * @param setter     how to set the children on the parent (called once per parent, children are distinct and sorted by identifier).
+     * @param <C>        the child type.
+     * @return this request.
+     */
+    public <C> JoinFetch<P> join(final Class<C> type, final String foreignKey, final BiConsumer<P, List<C>> setter) {
+        joins.add(new Join<>(type, foreignKey, setter));
+        return this;
+    }
+
+    /**
+     * @param where an optional SQL condition (without {@code WHERE}) using the {@code p}/{@code jN} aliases, it can use bound parameters.
+     * @return this request.
+     */
+    public JoinFetch<P> setWhere(final String where) {
+        this.where = where;
+        return this;
+    }
+
+    public Class<P> getType() {
+        return type;
+    }
+
+    public List<Join<P, ?>> getJoins() {
+        return joins;
+    }
+
+    public String getWhere() {
+        return where;
+    }
+
+    public static class Join<P, C> {
+        private final Class<C> type;
+        private final String foreignKey;
+        private final BiConsumer<P, List<C>> setter;
+
+        private Join(final Class<C> type, final String foreignKey, final BiConsumer<P, List<C>> setter) {
+            this.type = type;
+            this.foreignKey = foreignKey;
+            this.setter = setter;
+        }
+
+        public Class<C> getType() {
+            return type;
+        }
+
+        public String getForeignKey() {
+            return foreignKey;
+        }
+
+        public BiConsumer<P, List<C>> getSetter() {
+            return setter;
+        }
+    }
+}
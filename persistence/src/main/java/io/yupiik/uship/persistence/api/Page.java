@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.api;
+
+import java.util.List;
+
+/**
+ * A page of entities returned by {@link Database#page(Class, int, String)}.
+ *
+ * @param <T> the entity type.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String continuationToken;
+
+    public Page(final List<T> items, final String continuationToken) {
+        this.items = items;
+        this.continuationToken = continuationToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return an opaque token to pass to {@link Database#page(Class, int, String)} to get the next page, {@code null} for the last page.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page[items=" + items + ", continuationToken='" + continuationToken + "']";
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.api;
+
+/**
+ * Describes a partitioned scan for {@link Database#partitionedScan(PartitionedScan, java.util.function.Consumer)}:
+ * the entity table is split over a numeric or temporal key range and partitions are read in parallel, each on its own connection.
+ * <p>
+ * The key is the single {@link Id} column of the entity by default but any numeric, date or timestamp column can be used.
+ * If bounds are not set, they are computed with a {@code MIN}/{@code MAX} query.
+ * Rows with a {@code null} key are read by a dedicated partition, returned last when ordered whatever the database null ordering is.
+ *
+ * @param <T> the entity type.
+ */
+public class PartitionedScan<T> {
+    private final Class<T> type;
+    private String column;
+    private String where;
+    private Object min;
+    private Object max;
+    private int partitions = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight = -1;
+    private int bufferSize = 1024;
+    private boolean ordered;
+
+    public PartitionedScan(final Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * @param column the column to partition on (SQL name), defaults to the single {@link Id} of the entity.
+     * @return this request.
+     */
+    public PartitionedScan<T> setColumn(final String column) {
+        this.column = column;
+        return this;
+    }
+
+    /**
+     * @param where an optional SQL condition (without {@code WHERE}) applied to all partitions, it can use positional or named parameters (not both).
+     * @return this request.
+     */
+    public PartitionedScan<T> setWhere(final String where) {
+        this.where = where;
+        return this;
+    }
+
+    /**
+     * @param min lower bound of the key (only used to compute partition boundaries, lower keys are still read).
+     * @return this request.
+     */
+    public PartitionedScan<T> setMin(final Object min) {
+        this.min = min;
+        return this;
+    }
+
+    /**
+     * @param max upper bound of the key (only used to compute partition boundaries, greater keys are still read).
+     * @return this request.
+     */
+    public PartitionedScan<T> setMax(final Object max) {
+        this.max = max;
+        return this;
+    }
+
+    /**
+     * @param partitions number of partitions (ranges), can be less if the key range is too small.
+     * @return this request.
+     */
+    public PartitionedScan<T> setPartitions(final int partitions) {
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * @param maxInFlight max number of partitions read concurrently (so connections used), negative means the asynchronous max concurrency
+     *                    or the pool size when it can be detected (number of processors otherwise).
+     * @return this request.
+     */
+    public PartitionedScan<T> setMaxInFlight(final int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * @param bufferSize max number of entities read in advance per partition (or for all partitions when not ordered).
+     * @return this request.
+     */
+    public PartitionedScan<T> setBufferSize(final int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * @param ordered if {@code true} entities are returned sorted by key, else in the order partitions produce them.
+     * @return this request.
+     */
+    public PartitionedScan<T> setOrdered(final boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getWhere() {
+        return where;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+}
@@ -30,4 +30,20 @@ public interface StatementBinder {
     default StatementBinder bind(Object instance) {
         return bind(instance.getClass(), instance);
     }
+
+    /**
+     * Binds a named parameter ({@code :name} in the SQL).
+     * A collection (or array) value is expanded, it is typically used for {@code IN (:ids)} clauses.
+     * Named parameters must be enabled with {@code Configuration#setNamedParameters(true)}.
+     *
+     * @param name     the parameter name (without the leading colon).
+     * @param type     the value type, used for {@code null} values.
+     * @param instance the value.
+     * @return this binder.
+     */
+    StatementBinder bind(String name, Class<?> type, Object instance);
+
+    default StatementBinder bind(final String name, final Object instance) {
+        return bind(name, instance == null ? Object.class : instance.getClass(), instance);
+    }
 }
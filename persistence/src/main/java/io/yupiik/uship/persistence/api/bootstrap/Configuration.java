@@ -15,10 +15,16 @@
  */
 package io.yupiik.uship.persistence.api.bootstrap;
 
+import io.yupiik.uship.persistence.spi.CacheInvalidationListener;
 import io.yupiik.uship.persistence.spi.DatabaseTranslation;
+import io.yupiik.uship.persistence.spi.QueryListener;
+import io.yupiik.uship.persistence.spi.ReplicaRouter;
 
 import javax.sql.DataSource;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
@@ -27,6 +33,17 @@ public class Configuration {
     private Function<Class<?>, Object> instanceLookup;
     private DataSource dataSource;
     private DatabaseTranslation translation;
+    private int streamFetchSize;
+    private boolean namedParameters;
+    private int statementCacheSize;
+    private CacheInvalidationListener cacheInvalidationListener;
+    private int batchChunkSize;
+    private boolean batchCommitPerChunk;
+    private Executor batchPrefetchExecutor;
+    private Executor asyncExecutor;
+    private int asyncMaxConcurrency = -1;
+    private ReplicaRouter replicaRouter;
+    private final List<QueryListener> queryListeners = new ArrayList<>();
 
     public Function<Class<?>, Object> getInstanceLookup() {
         return instanceLookup;
@@ -55,6 +72,166 @@ public class Configuration {
         return this;
     }
 
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    /**
+     * @param streamFetchSize default fetch size for streamed queries, {@code 0} means driver default.
+     * @return this configuration.
+     */
+    public Configuration setStreamFetchSize(final int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+        return this;
+    }
+
+    public boolean isNamedParameters() {
+        return namedParameters;
+    }
+
+    /**
+     * @param namedParameters if {@code true}, {@code :name} placeholders of raw SQL statements are parsed as named parameters,
+     *                        disabled by default since {@code :} is also used by some SQL dialects
+     *                        (PostgreSQL array slices, Oracle trigger {@code :new}/{@code :old}, ...).
+     * @return this configuration.
+     */
+    public Configuration setNamedParameters(final boolean namedParameters) {
+        this.namedParameters = namedParameters;
+        return this;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @param statementCacheSize max number of prepared statements kept open per physical connection,
+     *                           {@code 0} (default) disables the cache.
+     *                           Only useful with a pooled datasource.
+     * @return this configuration.
+     */
+    public Configuration setStatementCacheSize(final int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    public CacheInvalidationListener getCacheInvalidationListener() {
+        return cacheInvalidationListener;
+    }
+
+    /**
+     * @param cacheInvalidationListener called when a {@link io.yupiik.uship.persistence.api.Cacheable} entity is invalidated locally,
+     *                                  typically to broadcast it to other nodes.
+     * @return this configuration.
+     */
+    public Configuration setCacheInvalidationListener(final CacheInvalidationListener cacheInvalidationListener) {
+        this.cacheInvalidationListener = cacheInvalidationListener;
+        return this;
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    /**
+     * @param batchChunkSize max number of statements added to a JDBC batch before executing it, {@code 0} (default) means a single batch.
+     * @return this configuration.
+     */
+    public Configuration setBatchChunkSize(final int batchChunkSize) {
+        this.batchChunkSize = batchChunkSize;
+        return this;
+    }
+
+    public boolean isBatchCommitPerChunk() {
+        return batchCommitPerChunk;
+    }
+
+    /**
+     * @param batchCommitPerChunk if {@code true} and the connection is not in auto commit mode, each executed chunk is committed.
+     * @return this configuration.
+     */
+    public Configuration setBatchCommitPerChunk(final boolean batchCommitPerChunk) {
+        this.batchCommitPerChunk = batchCommitPerChunk;
+        return this;
+    }
+
+    public Executor getBatchPrefetchExecutor() {
+        return batchPrefetchExecutor;
+    }
+
+    /**
+     * @param batchPrefetchExecutor when set (and chunking is enabled), a chunk is executed in this executor while the next one
+     *                              is pulled from the batch iterator (the iterator is only used by the caller thread).
+     * @return this configuration.
+     */
+    public Configuration setBatchPrefetchExecutor(final Executor batchPrefetchExecutor) {
+        this.batchPrefetchExecutor = batchPrefetchExecutor;
+        return this;
+    }
+
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * @param asyncExecutor the executor used by {@link io.yupiik.uship.persistence.api.Database#async()},
+     *                      if not set virtual threads are used when the JVM supports them, a pool bounded by the max concurrency otherwise.
+     * @return this configuration.
+     */
+    public Configuration setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    public int getAsyncMaxConcurrency() {
+        return asyncMaxConcurrency;
+    }
+
+    /**
+     * @param asyncMaxConcurrency max concurrent asynchronous calls, {@code 0} means unbounded and a negative value (default)
+     *                            means the max size of the datasource pool if it can be detected (unbounded otherwise).
+     * @return this configuration.
+     */
+    public Configuration setAsyncMaxConcurrency(final int asyncMaxConcurrency) {
+        this.asyncMaxConcurrency = asyncMaxConcurrency;
+        return this;
+    }
+
+    public ReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+
+    /**
+     * Routes read queries ({@code query}, {@code querySingle}, {@code stream}, {@code findById} and {@code @Statement} selects)
+     * executed in a {@link ReplicaRouter#read(java.util.function.Supplier)} block to read replicas,
+     * anything else stays on the datasource.
+     * IMPORTANT: do not use it with a thread bound datasource ({@code TomcatDataSource}), set the router on the datasource instead.
+     *
+     * @param replicaRouter the replica router.
+     * @return this configuration.
+     */
+    public Configuration setReplicaRouter(final ReplicaRouter replicaRouter) {
+        this.replicaRouter = replicaRouter;
+        return this;
+    }
+
+    public List<QueryListener> getQueryListeners() {
+        return queryListeners;
+    }
+
+    /**
+     * Registers a listener called after each statement execution with its timings,
+     * see {@code QueryMetrics} and {@code SlowQueryLogger} for built-in implementations.
+     * When no listener is registered, statements are not measured at all.
+     *
+     * @param listener the listener to register.
+     * @return this configuration.
+     */
+    public Configuration addQueryListener(final QueryListener listener) {
+        this.queryListeners.add(requireNonNull(listener, "null listener"));
+        return this;
+    }
+
     public void validate() {
         requireNonNull(dataSource, "No datasource set");
     }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl;
+
+import io.yupiik.uship.persistence.api.AsyncDatabase;
+import io.yupiik.uship.persistence.api.Database;
+import io.yupiik.uship.persistence.api.ResultSetWrapper;
+import io.yupiik.uship.persistence.api.StatementBinder;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the calls in the executor, when concurrency is bounded a call is only submitted to the executor once it got a permit,
+ * pending calls wait in a FIFO queue without holding any thread.
+ */
+public class AsyncDatabaseImpl implements AsyncDatabase {
+    private final Database database;
+    private final Executor executor;
+    private final Semaphore permits; // null means unbounded
+    private final CallScope scope; // null means the call uses the database directly
+    private final Queue<PendingCall<?>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param database       the blocking database to delegate to.
+     * @param executor       the executor to run the calls in.
+     * @param maxConcurrency max concurrent calls, negative or zero means unbounded.
+     */
+    public AsyncDatabaseImpl(final Database database, final Executor executor, final int maxConcurrency) {
+        this(database, executor, maxConcurrency, null);
+    }
+
+    /**
+     * @param database       the blocking database to delegate to.
+     * @param executor       the executor to run the calls in.
+     * @param maxConcurrency max concurrent calls, negative or zero means unbounded.
+     * @param scope          wraps each call in the executor thread, {@code null} to call the database directly.
+     */
+    public AsyncDatabaseImpl(final Database database, final Executor executor, final int maxConcurrency, final CallScope scope) {
+        this.database = database;
+        this.executor = executor;
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+        this.scope = scope;
+    }
+
+    @Override
+    public <T> CompletionStage<T> submit(final Function<Database, T> task) {
+        return submit(false, task);
+    }
+
+    private <T> CompletionStage<T> submit(final boolean readOnly, final Function<Database, T> task) {
+        final var call = new PendingCall<>(readOnly, task);
+        if (permits == null) {
+            execute(call);
+        } else {
+            pending.add(call);
+            drain();
+        }
+        return call.result;
+    }
+
+    // a call leaving the queue always owns a permit, released once it completes (or is rejected)
+    private void drain() {
+        while (!pending.isEmpty() && permits.tryAcquire()) {
+            final var call = pending.poll();
+            if (call == null) {
+                permits.release();
+                continue;
+            }
+            execute(call);
+        }
+    }
+
+    private void execute(final PendingCall<?> call) {
+        try {
+            executor.execute(call);
+        } catch (final RuntimeException e) { // rejected
+            call.result.completeExceptionally(e);
+            onCompletion();
+        }
+    }
+
+    private void onCompletion() {
+        if (permits != null) {
+            permits.release();
+            drain();
+        }
+    }
+
+    @Override
+    public <M, T> CompletionStage<T> operation(final Class<M> api, final Function<M, T> task) {
+        final var operation = database.operation(api);
+        return submit(db -> task.apply(operation));
+    }
+
+    @Override
+    public <T> CompletionStage<T> insert(final T instance) {
+        return submit(db -> db.insert(instance));
+    }
+
+    @Override
+    public <T> CompletionStage<T> update(final T instance) {
+        return submit(db -> db.update(instance));
+    }
+
+    @Override
+    public <T> CompletionStage<T> delete(final T instance) {
+        return submit(db -> db.delete(instance));
+    }
+
+    @Override
+    public <T> CompletionStage<T> findById(final Class<T> type, final Object id) {
+        return submit(true, db -> db.findById(type, id));
+    }
+
+    @Override
+    public <T> CompletionStage<List<T>> query(final Class<T> type, final String sql, final Consumer<StatementBinder> binder) {
+        return submit(true, db -> db.query(type, sql, binder));
+    }
+
+    @Override
+    public <T> CompletionStage<Optional<T>> querySingle(final Class<T> type, final String sql, final Consumer<StatementBinder> binder) {
+        return submit(true, db -> db.querySingle(type, sql, binder));
+    }
+
+    @Override
+    public <T> CompletionStage<T> query(final String sql, final Consumer<StatementBinder> binder,
+                                        final Function<ResultSetWrapper, T> resultSetMapper) {
+        return submit(true, db -> db.query(sql, binder, resultSetMapper));
+    }
+
+    @Override
+    public CompletionStage<Integer> execute(final String sql, final Consumer<StatementBinder> binder) {
+        return submit(db -> db.execute(sql, binder));
+    }
+
+    @Override
+    public CompletionStage<int[]> batch(final String sql, final Iterator<Consumer<StatementBinder>> binders) {
+        return submit(db -> db.batch(sql, binders));
+    }
+
+    @Override
+    public <T> CompletionStage<int[]> batchInsert(final Class<T> type, final Iterator<T> instances) {
+        return submit(db -> db.batchInsert(type, instances));
+    }
+
+    @Override
+    public <T> CompletionStage<int[]> batchUpdate(final Class<T> type, final Iterator<T> instances) {
+        return submit(db -> db.batchUpdate(type, instances));
+    }
+
+    @Override
+    public <T> CompletionStage<int[]> batchDelete(final Class<T> type, final Iterator<T> instances) {
+        return submit(db -> db.batchDelete(type, instances));
+    }
+
+    /**
+     * Enables to run each call in a dedicated context, for example a read or write block of a datasource
+     * binding its connection to the current thread.
+     */
+    public interface CallScope {
+        /**
+         * @param readOnly {@code true} for lookups and queries, {@code false} for writes and custom tasks.
+         * @param call     the database call.
+         * @param <T>      the returned type.
+         * @return the call result.
+         */
+        <T> T execute(boolean readOnly, Supplier<T> call);
+    }
+
+    private class PendingCall<T> implements Runnable {
+        private final boolean readOnly;
+        private final Function<Database, T> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private PendingCall(final boolean readOnly, final Function<Database, T> task) {
+            this.readOnly = readOnly;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            T value = null;
+            Throwable error = null;
+            try {
+                value = scope == null ? task.apply(database) : scope.execute(readOnly, () -> task.apply(database));
+            } catch (final RuntimeException | Error e) {
+                error = e;
+            } finally {
+                onCompletion(); // before the completion to not hold the permit during synchronous continuations
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+}
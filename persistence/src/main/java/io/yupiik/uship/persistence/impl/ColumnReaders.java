@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl;
+
+import io.yupiik.uship.persistence.api.Column;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Map.entry;
+
+/**
+ * Resolves once per column how to read it from a {@link ResultSet} to avoid to test the type for each cell,
+ * it is the single type to getter table also used by {@link DatabaseImpl#lookup(ResultSet, int, Class)}.
+ */
+public final class ColumnReaders {
+    private static final MethodType OBJECT_SETTER = methodType(void.class, Object.class, Object.class);
+    private static final Map<Class<?>, ColumnReader> READERS = Map.ofEntries(
+            entry(String.class, ResultSet::getString),
+            entry(byte.class, ResultSet::getByte),
+            entry(byte[].class, ResultSet::getBytes),
+            entry(Integer.class, ResultSet::getInt),
+            entry(int.class, ResultSet::getInt),
+            entry(Double.class, ResultSet::getDouble),
+            entry(double.class, ResultSet::getDouble),
+            entry(Float.class, ResultSet::getFloat),
+            entry(float.class, ResultSet::getFloat),
+            entry(Long.class, ResultSet::getLong),
+            entry(long.class, ResultSet::getLong),
+            entry(Boolean.class, ResultSet::getBoolean),
+            entry(boolean.class, ResultSet::getBoolean),
+            entry(Date.class, ResultSet::getDate));
+
+    private ColumnReaders() {
+        // no-op
+    }
+
+    public static ColumnReader of(final Class<?> type, final Column.ValueMapper<?, ?> mapper) {
+        if (mapper != null) {
+            final Column.ValueMapper<Object, String> stringMapper = (Column.ValueMapper<Object, String>) mapper;
+            return (resultSet, index) -> stringMapper.toJava(resultSet.getString(index));
+        }
+        return of(type);
+    }
+
+    public static ColumnReader of(final Class<?> type) {
+        final var reader = READERS.get(type);
+        return reader != null ? reader : (resultSet, index) -> resultSet.getObject(index, type);
+    }
+
+    /**
+     * Reads a single cell, prefer {@link #of(Class)} when the same column is read for each row.
+     *
+     * @param resultSet the result set.
+     * @param index     the column index.
+     * @param type      the expected type.
+     * @return the value.
+     * @throws SQLException if the read fails.
+     */
+    public static Object read(final ResultSet resultSet, final int index, final Class<?> type) throws SQLException {
+        final var reader = READERS.get(type);
+        return reader != null ? reader.read(resultSet, index) : resultSet.getObject(index, type);
+    }
+
+    /**
+     * Creates a writer reading a column and setting it in a field.
+     * Primitive fields are read with the primitive getter and set through a primitive typed handle to avoid boxing.
+     *
+     * @param type      field type.
+     * @param mapper    the column mapper if any.
+     * @param rawSetter the field setter with its exact signature ({@code (Owner, type) -> void}).
+     * @return the column writer.
+     */
+    public static ColumnWriter writer(final Class<?> type, final Column.ValueMapper<?, ?> mapper, final MethodHandle rawSetter) {
+        if (mapper == null && type.isPrimitive()) {
+            final var setter = rawSetter.asType(methodType(void.class, Object.class, type));
+            if (int.class == type) {
+                return (instance, resultSet, index) -> {
+                    setter.invokeExact(instance, resultSet.getInt(index));
+                };
+            }
+            if (long.class == type) {
+                return (instance, resultSet, index) -> {
+                    setter.invokeExact(instance, resultSet.getLong(index));
+                };
+            }
+            if (double.class == type) {
+                return (instance, resultSet, index) -> {
+                    setter.invokeExact(instance, resultSet.getDouble(index));
+                };
+            }
+            if (float.class == type) {
+                return (instance, resultSet, index) -> {
+                    setter.invokeExact(instance, resultSet.getFloat(index));
+                };
+            }
+            if (boolean.class == type) {
+                return (instance, resultSet, index) -> {
+                    setter.invokeExact(instance, resultSet.getBoolean(index));
+                };
+            }
+            if (byte.class == type) {
+                return (instance, resultSet, index) -> {
+                    setter.invokeExact(instance, resultSet.getByte(index));
+                };
+            }
+            if (short.class == type) {
+                return (instance, resultSet, index) -> {
+                    setter.invokeExact(instance, resultSet.getShort(index));
+                };
+            }
+        }
+
+        final var reader = of(type, mapper);
+        final var setter = rawSetter.asType(OBJECT_SETTER);
+        return (instance, resultSet, index) -> {
+            setter.invokeExact(instance, reader.read(resultSet, index));
+        };
+    }
+
+    @FunctionalInterface
+    public interface ColumnReader {
+        Object read(ResultSet resultSet, int index) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface ColumnWriter {
+        void write(Object instance, ResultSet resultSet, int index) throws Throwable;
+    }
+}
@@ -15,64 +15,126 @@
  */
 package io.yupiik.uship.persistence.impl;
 
+import io.yupiik.uship.persistence.api.AsyncDatabase;
+import io.yupiik.uship.persistence.api.CloseableIterator;
 import io.yupiik.uship.persistence.api.Database;
 import io.yupiik.uship.persistence.api.Entity;
+import io.yupiik.uship.persistence.api.JoinFetch;
+import io.yupiik.uship.persistence.api.Page;
+import io.yupiik.uship.persistence.api.PartitionedScan;
 import io.yupiik.uship.persistence.api.PersistenceException;
 import io.yupiik.uship.persistence.api.ResultSetWrapper;
 import io.yupiik.uship.persistence.api.StatementBinder;
 import io.yupiik.uship.persistence.api.bootstrap.Configuration;
+import io.yupiik.uship.persistence.impl.cache.EntityCache;
+import io.yupiik.uship.persistence.impl.datasource.ContextualConnection;
+import io.yupiik.uship.persistence.impl.metrics.QueryTracker;
 import io.yupiik.uship.persistence.impl.operation.Operations;
+import io.yupiik.uship.persistence.impl.query.ColumnIndex;
 import io.yupiik.uship.persistence.impl.query.CompiledQuery;
 import io.yupiik.uship.persistence.impl.query.QueryCompiler;
 import io.yupiik.uship.persistence.impl.query.QueryKey;
+import io.yupiik.uship.persistence.impl.query.SqlTemplate;
+import io.yupiik.uship.persistence.impl.query.StatementCache;
 import io.yupiik.uship.persistence.impl.query.StatementBinderImpl;
 import io.yupiik.uship.persistence.impl.translation.DefaultTranslation;
 import io.yupiik.uship.persistence.impl.translation.H2Translation;
 import io.yupiik.uship.persistence.impl.translation.MySQLTranslation;
 import io.yupiik.uship.persistence.impl.translation.OracleTranslation;
 import io.yupiik.uship.persistence.impl.translation.PostgresTranslation;
+import io.yupiik.uship.persistence.spi.CacheInvalidationListener;
 import io.yupiik.uship.persistence.spi.DatabaseTranslation;
+import io.yupiik.uship.persistence.spi.QueryEvent;
+import io.yupiik.uship.persistence.spi.QueryListener;
+import io.yupiik.uship.persistence.spi.ReplicaRouter;
 
 import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Locale.ROOT;
-import static java.util.Map.entry;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.empty;
 import static java.util.Optional.ofNullable;
+import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 
 public class DatabaseImpl implements Database {
+    private static final int MAX_ROWS_PER_INSERT = 1_000; // avoid too big statements even if the database accepts it
+    private static final int MAX_IDS_PER_QUERY = 1_000;
+
     private final DataSource datasource;
     private final DatabaseTranslation translation;
     private final Map<Class<?>, EntityImpl<?>> entities = new ConcurrentHashMap<>();
     private final QueryCompiler queryCompiler = new QueryCompiler(this);
     private final Function<Class<?>, Object> instanceLookup;
+    private final int streamFetchSize;
+    private final boolean namedParameters;
+    private final StatementCache statementCache;
+    private final CacheInvalidationListener cacheInvalidationListener;
+    private final ReplicaRouter replicaRouter;
+    private final int batchChunkSize;
+    private final boolean batchCommitPerChunk;
+    private final Executor batchPrefetchExecutor;
+    private final Executor asyncExecutor;
+    private final int asyncMaxConcurrency;
+    private final QueryListener[] queryListeners;
+    private volatile AsyncDatabase async;
+    private volatile Executor defaultAsyncExecutor;
 
     public DatabaseImpl(final Configuration configuration) {
         this.datasource = configuration.getDataSource();
         this.instanceLookup = configuration.getInstanceLookup();
+        this.streamFetchSize = configuration.getStreamFetchSize();
+        this.namedParameters = configuration.isNamedParameters();
+        this.statementCache = new StatementCache(configuration.getStatementCacheSize());
+        this.cacheInvalidationListener = configuration.getCacheInvalidationListener();
+        this.replicaRouter = configuration.getReplicaRouter();
+        this.batchChunkSize = configuration.getBatchChunkSize();
+        this.batchCommitPerChunk = configuration.isBatchCommitPerChunk();
+        this.batchPrefetchExecutor = configuration.getBatchPrefetchExecutor();
+        this.asyncExecutor = configuration.getAsyncExecutor();
+        this.asyncMaxConcurrency = configuration.getAsyncMaxConcurrency();
+        this.queryListeners = configuration.getQueryListeners().toArray(new QueryListener[0]);
         this.translation = configuration.getTranslation() == null ? guessTranslation() : configuration.getTranslation();
     }
 
@@ -88,6 +150,18 @@ public class DatabaseImpl implements Database {
         return translation;
     }
 
+    public boolean isNamedParameters() {
+        return namedParameters;
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    public QueryTracker track(final String sql, final QueryEvent.Kind kind) {
+        return queryListeners.length == 0 ? QueryTracker.NOOP : new QueryTracker(sql, kind, queryListeners);
+    }
+
     // mainly enables some cleanup if needed, not exposed as such in the API
     public Map<Class<?>, EntityImpl<?>> getEntities() {
         return entities;
@@ -98,15 +172,22 @@ public class DatabaseImpl implements Database {
         requireNonNull(type, "can't query without a projection");
         requireNonNull(sql, "can't query without a query");
         final var compiledQuery = queryCompiler.getOrCreate(new QueryKey<>(type, sql));
-        try (final var connection = datasource.getConnection();
+        try (final var tracker = track(sql, QueryEvent.Kind.QUERY);
+             final var connection = readConnection();
              final var query = compiledQuery.apply(connection)) {
+            tracker.connectionAcquired();
             binder.accept(query);
+            tracker.parameters(query.getBoundParameters());
             try (final var rset = query.getPreparedStatement().executeQuery()) {
+                tracker.executed();
                 final var columns = getAndCacheColumns(compiledQuery, rset);
+                final var index = compiledQuery.getColumnIndex();
                 final Function<ResultSet, T> provider = type == Map.class ?
-                        line -> (T) mapAsMap(List.of(columns), line) :
+                        line -> (T) index.read(line) :
                         getEntityImpl(type).nextProvider(columns, rset);
-                return new ResultSetWrapperImpl(rset).mapAll(provider::apply);
+                final var result = new ResultSetWrapperImpl(rset).mapAll(provider::apply);
+                tracker.mapped(result.size()).succeeded(-1);
+                return result;
             }
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
@@ -118,21 +199,28 @@ public class DatabaseImpl implements Database {
         requireNonNull(type, "can't query without a projection");
         requireNonNull(sql, "can't query without a query");
         final var compiledQuery = queryCompiler.getOrCreate(new QueryKey<>(type, sql));
-        try (final var connection = datasource.getConnection();
+        try (final var tracker = track(sql, QueryEvent.Kind.QUERY);
+             final var connection = readConnection();
              final var query = compiledQuery.apply(connection)) {
+            tracker.connectionAcquired();
             binder.accept(query);
+            tracker.parameters(query.getBoundParameters());
             try (final var rset = query.getPreparedStatement().executeQuery()) {
+                tracker.executed();
                 if (!rset.next()) {
+                    tracker.succeeded(0);
                     return empty();
                 }
 
                 final var columns = getAndCacheColumns(compiledQuery, rset);
                 final var value = type == Map.class ?
-                        (T) mapAsMap(List.of(columns), rset) :
+                        (T) compiledQuery.getColumnIndex().read(rset) :
                         getEntityImpl(type).nextProvider(columns, rset).apply(rset);
                 if (rset.next()) {
+                    tracker.mapped(2).succeeded(-1);
                     return empty();
                 }
+                tracker.mapped(1).succeeded(-1);
                 return Optional.of(value);
             }
         } catch (final SQLException ex) {
@@ -140,17 +228,269 @@ public class DatabaseImpl implements Database {
         }
     }
 
+    @Override
+    public <T> Stream<T> stream(final Class<T> type, final String sql, final Consumer<StatementBinder> binder) {
+        final var iterator = iterate(type, sql, binder);
+        return StreamSupport.stream(spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public <T> CloseableIterator<T> iterate(final Class<T> type, final String sql, final Consumer<StatementBinder> binder) {
+        requireNonNull(type, "can't query without a projection");
+        requireNonNull(sql, "can't query without a query");
+        final var compiledQuery = queryCompiler.getOrCreate(new QueryKey<>(type, sql));
+        final var tracker = track(sql, QueryEvent.Kind.STREAM);
+        Connection connection = null;
+        StatementBinderImpl query = null;
+        ResultSet rset = null;
+        try {
+            connection = readConnection();
+            tracker.connectionAcquired();
+            query = compiledQuery.apply(connection).withReadOnlyForwardOnlyStatement();
+            if (streamFetchSize != 0) {
+                query.withFetchSize(streamFetchSize);
+            }
+            binder.accept(query);
+            tracker.parameters(query.getBoundParameters());
+            rset = query.getPreparedStatement().executeQuery();
+            tracker.executed();
+
+            final var columns = getAndCacheColumns(compiledQuery, rset);
+            final var index = compiledQuery.getColumnIndex();
+            final Function<ResultSet, T> mapper = type == Map.class ?
+                    line -> (T) index.read(line) :
+                    getEntityImpl(type).nextProvider(columns, rset);
+            if (tracker == QueryTracker.NOOP) {
+                return new ResultSetIterator<>(rset, mapper, query, connection);
+            }
+            // mapping time is not measured there since it is interleaved with caller code
+            final Function<ResultSet, T> provider = line -> {
+                tracker.row();
+                return mapper.apply(line);
+            };
+            return new ResultSetIterator<>(rset, provider, query, connection, () -> {
+                tracker.succeeded(-1);
+                tracker.close();
+            });
+        } catch (final SQLException | RuntimeException ex) {
+            try {
+                ResultSetIterator.closeAll(rset, query, connection, tracker);
+            } catch (final PersistenceException pe) {
+                ex.addSuppressed(pe);
+            }
+            if (SQLException.class.isInstance(ex)) {
+                throw new PersistenceException(ex);
+            }
+            throw RuntimeException.class.cast(ex);
+        }
+    }
+
+    @Override
+    public <P> Stream<P> joinFetch(final JoinFetch<P> request, final Consumer<StatementBinder> binder) {
+        requireNonNull(request, "can't join fetch without a request");
+        requireNonNull(binder, "can't join fetch without a binder");
+        final var parent = getEntityImpl(request.getType());
+        final var parentIds = parent.getIdColumns();
+        if (parentIds.size() != 1) {
+            throw new PersistenceException("Join fetch requires a single @Id on " + request.getType().getName());
+        }
+        final var joined = request.getJoins().stream()
+                .map(join -> {
+                    final var entity = getEntityImpl(join.getType());
+                    if (entity.getIdColumns().isEmpty()) {
+                        throw new PersistenceException("Join fetch requires an @Id on " + join.getType().getName());
+                    }
+                    return entity;
+                })
+                .collect(toList());
+
+        final var sql = new StringBuilder("SELECT ")
+                .append(parent.concatenateColumns(new Entity.ColumnsConcatenationRequest().setPrefix("p.").setAliasPrefix("p_")));
+        for (int i = 0; i < joined.size(); i++) {
+            final var alias = "j" + (i + 1);
+            sql.append(", ").append(joined.get(i).concatenateColumns(new Entity.ColumnsConcatenationRequest()
+                    .setPrefix(alias + '.').setAliasPrefix(alias + '_')));
+        }
+        final var parentId = "p." + translation.wrapFieldName(parentIds.get(0).columnName());
+        sql.append(" FROM ").append(parent.getTable()).append(" p");
+        final var orderBy = new StringBuilder(" ORDER BY ").append(parentId);
+        for (int i = 0; i < joined.size(); i++) {
+            final var alias = "j" + (i + 1);
+            sql.append(" LEFT JOIN ").append(joined.get(i).getTable()).append(' ').append(alias)
+                    .append(" ON ").append(alias).append('.').append(translation.wrapFieldName(request.getJoins().get(i).getForeignKey()))
+                    .append(" = ").append(parentId);
+            for (final var id : joined.get(i).getIdColumns()) {
+                orderBy.append(", ").append(alias).append('.').append(translation.wrapFieldName(id.columnName()));
+            }
+        }
+        if (request.getWhere() != null && !request.getWhere().isBlank()) {
+            sql.append(" WHERE ").append(request.getWhere());
+        }
+        final var query = sql.append(orderBy).toString();
+
+        final var compiledQuery = queryCompiler.getOrCreate(new QueryKey<>(Object.class, query));
+        final var tracker = track(query, QueryEvent.Kind.STREAM);
+        Connection connection = null;
+        StatementBinderImpl statement = null;
+        ResultSet rset = null;
+        try {
+            connection = readConnection();
+            tracker.connectionAcquired();
+            statement = compiledQuery.apply(connection).withReadOnlyForwardOnlyStatement();
+            if (streamFetchSize != 0) {
+                statement.withFetchSize(streamFetchSize);
+            }
+            binder.accept(statement);
+            tracker.parameters(statement.getBoundParameters());
+            rset = statement.getPreparedStatement().executeQuery();
+            tracker.executed();
+
+            final var columns = getAndCacheColumns(compiledQuery, rset);
+            final var joins = new ArrayList<JoinFetchIterator.JoinMapping<P, ?>>(joined.size());
+            for (int i = 0; i < joined.size(); i++) {
+                joins.add(toJoinMapping(request.getJoins().get(i), joined.get(i), "j" + (i + 1) + '_', columns));
+            }
+            final var iterator = new JoinFetchIterator<>(
+                    rset, parent.mapFromPrefix("p_", columns), parent.findIdIndices("p_", columns), joins,
+                    statement, connection, tracker == QueryTracker.NOOP ? null : () -> {
+                        tracker.succeeded(-1);
+                        tracker.close();
+                    });
+            return StreamSupport.stream(spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(iterator::close);
+        } catch (final SQLException | RuntimeException ex) {
+            try {
+                ResultSetIterator.closeAll(rset, statement, connection, tracker);
+            } catch (final PersistenceException pe) {
+                ex.addSuppressed(pe);
+            }
+            if (SQLException.class.isInstance(ex)) {
+                throw new PersistenceException(ex);
+            }
+            throw RuntimeException.class.cast(ex);
+        }
+    }
+
+    private <P, C> JoinFetchIterator.JoinMapping<P, C> toJoinMapping(final JoinFetch.Join<P, C> join, final EntityImpl<?> entity,
+                                                                       final String prefix, final String[] columns) {
+        return new JoinFetchIterator.JoinMapping<>(
+                entity.mapFromPrefix(prefix, columns).andThen(join.getType()::cast),
+                entity.findIdIndices(prefix, columns), join.getSetter());
+    }
+
+    @Override
+    public <T> Stream<T> partitionedScan(final PartitionedScan<T> request, final Consumer<StatementBinder> binder) {
+        requireNonNull(request, "can't scan without a request");
+        requireNonNull(binder, "can't scan without a binder");
+        if (isThreadBound(datasource)) {
+            throw new PersistenceException("partitionedScan() can't be used with a TomcatDataSource " +
+                    "since partitions run in other threads and its connections are bound to the caller thread");
+        }
+        final var entity = getEntityImpl(request.getType());
+        final var key = findPartitionKey(entity, request.getColumn());
+        final var column = translation.wrapFieldName(key.columnName());
+        final var where = request.getWhere() == null || request.getWhere().isBlank() ? null : request.getWhere();
+        final Class<?> keyType = Class.class.isInstance(key.type()) ? Class.class.cast(key.type()) : Object.class;
+
+        var min = request.getMin();
+        var max = request.getMax();
+        if ((min == null || max == null) && request.getPartitions() > 1) {
+            final var bounds = query(
+                    "SELECT MIN(" + column + "), MAX(" + column + ") FROM " + entity.getTable() + (where == null ? "" : " WHERE " + where),
+                    binder, r -> r.map(rset -> rset.next() ?
+                            new Object[]{lookup(rset, 1, keyType), lookup(rset, 2, keyType)} :
+                            new Object[2]));
+            min = min == null ? bounds[0] : min;
+            max = max == null ? bounds[1] : max;
+        }
+        final var boundaries = PartitionBoundaries.compute(min, max, request.getPartitions(), keyType);
+
+        // a where clause with named parameters can't be mixed with positional range parameters
+        final boolean named = namedParameters && where != null && SqlTemplate.parse(where).hasNamedParameters();
+        final var from = named ? ":partitionFrom" : "?";
+        final var to = named ? ":partitionTo" : "?";
+        final var base = entity.getFindAllQuery() + " WHERE " + (where == null ? "" : '(' + where + ") AND ");
+        final var orderBy = request.isOrdered() ? " ORDER BY " + column : "";
+        final var partitions = new ArrayList<Supplier<CloseableIterator<T>>>(boundaries.size() + 2);
+        if (boundaries.isEmpty() && !request.isOrdered()) {
+            final var sql = entity.getFindAllQuery() + (where == null ? "" : " WHERE " + where);
+            partitions.add(() -> iterate(request.getType(), sql, binder));
+        } else if (boundaries.isEmpty()) {
+            final var sql = base + column + " IS NOT NULL" + orderBy;
+            partitions.add(() -> iterate(request.getType(), sql, binder));
+        } else {
+            for (int i = 0; i <= boundaries.size(); i++) {
+                final var lower = i == 0 ? null : boundaries.get(i - 1);
+                final var upper = i == boundaries.size() ? null : boundaries.get(i);
+                final var range = lower == null ?
+                        column + " < " + to :
+                        (upper == null ? column + " >= " + from : column + " >= " + from + " AND " + column + " < " + to);
+                final var sql = base + range + orderBy;
+                partitions.add(() -> iterate(request.getType(), sql, b -> {
+                    binder.accept(b);
+                    if (lower != null) {
+                        if (named) {
+                            b.bind("partitionFrom", keyType, lower);
+                        } else {
+                            b.bind(keyType, lower);
+                        }
+                    }
+                    if (upper != null) {
+                        if (named) {
+                            b.bind("partitionTo", keyType, upper);
+                        } else {
+                            b.bind(keyType, upper);
+                        }
+                    }
+                }));
+            }
+        }
+        if (request.isOrdered() || !boundaries.isEmpty()) {
+            // null keys in their own (last) partition since null ordering depends on the database
+            final var sql = base + column + " IS NULL";
+            partitions.add(() -> iterate(request.getType(), sql, binder));
+        }
+
+        final var maxInFlight = request.getMaxInFlight() > 0 ? request.getMaxInFlight() : defaultMaxInFlight();
+        final var iterator = new PartitionedIterator<>(
+                partitions, getAsyncExecutor(), maxInFlight, request.getBufferSize(), request.isOrdered());
+        return StreamSupport.stream(spliteratorUnknownSize(
+                        iterator, request.isOrdered() ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private Entity.ColumnMetadata findPartitionKey(final EntityImpl<?> entity, final String column) {
+        if (column == null) {
+            final var ids = entity.getIdColumns();
+            if (ids.size() != 1) {
+                throw new PersistenceException("No single @Id on " + entity.getRootType().getName() + ", set the partition column");
+            }
+            return ids.get(0);
+        }
+        return entity.getOrderedColumns().stream()
+                .filter(it -> it.columnName().equalsIgnoreCase(column) || it.javaName().equals(column))
+                .findFirst()
+                .orElseThrow(() -> new PersistenceException("No column '" + column + "' in " + entity.getRootType().getName()));
+    }
+
     @Override
     public <T> T query(final String sql,
                        final Consumer<StatementBinder> binder,
                        final Function<ResultSetWrapper, T> resultSetMapper) {
         requireNonNull(resultSetMapper, "can't query without a resultset handler");
         requireNonNull(sql, "can't query without a query");
-        try (final var connection = datasource.getConnection();
+        try (final var tracker = track(sql, QueryEvent.Kind.QUERY);
+             final var connection = readConnection();
              final var query = queryCompiler.getOrCreate(new QueryKey<>(Object.class, sql)).apply(connection)) {
+            tracker.connectionAcquired();
             binder.accept(query);
+            tracker.parameters(query.getBoundParameters());
             try (final var rset = query.getPreparedStatement().executeQuery()) {
-                return resultSetMapper.apply(new ResultSetWrapperImpl(rset));
+                tracker.executed();
+                final var result = resultSetMapper.apply(new ResultSetWrapperImpl(rset));
+                tracker.mapped(-1).succeeded(-1); // rows are unknown there
+                return result;
             }
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
@@ -161,10 +501,16 @@ public class DatabaseImpl implements Database {
     public int execute(final String sql, final Consumer<StatementBinder> binder) {
         requireNonNull(binder, "can't execute without a binder");
         requireNonNull(sql, "can't execute without a query");
-        try (final var connection = datasource.getConnection();
+        try (final var tracker = track(sql, QueryEvent.Kind.EXECUTE);
+             final var connection = datasource.getConnection();
              final var query = queryCompiler.getOrCreate(new QueryKey<>(Object.class, sql)).apply(connection)) {
+            tracker.connectionAcquired();
+            ensureWritable(connection);
             binder.accept(query);
-            return query.getPreparedStatement().executeUpdate();
+            tracker.parameters(query.getBoundParameters());
+            final var updated = query.getPreparedStatement().executeUpdate();
+            tracker.executed().succeeded(updated);
+            return updated;
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
         }
@@ -172,16 +518,23 @@ public class DatabaseImpl implements Database {
 
     @Override
     public int[] batch(final String sql, final Iterator<Consumer<StatementBinder>> binders) {
+        final var results = IntStream.builder();
+        batch(sql, binders, chunk -> append(results, chunk));
+        return results.build().toArray();
+    }
+
+    @Override
+    public void batch(final String sql, final Iterator<Consumer<StatementBinder>> binders, final Consumer<int[]> onChunk) {
         requireNonNull(binders, "can't bind without binders");
         requireNonNull(sql, "can't execute bulk without a statement");
-        try (final var connection = datasource.getConnection();
-             final var stmt = new StatementBinderImpl(this, sql, connection)) {
-            while (binders.hasNext()) {
-                binders.next().accept(stmt);
-                stmt.getPreparedStatement().addBatch();
-                stmt.reset();
-            }
-            return stmt.getPreparedStatement().executeBatch();
+        requireNonNull(onChunk, "can't execute bulk without a result callback");
+        try (final var tracker = track(sql, QueryEvent.Kind.BATCH);
+             final var connection = datasource.getConnection();
+             final var stmt = queryCompiler.getOrCreate(new QueryKey<>(Object.class, sql)).apply(connection)) {
+            tracker.connectionAcquired();
+            ensureWritable(connection);
+            executeChunked(connection, stmt, binders, (binder, statement) -> binder.accept(statement), tracked(tracker, onChunk));
+            tracker.succeeded(-1);
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
         }
@@ -189,18 +542,42 @@ public class DatabaseImpl implements Database {
 
     @Override
     public <T> int[] batchInsert(final Class<T> type, final Iterator<T> instances) {
+        final var results = IntStream.builder();
+        batchInsert(type, instances, chunk -> append(results, chunk));
+        return results.build().toArray();
+    }
+
+    @Override
+    public <T> void batchInsert(final Class<T> type, final Iterator<T> instances, final Consumer<int[]> onChunk) {
         requireNonNull(type, "no type set");
         requireNonNull(instances, "no instances set");
+        requireNonNull(onChunk, "can't execute bulk without a result callback");
         final var model = getEntityImpl(type);
-        try (final var connection = datasource.getConnection();
-             final var stmt = new StatementBinderImpl(this, model.getInsertQuery(), connection)) {
-            final var preparedStatement = stmt.getPreparedStatement();
-            while (instances.hasNext()) {
-                model.onInsert(instances.next(), preparedStatement);
-                preparedStatement.addBatch();
-                stmt.reset();
+        try (final var tracker = track(model.getInsertQuery(), QueryEvent.Kind.BATCH);
+             final var connection = datasource.getConnection()) {
+            tracker.connectionAcquired();
+            ensureWritable(connection);
+            final var trackedOnChunk = tracked(tracker, onChunk);
+            final var loaded = bulkLoad(model, instances, connection);
+            if (loaded != null) {
+                trackedOnChunk.accept(loaded);
+                tracker.succeeded(-1);
+                return;
+            } // else not handled, use the batch insert
+
+            final var maxParameters = translation.getMultiRowsInsertMaxParameters();
+            final var rowsPerStatement = maxParameters <= 0 ?
+                    1 : Math.min(MAX_ROWS_PER_INSERT, maxParameters / Math.max(1, model.getInsertColumnNames().size()));
+            if (rowsPerStatement > 1) {
+                multiRowsInsert(model, instances, connection, rowsPerStatement, trackedOnChunk);
+                tracker.succeeded(-1);
+                return;
+            }
+
+            try (final var stmt = new StatementBinderImpl(this, model.getInsertQuery(), connection)) {
+                executeChunked(connection, stmt, instances, (instance, statement) -> model.onInsert(instance, statement.getPreparedStatement()), trackedOnChunk);
             }
-            return preparedStatement.executeBatch();
+            tracker.succeeded(-1);
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
         }
@@ -208,42 +585,229 @@ public class DatabaseImpl implements Database {
 
     @Override
     public <T> int[] batchUpdate(final Class<T> type, final Iterator<T> instances) {
+        final var results = IntStream.builder();
+        batchUpdate(type, instances, chunk -> append(results, chunk));
+        return results.build().toArray();
+    }
+
+    @Override
+    public <T> void batchUpdate(final Class<T> type, final Iterator<T> instances, final Consumer<int[]> onChunk) {
         requireNonNull(type, "no type set");
         requireNonNull(instances, "no instances set");
+        requireNonNull(onChunk, "can't execute bulk without a result callback");
         final var model = getEntityImpl(type);
-        try (final var connection = datasource.getConnection();
+        try (final var tracker = track(model.getUpdateQuery(), QueryEvent.Kind.BATCH);
+             final var connection = datasource.getConnection();
              final var stmt = new StatementBinderImpl(this, model.getUpdateQuery(), connection)) {
-            final var preparedStatement = stmt.getPreparedStatement();
-            while (instances.hasNext()) {
-                model.onUpdate(instances.next(), preparedStatement);
-                preparedStatement.addBatch();
-                stmt.reset();
-            }
-            return preparedStatement.executeBatch();
+            tracker.connectionAcquired();
+            ensureWritable(connection);
+            invalidateOnCompletion(connection, model, null);
+            executeChunked(connection, stmt, instances, (instance, statement) -> model.onUpdate(instance, statement.getPreparedStatement()), tracked(tracker, onChunk));
+            tracker.succeeded(-1);
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
+        } finally {
+            invalidate(model, null);
         }
     }
 
     @Override
     public <T> int[] batchDelete(final Class<T> type, final Iterator<T> instances) {
+        final var results = IntStream.builder();
+        batchDelete(type, instances, chunk -> append(results, chunk));
+        return results.build().toArray();
+    }
+
+    @Override
+    public <T> void batchDelete(final Class<T> type, final Iterator<T> instances, final Consumer<int[]> onChunk) {
         requireNonNull(type, "no type set");
         requireNonNull(instances, "no instances set");
+        requireNonNull(onChunk, "can't execute bulk without a result callback");
         final var model = getEntityImpl(type);
-        try (final var connection = datasource.getConnection();
+        try (final var tracker = track(model.getDeleteQuery(), QueryEvent.Kind.BATCH);
+             final var connection = datasource.getConnection();
              final var stmt = new StatementBinderImpl(this, model.getDeleteQuery(), connection)) {
-            final var preparedStatement = stmt.getPreparedStatement();
-            while (instances.hasNext()) {
-                model.onDelete(instances.next(), preparedStatement);
-                preparedStatement.addBatch();
-                stmt.reset();
-            }
-            return preparedStatement.executeBatch();
+            tracker.connectionAcquired();
+            ensureWritable(connection);
+            invalidateOnCompletion(connection, model, null);
+            executeChunked(connection, stmt, instances, (instance, statement) -> model.onDelete(instance, statement.getPreparedStatement()), tracked(tracker, onChunk));
+            tracker.succeeded(-1);
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
+        } finally {
+            invalidate(model, null);
+        }
+    }
+
+    // executes the batch every batchChunkSize items to bound the memory the driver needs,
+    // if an executor is configured a chunk is executed there while the next one is pulled from the iterator:
+    // the iterator and the callbacks always stay in the caller thread
+    private <T> void executeChunked(final Connection connection, final StatementBinderImpl stmt, final Iterator<T> items,
+                                    final BiConsumer<T, StatementBinderImpl> binder, final Consumer<int[]> onChunk) throws SQLException {
+        final var chunkSize = batchChunkSize <= 0 ? Integer.MAX_VALUE : batchChunkSize;
+        if (batchPrefetchExecutor == null || chunkSize == Integer.MAX_VALUE) {
+            int pending = 0;
+            while (items.hasNext()) {
+                binder.accept(items.next(), stmt);
+                stmt.getPreparedStatement().addBatch();
+                stmt.reset();
+                if (++pending == chunkSize) {
+                    onChunk.accept(stmt.getPreparedStatement().executeBatch());
+                    afterChunk(connection);
+                    pending = 0;
+                }
+            }
+            if (pending > 0 || chunkSize == Integer.MAX_VALUE) {
+                onChunk.accept(stmt.getPreparedStatement().executeBatch());
+                afterChunk(connection);
+            }
+            return;
+        }
+
+        CompletableFuture<int[]> running = null;
+        try {
+            while (true) {
+                final var chunk = take(items, chunkSize); // overlaps the running execution
+                if (running != null) {
+                    final var result = await(running);
+                    running = null;
+                    onChunk.accept(result);
+                    afterChunk(connection);
+                }
+                if (chunk.isEmpty()) {
+                    return;
+                }
+
+                for (final var item : chunk) {
+                    binder.accept(item, stmt);
+                    stmt.getPreparedStatement().addBatch();
+                    stmt.reset();
+                }
+                final var statement = stmt.getPreparedStatement();
+                running = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return statement.executeBatch();
+                    } catch (final SQLException e) {
+                        throw new PersistenceException(e);
+                    }
+                }, batchPrefetchExecutor);
+                if (chunk.size() < chunkSize) { // iterator is consumed
+                    final var result = await(running);
+                    running = null;
+                    onChunk.accept(result);
+                    afterChunk(connection);
+                    return;
+                }
+            }
+        } finally {
+            if (running != null) { // failed while a chunk is executed, don't release the statement under it
+                if (!running.isDone()) {
+                    try {
+                        stmt.getPreparedStatement().cancel();
+                    } catch (final SQLException | RuntimeException e) {
+                        // best effort
+                    }
+                }
+                running.handle((result, error) -> null).join();
+            }
+        }
+    }
+
+    private int[] await(final CompletableFuture<int[]> execution) {
+        try {
+            return execution.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e);
+        } catch (final ExecutionException e) {
+            throw PersistenceException.class.isInstance(e.getCause()) ?
+                    PersistenceException.class.cast(e.getCause()) : new PersistenceException(e.getCause());
+        }
+    }
+
+    private Consumer<int[]> tracked(final QueryTracker tracker, final Consumer<int[]> onChunk) {
+        if (tracker == QueryTracker.NOOP) {
+            return onChunk;
+        }
+        return chunk -> {
+            tracker.batch(chunk);
+            onChunk.accept(chunk);
+        };
+    }
+
+    private <T> List<T> take(final Iterator<T> items, final int count) {
+        final var chunk = new ArrayList<T>(Math.min(count, 1024));
+        while (chunk.size() < count && items.hasNext()) {
+            chunk.add(items.next());
+        }
+        return chunk;
+    }
+
+    private void afterChunk(final Connection connection) throws SQLException {
+        if (batchCommitPerChunk && !connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    private void append(final IntStream.Builder builder, final int[] values) {
+        for (final int value : values) {
+            builder.add(value);
+        }
+    }
+
+    private <T> int[] bulkLoad(final EntityImpl<T> model, final Iterator<T> instances, final Connection connection) throws SQLException {
+        final var count = translation.bulkLoad(connection, model.getTable(), model.getInsertColumnNames(), new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return instances.hasNext();
+            }
+
+            @Override
+            public Object[] next() {
+                return model.toInsertValues(instances.next());
+            }
+        });
+        if (count < 0) {
+            return null;
+        }
+        final var results = new int[Math.toIntExact(count)];
+        Arrays.fill(results, 1);
+        return results;
+    }
+
+    private <T> void multiRowsInsert(final EntityImpl<T> model, final Iterator<T> instances, final Connection connection,
+                                     final int rowsPerStatement, final Consumer<int[]> onChunk) throws SQLException {
+        final var pending = new ArrayList<T>(rowsPerStatement);
+        try (final var stmt = new StatementBinderImpl(this, model.getMultiRowsInsertQuery(rowsPerStatement), connection)) {
+            while (instances.hasNext()) {
+                pending.add(instances.next());
+                if (pending.size() == rowsPerStatement) {
+                    onChunk.accept(executeMultiRowsInsert(model, stmt.getPreparedStatement(), pending));
+                    afterChunk(connection);
+                }
+            }
+        }
+        if (!pending.isEmpty()) { // remaining rows
+            try (final var stmt = new StatementBinderImpl(this, model.getMultiRowsInsertQuery(pending.size()), connection)) {
+                onChunk.accept(executeMultiRowsInsert(model, stmt.getPreparedStatement(), pending));
+                afterChunk(connection);
+            }
         }
     }
 
+    private <T> int[] executeMultiRowsInsert(final EntityImpl<T> model, final PreparedStatement statement, final List<T> rows) throws SQLException {
+        final var columns = model.getInsertColumnNames().size();
+        int offset = 0;
+        for (final var row : rows) {
+            model.onInsert(row, statement, offset);
+            offset += columns;
+        }
+        final var results = new int[rows.size()];
+        Arrays.fill(results, statement.executeUpdate() == rows.size() ? 1 : Statement.SUCCESS_NO_INFO);
+        rows.clear();
+        return results;
+    }
+
     @Override
     public <M> M operation(final Class<M> api) {
         final var loader = ofNullable(Thread.currentThread().getContextClassLoader())
@@ -260,15 +824,23 @@ public class DatabaseImpl implements Database {
         requireNonNull(instance, "can't persist a null instance");
         final var model = (EntityImpl<T>) getEntityImpl(instance.getClass());
         final var insertQuery = model.getInsertQuery();
-        try (final var connection = datasource.getConnection();
-             final var stmt = !model.isAutoIncremented() ?
-                     connection.prepareStatement(insertQuery) :
-                     connection.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
+        try (final var tracker = track(insertQuery, QueryEvent.Kind.INSERT);
+             final var connection = datasource.getConnection();
+             final var binder = !model.isAutoIncremented() ?
+                     new StatementBinderImpl(this, insertQuery, connection) :
+                     new StatementBinderImpl(this, insertQuery, connection).withGeneratedKeys()) {
+            tracker.connectionAcquired();
+            ensureWritable(connection);
+            final var stmt = binder.getPreparedStatement();
             model.onInsert(instance, stmt);
-            if (stmt.executeUpdate() == 0) {
+            final var inserted = stmt.executeUpdate();
+            tracker.executed();
+            if (inserted == 0) {
                 throw new PersistenceException("Can't save " + instance);
             }
-            return model.onAfterInsert(instance, stmt);
+            final var result = model.onAfterInsert(instance, stmt);
+            tracker.mapped(inserted).succeeded(-1);
+            return result;
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
         }
@@ -278,15 +850,25 @@ public class DatabaseImpl implements Database {
     public <T> T update(final T instance) {
         requireNonNull(instance, "can't update a null instance");
         final var model = getEntityImpl(instance.getClass());
-        try (final var connection = datasource.getConnection();
-             final var stmt = connection.prepareStatement(model.getUpdateQuery())) {
+        try (final var tracker = track(model.getUpdateQuery(), QueryEvent.Kind.UPDATE);
+             final var connection = datasource.getConnection();
+             final var binder = new StatementBinderImpl(this, model.getUpdateQuery(), connection)) {
+            tracker.connectionAcquired();
+            ensureWritable(connection);
+            invalidateOnCompletion(connection, model, instance);
+            final var stmt = binder.getPreparedStatement();
             model.onUpdate(instance, stmt);
-            if (stmt.executeUpdate() == 0) {
+            final var updated = stmt.executeUpdate();
+            tracker.executed();
+            if (updated == 0) {
                 throw new PersistenceException("Can't update " + instance);
             }
+            tracker.succeeded(updated);
             return instance;
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
+        } finally {
+            invalidate(model, instance);
         }
     }
 
@@ -294,15 +876,25 @@ public class DatabaseImpl implements Database {
     public <T> T delete(final T instance) {
         requireNonNull(instance, "can't delete a null instance");
         final var model = getEntityImpl(instance.getClass());
-        try (final var connection = datasource.getConnection();
-             final var stmt = connection.prepareStatement(model.getDeleteQuery())) {
+        try (final var tracker = track(model.getDeleteQuery(), QueryEvent.Kind.DELETE);
+             final var connection = datasource.getConnection();
+             final var binder = new StatementBinderImpl(this, model.getDeleteQuery(), connection)) {
+            tracker.connectionAcquired();
+            ensureWritable(connection);
+            invalidateOnCompletion(connection, model, instance);
+            final var stmt = binder.getPreparedStatement();
             model.onDelete(instance, stmt);
-            if (stmt.executeUpdate() == 0) {
+            final var updated = stmt.executeUpdate();
+            tracker.executed();
+            if (updated == 0) {
                 throw new PersistenceException("Can't delete " + instance);
             }
+            tracker.succeeded(updated);
             return instance;
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
+        } finally {
+            invalidate(model, instance);
         }
     }
 
@@ -310,17 +902,157 @@ public class DatabaseImpl implements Database {
     public <T> T findById(final Class<T> type, final Object id) {
         requireNonNull(type, "can't find an instance without a type");
         final var model = getEntityImpl(type);
-        try (final var connection = datasource.getConnection();
-             final var stmt = connection.prepareStatement(model.getFindByIdQuery())) {
+        final var cache = model.getCache();
+        if (cache != null) {
+            return cache.getOrLoad(model.toCacheKey(id), () -> doFindById(type, model, id));
+        }
+        return doFindById(type, model, id);
+    }
+
+    @Override
+    public <T> List<T> findAllById(final Class<T> type, final Collection<?> ids) {
+        requireNonNull(type, "can't find instances without a type");
+        requireNonNull(ids, "can't find instances without identifiers");
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final var model = getEntityImpl(type);
+        if (model.getIdColumns().isEmpty()) {
+            throw new PersistenceException("No @Id on " + type.getName() + ", can't find instances by identifiers");
+        }
+        // a duplicated identifier would return the same entity twice if it is in another chunk
+        final var distinctIds = ids.stream().map(EntityCache::toKey).distinct().collect(toList());
+        final var chunkSize = Math.max(1, Math.min(MAX_IDS_PER_QUERY, translation.getMaxInListParameters() / model.getIdColumns().size()));
+        final var result = new ArrayList<T>(distinctIds.size());
+        Connection connection = null;
+        try {
+            for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+                final var chunk = new ArrayList<>(distinctIds.subList(from, Math.min(distinctIds.size(), from + chunkSize)));
+                final var sql = model.getFindAllByIdQuery(pad(chunk, chunkSize));
+                try (final var tracker = track(sql, QueryEvent.Kind.FIND_BY_ID)) {
+                    if (connection == null) { // first chunk measures the acquisition, next ones reuse the connection
+                        connection = readConnection();
+                    }
+                    tracker.connectionAcquired();
+                    try (final var binder = new StatementBinderImpl(this, sql, connection)) {
+                        final var stmt = binder.getPreparedStatement();
+                        model.onFindAllById(stmt, chunk);
+                        try (final var rset = stmt.executeQuery()) {
+                            tracker.executed();
+                            final var found = mapAll(type, rset);
+                            tracker.mapped(found.size()).succeeded(-1);
+                            result.addAll(found);
+                        }
+                    }
+                }
+            }
+        } catch (final SQLException ex) {
+            throw closeOnFailure(connection, new PersistenceException(ex));
+        } catch (final RuntimeException re) {
+            throw closeOnFailure(connection, re);
+        } catch (final Error error) {
+            throw closeOnFailure(connection, error);
+        }
+        ResultSetIterator.closeAll(connection);
+        return result;
+    }
+
+    // a close failure must not mask the original error
+    private static <E extends Throwable> E closeOnFailure(final Connection connection, final E error) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (final SQLException | RuntimeException e) {
+                error.addSuppressed(e);
+            }
+        }
+        return error;
+    }
+
+    @Override
+    public <T> Map<Object, T> findAllByIdAsMap(final Class<T> type, final Collection<?> ids) {
+        final var model = getEntityImpl(type);
+        final var result = new LinkedHashMap<Object, T>();
+        for (final var entity : findAllById(type, ids)) {
+            result.put(model.idOf(entity), entity);
+        }
+        return result;
+    }
+
+    // chunk size is bucketed (padding with the last identifier) to limit the number of distinct statements
+    private int pad(final List<Object> ids, final int chunkSize) {
+        final var size = Math.min(SqlTemplate.bucket(ids.size()), chunkSize);
+        final var last = ids.get(ids.size() - 1);
+        while (ids.size() < size) {
+            ids.add(last);
+        }
+        return size;
+    }
+
+    @Override
+    public <T> Page<T> page(final Class<T> type, final int pageSize, final String continuationToken) {
+        requireNonNull(type, "can't page without a type");
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        final var model = getEntityImpl(type);
+        final var lastIds = continuationToken == null ? null : PageTokens.decode(continuationToken, model.getIdTypes());
+        final var sql = lastIds == null ? model.getFirstPageQuery() : model.getNextPageQuery();
+        try (final var tracker = track(sql, QueryEvent.Kind.QUERY);
+             final var connection = readConnection();
+             final var binder = new StatementBinderImpl(this, sql, connection)) {
+            tracker.connectionAcquired();
+            final var stmt = binder.getPreparedStatement();
+            if (lastIds == null) {
+                stmt.setInt(1, pageSize + 1); // one more row to know if there is a next page
+            } else {
+                model.onNextPage(stmt, lastIds, pageSize + 1);
+            }
+            try (final var rset = stmt.executeQuery()) {
+                tracker.executed();
+                final var items = mapAll(type, rset);
+                tracker.mapped(items.size()).succeeded(-1);
+                if (items.size() <= pageSize) {
+                    return new Page<>(items, null);
+                }
+
+                final var page = new ArrayList<>(items.subList(0, pageSize));
+                final var last = model.idOf(page.get(pageSize - 1));
+                return new Page<>(page, PageTokens.encode(List.class.isInstance(last) ? List.class.cast(last) : singletonList(last)));
+            }
+        } catch (final SQLException ex) {
+            throw new PersistenceException(ex);
+        }
+    }
+
+    @Override
+    public void evict(final Class<?> type, final Object id) {
+        final var model = getEntityImpl(type);
+        final var cache = model.getCache();
+        if (cache != null) {
+            cache.invalidate(model.toCacheKey(id));
+        }
+    }
+
+    private <T> T doFindById(final Class<T> type, final EntityImpl<T> model, final Object id) {
+        try (final var tracker = track(model.getFindByIdQuery(), QueryEvent.Kind.FIND_BY_ID);
+             final var connection = readConnection();
+             final var binder = new StatementBinderImpl(this, model.getFindByIdQuery(), connection)) {
+            tracker.connectionAcquired();
+            final var stmt = binder.getPreparedStatement();
             model.onFindById(stmt, id);
             try (final var rset = stmt.executeQuery()) {
+                tracker.executed();
                 if (!rset.next()) {
+                    tracker.succeeded(0);
                     return null;
                 }
                 final var res = mapOne(type, rset);
                 if (rset.next()) {
                     throw new PersistenceException("Ambiguous entity fetched!");
                 }
+                tracker.mapped(1).succeeded(-1);
                 return res;
             }
         } catch (final SQLException ex) {
@@ -331,25 +1063,15 @@ public class DatabaseImpl implements Database {
     @Override
     public <T> T mapOne(final Class<T> type, final ResultSet resultSet) {
         return type == Map.class ?
-                (T) mapAsMap(toNames(resultSet), resultSet) :
+                (T) new ColumnIndex(toNames(resultSet).toArray(String[]::new)).read(resultSet) :
                 getEntityImpl(type).nextProvider(resultSet).apply(resultSet);
     }
 
     @Override
     public <T> List<T> mapAll(final Class<T> type, final ResultSet resultSet) {
-        final var provider = type == Map.class ?
-                new Function<ResultSet, T>() {
-                    private final List<String> names;
-
-                    {
-                        names = toNames(resultSet);
-                    }
-
-                    @Override
-                    public T apply(final ResultSet line) {
-                        return (T) mapAsMap(names, line);
-                    }
-                } :
+        final var index = type == Map.class ? new ColumnIndex(toNames(resultSet).toArray(String[]::new)) : null;
+        final Function<ResultSet, T> provider = type == Map.class ?
+                line -> (T) index.read(line) :
                 getEntityImpl(type).nextProvider(resultSet);
         return new ResultSetWrapperImpl(resultSet).mapAll(provider::apply);
     }
@@ -359,6 +1081,165 @@ public class DatabaseImpl implements Database {
         return getEntityImpl(type);
     }
 
+    @Override
+    public AsyncDatabase async() {
+        if (async == null) {
+            synchronized (this) {
+                if (async == null) {
+                    async = new AsyncDatabaseImpl(
+                            this,
+                            getAsyncExecutor(),
+                            asyncMaxConcurrency < 0 ? findPoolMaxSize() : asyncMaxConcurrency,
+                            isThreadBound(datasource) ? newThreadBoundScope() : null);
+                }
+            }
+        }
+        return async;
+    }
+
+    private Executor getAsyncExecutor() {
+        if (asyncExecutor != null) {
+            return asyncExecutor;
+        }
+        if (defaultAsyncExecutor == null) {
+            synchronized (this) {
+                if (defaultAsyncExecutor == null) {
+                    defaultAsyncExecutor = newDefaultAsyncExecutor();
+                }
+            }
+        }
+        return defaultAsyncExecutor;
+    }
+
+    // virtual threads are not in java 11 API so use reflection
+    // the fallback pool is bounded and its idle threads die so it does not need to be shut down
+    private Executor newDefaultAsyncExecutor() {
+        try {
+            return Executor.class.cast(Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            final var counter = new AtomicInteger();
+            final int threads = defaultMaxInFlight();
+            final var pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), r -> {
+                final var thread = new Thread(r, "uship-persistence-async-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    // the connection is bound to the caller thread so each call gets its own read/write block in the executor thread
+    private AsyncDatabaseImpl.CallScope newThreadBoundScope() {
+        final Method read;
+        final Method write;
+        try {
+            read = datasource.getClass().getMethod("read", Function.class);
+            write = datasource.getClass().getMethod("write", Function.class);
+        } catch (final NoSuchMethodException e) {
+            throw new PersistenceException(e);
+        }
+        return new AsyncDatabaseImpl.CallScope() {
+            @Override
+            public <T> T execute(final boolean readOnly, final Supplier<T> call) {
+                try {
+                    return (T) (readOnly ? read : write).invoke(datasource, (Function<Connection, T>) connection -> call.get());
+                } catch (final IllegalAccessException e) {
+                    throw new PersistenceException(e);
+                } catch (final InvocationTargetException e) {
+                    final var target = e.getTargetException();
+                    if (target instanceof RuntimeException) {
+                        throw (RuntimeException) target;
+                    }
+                    if (target instanceof Error) {
+                        throw (Error) target;
+                    }
+                    throw new PersistenceException(target);
+                }
+            }
+        };
+    }
+
+    // tomcat datasource is a provided dependency so don't load it
+    private static boolean isThreadBound(final DataSource dataSource) {
+        for (Class<?> type = dataSource.getClass(); type != null; type = type.getSuperclass()) {
+            if ("io.yupiik.uship.persistence.impl.datasource.tomcat.TomcatDataSource".equals(type.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // tomcat-jdbc (getMaxActive), hikari (getMaximumPoolSize) and PooledDataSource (getMaxSize)
+    // each partition holds a connection so don't exceed the pool size
+    private int defaultMaxInFlight() {
+        if (asyncMaxConcurrency > 0) {
+            return asyncMaxConcurrency;
+        }
+        final var poolSize = findPoolMaxSize();
+        return poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+    }
+
+    private int findPoolMaxSize() {
+        for (final var method : List.of("getMaxActive", "getMaximumPoolSize", "getMaxSize")) {
+            try {
+                final var getter = datasource.getClass().getMethod(method);
+                if (getter.getReturnType() == int.class) {
+                    return (int) getter.invoke(datasource);
+                }
+            } catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                // try next
+            }
+        }
+        return 0;
+    }
+
+    // read queries go to a replica when the caller declared a read-only scope, anything else stays on the primary
+    private Connection readConnection() throws SQLException {
+        if (replicaRouter != null && replicaRouter.isReadOnlyScope()) {
+            final var replica = replicaRouter.getReadConnection();
+            if (replica != null) {
+                return replica;
+            }
+        }
+        return datasource.getConnection();
+    }
+
+    // local invalidation, propagated to the listener to let other nodes evict it too
+    private void invalidate(final EntityImpl<?> model, final Object instance) {
+        final var cache = model.getCache();
+        if (cache == null) {
+            return;
+        }
+        final var id = instance == null ? null : model.toCacheKey(model.idOf(instance));
+        cache.invalidate(id);
+        if (cacheInvalidationListener != null) {
+            cacheInvalidationListener.onInvalidation(model.getRootType(), id);
+        }
+    }
+
+    // Connection#setReadOnly is only a hint for some drivers (or can't be changed in a transaction) so reject writes there
+    private void ensureWritable(final Connection connection) {
+        if (!ContextualConnection.class.isInstance(connection)) {
+            return;
+        }
+        final var transaction = ContextualConnection.class.cast(connection).getTransaction();
+        if (transaction != null && transaction.isReadOnly()) {
+            throw new PersistenceException("Can't write in a read-only transaction");
+        }
+    }
+
+    // a concurrent lookup can cache the row as it was before the commit so evict it again once the transaction completes
+    private void invalidateOnCompletion(final Connection connection, final EntityImpl<?> model, final Object instance) {
+        if (model.getCache() == null || !ContextualConnection.class.isInstance(connection)) {
+            return;
+        }
+        final var transaction = ContextualConnection.class.cast(connection).getTransaction();
+        if (transaction != null && transaction.isActive()) {
+            transaction.afterCompletion(() -> invalidate(model, instance));
+        }
+    }
+
     private <T> String[] getAndCacheColumns(final CompiledQuery<T> compiledQuery, final ResultSet rset) {
         final String[] columns;
         if (compiledQuery.getColumnNames() != null) {
@@ -405,65 +1286,11 @@ public class DatabaseImpl implements Database {
     }
 
     public Object lookup(final ResultSet resultSet, final String column, final Class<?> type) throws SQLException {
-        if (String.class == type) {
-            return resultSet.getString(column);
-        }
-        if (byte.class == type) {
-            return resultSet.getByte(column);
-        }
-        if (byte[].class == type) {
-            return resultSet.getBytes(column);
-        }
-        if (Integer.class == type || int.class == type) {
-            return resultSet.getInt(column);
-        }
-        if (Double.class == type || double.class == type) {
-            return resultSet.getDouble(column);
-        }
-        if (Float.class == type || float.class == type) {
-            return resultSet.getFloat(column);
-        }
-        if (Long.class == type || long.class == type) {
-            return resultSet.getLong(column);
-        }
-        if (Boolean.class == type || boolean.class == type) {
-            return resultSet.getBoolean(column);
-        }
-        if (Date.class == type) {
-            return resultSet.getDate(column);
-        }
-        return resultSet.getObject(column, type);
+        return ColumnReaders.read(resultSet, resultSet.findColumn(column), type);
     }
 
     public Object lookup(final ResultSet resultSet, final int column, final Class<?> type) throws SQLException {
-        if (String.class == type) {
-            return resultSet.getString(column);
-        }
-        if (byte.class == type) {
-            return resultSet.getByte(column);
-        }
-        if (byte[].class == type) {
-            return resultSet.getBytes(column);
-        }
-        if (Integer.class == type || int.class == type) {
-            return resultSet.getInt(column);
-        }
-        if (Double.class == type || double.class == type) {
-            return resultSet.getDouble(column);
-        }
-        if (Float.class == type || float.class == type) {
-            return resultSet.getFloat(column);
-        }
-        if (Long.class == type || long.class == type) {
-            return resultSet.getLong(column);
-        }
-        if (Boolean.class == type || boolean.class == type) {
-            return resultSet.getBoolean(column);
-        }
-        if (Date.class == type) {
-            return resultSet.getDate(column);
-        }
-        return resultSet.getObject(column, type);
+        return ColumnReaders.read(resultSet, column, type);
     }
 
     private List<String> toNames(final ResultSet resultSet) {
@@ -484,17 +1311,6 @@ public class DatabaseImpl implements Database {
         return names;
     }
 
-    private Map<String, ?> mapAsMap(final List<String> names, final ResultSet line) {
-        return names.stream().flatMap(it -> {
-            try {
-                final var object = line.getObject(it);
-                return object == null ? Stream.empty() : Stream.of(entry(it, object));
-            } catch (final SQLException e) {
-                throw new PersistenceException(e);
-            }
-        }).collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
-    }
-
     private <T> EntityImpl<T> getEntityImpl(final Class<T> type) {
         return (EntityImpl<T>) entities.computeIfAbsent(type, t -> new EntityImpl<>(this, t, translation));
     }
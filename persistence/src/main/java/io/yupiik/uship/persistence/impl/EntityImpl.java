@@ -15,6 +15,7 @@
  */
 package io.yupiik.uship.persistence.impl;
 
+import io.yupiik.uship.persistence.api.Cacheable;
 import io.yupiik.uship.persistence.api.Column;
 import io.yupiik.uship.persistence.api.Entity;
 import io.yupiik.uship.persistence.api.Id;
@@ -24,10 +25,14 @@ import io.yupiik.uship.persistence.api.lifecycle.OnDelete;
 import io.yupiik.uship.persistence.api.lifecycle.OnInsert;
 import io.yupiik.uship.persistence.api.lifecycle.OnLoad;
 import io.yupiik.uship.persistence.api.lifecycle.OnUpdate;
+import io.yupiik.uship.persistence.impl.cache.EntityCache;
 import io.yupiik.uship.persistence.impl.mapper.EnumMapper;
 import io.yupiik.uship.persistence.spi.DatabaseTranslation;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -40,24 +45,29 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static java.lang.invoke.MethodType.methodType;
 import static java.util.Comparator.comparing;
 import static java.util.Locale.ROOT;
 import static java.util.Map.entry;
 import static java.util.Optional.ofNullable;
+import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -67,24 +77,36 @@ public class EntityImpl<E> implements Entity<E> {
     private final DatabaseImpl database;
     private final Class<E> rootType;
     private final Map<String, ColumnModel> fields;
-    private final Map<String, Field> fieldsIndexedByJavaName;
+    private final Map<String, ColumnModel> fieldsIndexedByJavaName;
     private final List<IdColumnModel> idFields;
     private final Collection<ColumnModel> insertFields;
     private final Map<String, ParameterHolder> constructorParameters;
     private final Constructor<E> constructor;
+    private final MethodHandle constructorHandle; // () -> Object for pojos, (Object[]) -> Object for records
     private final String table;
     private final String findByIdQuery;
     private final String updateQuery;
     private final String deleteQuery;
     private final String insertQuery;
+    private final String insertValuesRow;
+    private final List<String> insertColumnNames;
     private final String findAllQuery;
+    private final String firstPageQuery;
+    private final String nextPageQuery;
+    private final Map<Integer, String> findAllByIdQueries = new ConcurrentHashMap<>();
     private final List<Method> onInserts;
     private final List<Method> onUpdates;
     private final List<Method> onDeletes;
     private final List<Method> onLoads;
+    private final MethodHandle[] onInsertHandles;
+    private final MethodHandle[] onUpdateHandles;
+    private final MethodHandle[] onDeleteHandles;
+    private final MethodHandle[] onLoadHandles;
     private final DatabaseTranslation translation;
     private final List<ColumnMetadata> columns;
+    private final List<ColumnMetadata> idColumns;
     private final boolean autoIncremented;
+    private final EntityCache cache;
 
     public EntityImpl(final DatabaseImpl database, final Class<E> type, final DatabaseTranslation translation) {
         final var record = Records.isRecord(type);
@@ -102,6 +124,12 @@ public class EntityImpl<E> implements Entity<E> {
         } catch (final NoSuchMethodException e) {
             throw new PersistenceException(e);
         }
+        final var constructorHandle = unreflect(constructor);
+        this.constructorHandle = record ?
+                constructorHandle
+                        .asSpreader(Object[].class, constructor.getParameterCount())
+                        .asType(methodType(Object.class, Object[].class)) :
+                constructorHandle.asType(methodType(Object.class));
 
         final var paramCounter = new AtomicInteger();
         this.constructorParameters = record ?
@@ -117,7 +145,7 @@ public class EntityImpl<E> implements Entity<E> {
         this.fields = captureFields(type)
                 .collect(toMap(
                         this::name,
-                        f -> new ColumnModel(f, toMapper(ofNullable(f.getAnnotation(Column.class)).map(Column::mapper).orElse(null))),
+                        f -> new ColumnModel(f, toMapper(ofNullable(f.getAnnotation(Column.class)).map(Column::mapper).orElse(null)), !record),
                         (a, b) -> {
                             throw new IllegalArgumentException("Ambiguous field: " + a);
                         }, CaseInsensitiveLinkedHashMap::new));
@@ -138,7 +166,7 @@ public class EntityImpl<E> implements Entity<E> {
                         .isPresent())
                 .sorted(comparing(f -> findId.apply(f.field).orElseThrow().order()))
                 .map(f -> new IdColumnModel(
-                        f.field, f.type, f.valueMapper, f.hash,
+                        f.field, f.type, f.valueMapper, f.hash, f.getter, f.setter, f.rawSetter,
                         findId.apply(f.field).orElseThrow().autoIncremented()))
                 .collect(toList());
 
@@ -155,7 +183,7 @@ public class EntityImpl<E> implements Entity<E> {
         }
 
         this.fieldsIndexedByJavaName = record && autoIncremented ?
-                this.fields.values().stream().collect(toMap(c -> c.field.getName(), c -> c.field)) :
+                this.fields.values().stream().collect(toMap(c -> c.field.getName(), identity())) :
                 Map.of() /* unused, save mem */;
 
         this.table = translation.wrapTableName(ofNullable(type.getAnnotation(Table.class))
@@ -166,6 +194,13 @@ public class EntityImpl<E> implements Entity<E> {
         this.onUpdates = captureMethods(type, OnUpdate.class).collect(toList());
         this.onDeletes = captureMethods(type, OnDelete.class).collect(toList());
         this.onLoads = captureMethods(type, OnLoad.class).collect(toList());
+        this.cache = ofNullable(type.getAnnotation(Cacheable.class))
+                .map(c -> new EntityCache(c.maxSize(), c.ttl()))
+                .orElse(null);
+        this.onInsertHandles = toHandles(onInserts);
+        this.onUpdateHandles = toHandles(onUpdates);
+        this.onDeleteHandles = toHandles(onDeletes);
+        this.onLoadHandles = toHandles(onLoads);
 
         // todo: go through translation to have escaping if needed, for now assume we don't use keywords in mapping
         final var byIdWhereClause = " WHERE " + idFields.stream()
@@ -191,6 +226,12 @@ public class EntityImpl<E> implements Entity<E> {
                 byIdWhereClause;
         this.deleteQuery = "" +
                 "DELETE FROM " + table + byIdWhereClause;
+        this.insertColumnNames = insertFields.stream()
+                .map(f -> translation.wrapFieldName(name(f.field)))
+                .collect(toList());
+        this.insertValuesRow = insertFields.stream()
+                .map(f -> "?")
+                .collect(joining(", ", "(", ")"));
         this.insertQuery = "" +
                 "INSERT INTO " + table + " (" + insertFieldsCommaSeparated + ") " +
                 "VALUES (" + insertFields.stream()
@@ -199,6 +240,17 @@ public class EntityImpl<E> implements Entity<E> {
         this.findAllQuery = "" +
                 "SELECT " + fieldNamesCommaSeparated +
                 " FROM " + table;
+        if (idFields.isEmpty()) {
+            this.firstPageQuery = null;
+            this.nextPageQuery = null;
+        } else {
+            final var idNames = idFields.stream()
+                    .map(f -> translation.wrapFieldName(name(f.field)))
+                    .collect(toList());
+            final var orderBy = " ORDER BY " + String.join(", ", idNames) + translation.toLimitClause();
+            this.firstPageQuery = findAllQuery + orderBy;
+            this.nextPageQuery = findAllQuery + " WHERE " + toKeysetPredicate(idNames) + orderBy;
+        }
 
         this.columns = (constructorParameters.isEmpty() ?
                 fields.entrySet().stream()
@@ -213,12 +265,118 @@ public class EntityImpl<E> implements Entity<E> {
                                 e.getValue().parameter.getParameterizedType(), e.getKey())))
                 .distinct()
                 .collect(toList());
+        this.idColumns = idFields.stream()
+                .map(id -> columns.stream()
+                        .filter(c -> c.javaName().equals(id.field.getName()))
+                        .findFirst()
+                        .orElseThrow(() -> new PersistenceException("No column for @Id " + id.field.getName())))
+                .collect(toList());
     }
 
     public boolean isAutoIncremented() {
         return autoIncremented;
     }
 
+    /**
+     * @return the findById cache if the entity is {@link Cacheable}, {@code null} otherwise.
+     */
+    public EntityCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param instance the entity.
+     * @return the identifier of the entity, a list if there are multiple identifiers.
+     */
+    public Object idOf(final Object instance) {
+        try {
+            if (idFields.size() == 1) {
+                return (Object) idFields.get(0).getter.invokeExact(instance);
+            }
+            final var ids = new ArrayList<>(idFields.size());
+            for (final var id : idFields) {
+                ids.add((Object) id.getter.invokeExact(instance));
+            }
+            return ids;
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Normalizes an identifier to the database representation of the {@link Id} fields (value mapper applied and numbers
+     * converted to the column type) to ensure {@code findById(type, 1)} and {@code findById(type, 1L)} share the same cache entry.
+     *
+     * @param id the identifier (a list or array for composite identifiers).
+     * @return the cache key for this identifier.
+     */
+    public Object toCacheKey(final Object id) {
+        if (id == null || idFields.isEmpty()) {
+            return EntityCache.toKey(id);
+        }
+        if (idFields.size() == 1) {
+            return toCacheKey(idFields.get(0), id);
+        }
+        final var ids = EntityCache.toKey(id);
+        if (!List.class.isInstance(ids) || List.class.cast(ids).size() != idFields.size()) {
+            return ids;
+        }
+        final var values = List.class.cast(ids);
+        final var key = new ArrayList<>(idFields.size());
+        for (int i = 0; i < idFields.size(); i++) {
+            key.add(toCacheKey(idFields.get(i), values.get(i)));
+        }
+        return key;
+    }
+
+    private Object toCacheKey(final IdColumnModel field, final Object id) {
+        if (id == null) {
+            return null;
+        }
+        var value = convertNumber(id, field.field.getType());
+        if (field.valueMapper != null && boxed(field.field.getType()).isInstance(value)) {
+            final Column.ValueMapper mapper = field.valueMapper;
+            value = mapper.toDatabase(value);
+        }
+        return convertNumber(value, field.type);
+    }
+
+    private Object convertNumber(final Object value, final Class<?> type) {
+        final var target = boxed(type);
+        if (!Number.class.isInstance(value) || target.isInstance(value)) {
+            return value;
+        }
+        final var number = Number.class.cast(value);
+        if (target == Long.class) {
+            return number.longValue();
+        }
+        if (target == Integer.class) {
+            return number.intValue();
+        }
+        if (target == Short.class) {
+            return number.shortValue();
+        }
+        if (target == Byte.class) {
+            return number.byteValue();
+        }
+        if (target == Double.class) {
+            return number.doubleValue();
+        }
+        if (target == Float.class) {
+            return number.floatValue();
+        }
+        return value;
+    }
+
+    private Class<?> boxed(final Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return methodType(type).wrap().returnType();
+    }
+
     private Column.ValueMapper<?, ?> toMapper(final Class<? extends Column.ValueMapper> value) {
         if (value == null || value == Column.ValueMapper.class) {
             return null;
@@ -286,16 +444,138 @@ public class EntityImpl<E> implements Entity<E> {
         return insertQuery;
     }
 
+    /**
+     * @param rows number of rows to insert at once.
+     * @return a multi-rows insert statement ({@code INSERT INTO t (a, b) VALUES (?, ?), (?, ?)}).
+     */
+    public String getMultiRowsInsertQuery(final int rows) {
+        if (rows == 1) {
+            return insertQuery;
+        }
+        final var out = new StringBuilder(insertQuery.length() + rows * (insertValuesRow.length() + 2));
+        out.append("INSERT INTO ").append(table).append(" (").append(String.join(", ", insertColumnNames)).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(insertValuesRow);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return the (wrapped) column names used by the insert statement, in binding order.
+     */
+    public List<String> getInsertColumnNames() {
+        return insertColumnNames;
+    }
+
     @Override
     public String getFindAllQuery() {
         return findAllQuery;
     }
 
+    /**
+     * @return the keyset pagination query for the first page, last parameter is the limit.
+     */
+    public String getFirstPageQuery() {
+        ensureIdentifiers();
+        return firstPageQuery;
+    }
+
+    /**
+     * @return the keyset pagination query for next pages, parameters are bound with {@link #onNextPage(PreparedStatement, List, int)}.
+     */
+    public String getNextPageQuery() {
+        ensureIdentifiers();
+        return nextPageQuery;
+    }
+
+    public List<Class<?>> getIdTypes() {
+        return idFields.stream().<Class<?>>map(f -> f.type).collect(toList());
+    }
+
+    public void onNextPage(final PreparedStatement stmt, final List<?> lastIds, final int limit) {
+        try {
+            int idx = 1;
+            if (translation.supportsRowValueComparison() || idFields.size() == 1) {
+                for (int i = 0; i < idFields.size(); i++) {
+                    final var field = idFields.get(i);
+                    doBind(stmt, idx++, field.type, lastIds.get(i), field.valueMapper);
+                }
+            } else { // (a > ?) OR (a = ? AND b > ?) ...
+                for (int i = 0; i < idFields.size(); i++) {
+                    for (int j = 0; j <= i; j++) {
+                        final var field = idFields.get(j);
+                        doBind(stmt, idx++, field.type, lastIds.get(j), field.valueMapper);
+                    }
+                }
+            }
+            stmt.setInt(idx, limit);
+        } catch (final SQLException ex) {
+            throw new PersistenceException(ex);
+        }
+    }
+
+    private String toKeysetPredicate(final List<String> idNames) {
+        if (idNames.size() == 1) {
+            return idNames.get(0) + " > ?";
+        }
+        if (translation.supportsRowValueComparison()) {
+            return idNames.stream().collect(joining(", ", "(", ")")) + " > " +
+                    idNames.stream().map(it -> "?").collect(joining(", ", "(", ")"));
+        }
+        final var out = new StringBuilder("(");
+        for (int i = 0; i < idNames.size(); i++) {
+            if (i > 0) {
+                out.append(" OR ");
+            }
+            out.append('(');
+            for (int j = 0; j < i; j++) {
+                out.append(idNames.get(j)).append(" = ? AND ");
+            }
+            out.append(idNames.get(i)).append(" > ?)");
+        }
+        return out.append(')').toString();
+    }
+
+    private void ensureIdentifiers() {
+        if (firstPageQuery == null) {
+            throw new PersistenceException("No @Id on " + rootType.getName() + ", keyset pagination is not possible");
+        }
+    }
+
     @Override
     public List<ColumnMetadata> getOrderedColumns() {
         return columns;
     }
 
+    /**
+     * @return the identifier columns sorted by {@link Id#order()}.
+     */
+    public List<ColumnMetadata> getIdColumns() {
+        return idColumns;
+    }
+
+    /**
+     * @param aliasPrefix the alias prefix used with {@link #concatenateColumns(ColumnsConcatenationRequest)}.
+     * @param columns     the result set columns.
+     * @return the (1-based) indices of the identifiers in the result set columns.
+     */
+    public int[] findIdIndices(final String aliasPrefix, final String[] columns) {
+        return idColumns.stream()
+                .mapToInt(id -> {
+                    final var alias = toAlias(aliasPrefix, id.javaName());
+                    for (int i = 0; i < columns.length; i++) {
+                        if (alias.equalsIgnoreCase(columns[i])) {
+                            return i + 1;
+                        }
+                    }
+                    throw new PersistenceException("Can't find column '" + alias + "' in " + List.of(columns));
+                })
+                .toArray();
+    }
+
     @Override
     public String concatenateColumns(final ColumnsConcatenationRequest request) {
         final var translation = database.getTranslation();
@@ -308,7 +588,7 @@ public class EntityImpl<E> implements Entity<E> {
                             translation.wrapFieldName(request.getPrefix() + e.columnName());
                     final var alias = request.getAliasPrefix() != null ?
                             " as " + translation.wrapFieldName(!request.getAliasPrefix().isBlank() ?
-                                    request.getAliasPrefix() + Character.toUpperCase(name.charAt(0)) + (name.length() > 1 ? name.substring(1) : "") :
+                                    toAlias(request.getAliasPrefix(), name) :
                                     e.javaName()) :
                             "";
                     return field + alias;
@@ -316,6 +596,10 @@ public class EntityImpl<E> implements Entity<E> {
                 .collect(joining(", "));
     }
 
+    private static String toAlias(final String prefix, final String name) {
+        return prefix + Character.toUpperCase(name.charAt(0)) + (name.length() > 1 ? name.substring(1) : "");
+    }
+
     public List<Method> getOnInserts() {
         return onInserts;
     }
@@ -385,22 +669,30 @@ public class EntityImpl<E> implements Entity<E> {
                 boundParams.add(entry(param, i + 1));
             }
         }
+        // resolve the layout once, the returned function only loops over arrays
+        final int paramCount = constructorParameters.size();
+        final var indices = boundParams.stream().mapToInt(e -> e.getValue()).toArray();
+        final var targets = boundParams.stream().mapToInt(e -> e.getKey().index).toArray();
+        final var readers = boundParams.stream()
+                .map(e -> ColumnReaders.of(e.getKey().parameter.getType(), e.getKey().valueMapper))
+                .toArray(ColumnReaders.ColumnReader[]::new);
+        final var defaults = new Object[paramCount];
+        notSet.forEach(p -> defaults[p.index] = p.defaultValue);
         return resultSet -> {
-            final var params = new Object[constructorParameters.size()];
+            final var params = notSet.isEmpty() ? new Object[paramCount] : defaults.clone();
             try {
-                for (final var param : boundParams) {
-                    params[param.getKey().index] = doLookup(resultSet, param.getValue(), param.getKey().parameter.getType(), param.getKey().valueMapper);
+                for (int i = 0; i < indices.length; i++) {
+                    params[targets[i]] = readers[i].read(resultSet, indices[i]);
                 }
-                if (!notSet.isEmpty()) {
-                    notSet.forEach(p -> params[p.index] = p.defaultValue);
-                }
-                final var instance = constructor.newInstance(params);
-                callMethodsWith(onLoads, instance);
+                final var instance = (E) (Object) constructorHandle.invokeExact(params);
+                callMethodsWith(onLoadHandles, instance);
                 return instance;
-            } catch (final SQLException | InstantiationException | IllegalAccessException e) {
+            } catch (final SQLException e) {
+                throw new PersistenceException(e);
+            } catch (final PersistenceException e) {
+                throw e;
+            } catch (final Throwable e) {
                 throw new PersistenceException(e);
-            } catch (final InvocationTargetException e) {
-                throw new PersistenceException(e.getTargetException());
             }
         };
     }
@@ -425,32 +717,29 @@ public class EntityImpl<E> implements Entity<E> {
                 boundFields.add(entry(field, i + 1));
             }
         }
+        // resolve the layout once, the returned function only loops over arrays
+        final var indices = boundFields.stream().mapToInt(e -> e.getValue()).toArray();
+        final var writers = boundFields.stream()
+                .map(e -> ColumnReaders.writer(e.getKey().field.getType(), e.getKey().valueMapper, e.getKey().rawSetter))
+                .toArray(ColumnReaders.ColumnWriter[]::new);
         return resultSet -> {
             try {
-                final var instance = constructor.newInstance();
-                for (final var field : boundFields) {
-                    if (field == null) {
-                        continue;
-                    }
-                    field.getKey().field.set(instance, doLookup(resultSet, field.getValue(), field.getKey().field.getType(), field.getKey().valueMapper));
+                final var instance = (E) (Object) constructorHandle.invokeExact();
+                for (int i = 0; i < indices.length; i++) {
+                    writers[i].write(instance, resultSet, indices[i]);
                 }
-                callMethodsWith(onLoads, instance);
+                callMethodsWith(onLoadHandles, instance);
                 return instance;
-            } catch (final SQLException | InstantiationException | IllegalAccessException e) {
+            } catch (final SQLException e) {
+                throw new PersistenceException(e);
+            } catch (final PersistenceException e) {
+                throw e;
+            } catch (final Throwable e) {
                 throw new PersistenceException(e);
-            } catch (final InvocationTargetException e) {
-                throw new PersistenceException(e.getTargetException());
             }
         };
     }
 
-    private Object doLookup(final ResultSet resultSet, final int index, final Class<?> type, final Column.ValueMapper mapper) throws SQLException {
-        if (mapper != null) {
-            return mapper.toJava(database.lookup(resultSet, index, String.class));
-        }
-        return database.lookup(resultSet, index, type);
-    }
-
     public Stream<String> toNames(final ResultSet resultSet) throws SQLException {
         final var metaData = resultSet.getMetaData();
         return IntStream.rangeClosed(1, metaData.getColumnCount()).mapToObj(i -> {
@@ -475,45 +764,78 @@ public class EntityImpl<E> implements Entity<E> {
             final var idColumn = idFields.get(0);
             final var value = database.lookup(keys, 1, idColumn.type);
             if (constructor.getParameterCount() == 0) {
-                idColumn.field.set(instance, value);
+                idColumn.setter.invokeExact(instance, value);
             } else { // record so copy the instance with the new id
                 final var params = new Object[constructor.getParameterCount()];
                 int idx = 0;
                 for (final var entry : constructorParameters.entrySet()) {
                     final var field = fieldsIndexedByJavaName.get(entry.getValue().parameter.getName());
-                    if (field == idColumn.field) {
+                    if (field.field == idColumn.field) {
                         params[idx++] = value;
                     } else {
-                        params[idx++] = field.get(instance);
+                        params[idx++] = (Object) field.getter.invokeExact(instance);
                     }
                 }
-                try {
-                    return constructor.newInstance(params);
-                } catch (final InstantiationException e) {
-                    throw new PersistenceException(e);
-                } catch (final InvocationTargetException e) {
-                    throw new PersistenceException(e.getTargetException());
-                }
+                return (E) (Object) constructorHandle.invokeExact(params);
             }
         } catch (final SQLException e) {
             throw new PersistenceException(e);
-        } catch (final IllegalAccessException e) {
-            throw new IllegalStateException(e);
+        } catch (final PersistenceException e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new PersistenceException(e);
         }
         return rootType.cast(instance);
     }
 
     public void onInsert(final Object instance, final PreparedStatement statement) {
-        callMethodsWith(onInserts, instance);
+        onInsert(instance, statement, 0);
+    }
 
-        int idx = 1;
+    /**
+     * Binds an instance for an insert, {@code offset} enables to bind multiple rows in the same statement.
+     *
+     * @param instance  the instance to bind.
+     * @param statement the insert statement.
+     * @param offset    the number of parameters already bound (previous rows).
+     */
+    public void onInsert(final Object instance, final PreparedStatement statement, final int offset) {
+        callMethodsWith(onInsertHandles, instance);
+
+        int idx = offset + 1;
         for (final var field : insertFields) {
             doBind(instance, statement, idx++, field);
         }
     }
 
+    /**
+     * Same as {@link #onInsert(Object, PreparedStatement)} but extracts the values (mappers applied) instead of binding them.
+     *
+     * @param instance the instance to insert.
+     * @return the values matching {@link #getInsertColumnNames()}.
+     */
+    public Object[] toInsertValues(final Object instance) {
+        callMethodsWith(onInsertHandles, instance);
+
+        final var values = new Object[insertFields.size()];
+        int idx = 0;
+        for (final var field : insertFields) {
+            final Object value;
+            try {
+                value = (Object) field.getter.invokeExact(instance);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            final Column.ValueMapper mapper = field.valueMapper;
+            values[idx++] = mapper != null ? mapper.toDatabase(value) : value;
+        }
+        return values;
+    }
+
     public void onDelete(final Object instance, final PreparedStatement statement) {
-        callMethodsWith(onDeletes, instance);
+        callMethodsWith(onDeleteHandles, instance);
 
         int idx = 1;
         for (final var field : idFields) {
@@ -522,7 +844,7 @@ public class EntityImpl<E> implements Entity<E> {
     }
 
     public void onUpdate(final Object instance, final PreparedStatement statement) {
-        callMethodsWith(onUpdates, instance);
+        callMethodsWith(onUpdateHandles, instance);
 
         int idx = 1;
         for (final var field : fields.values()) {
@@ -534,57 +856,95 @@ public class EntityImpl<E> implements Entity<E> {
     }
 
     public void onFindById(final PreparedStatement stmt, final Object id) {
-        if (idFields.size() == 1) {
-            final Column.ValueMapper mapper = idFields.get(0).valueMapper;
-            if (mapper != null) {
-                try {
-                    stmt.setObject(1, mapper.toDatabase(id));
-                } catch (final SQLException ex) {
-                    throw new PersistenceException(ex);
+        bindId(stmt, 1, id);
+    }
+
+    /**
+     * @param count number of identifiers to look up.
+     * @return a query selecting {@code count} entities by identifier.
+     */
+    public String getFindAllByIdQuery(final int count) {
+        ensureIdentifiers();
+        return findAllByIdQueries.computeIfAbsent(count, this::createFindAllByIdQuery);
+    }
+
+    public void onFindAllById(final PreparedStatement stmt, final List<?> ids) {
+        int idx = 1;
+        for (final var id : ids) {
+            idx = bindId(stmt, idx, id);
+        }
+    }
+
+    private String createFindAllByIdQuery(final int count) {
+        final var idNames = idFields.stream()
+                .map(f -> translation.wrapFieldName(name(f.field)))
+                .collect(toList());
+        final var out = new StringBuilder(findAllQuery).append(" WHERE ");
+        if (idNames.size() == 1) {
+            out.append(idNames.get(0)).append(" IN (");
+            for (int i = 0; i < count; i++) {
+                out.append(i == 0 ? "?" : ", ?");
+            }
+            return out.append(')').toString();
+        }
+        if (translation.supportsRowValueComparison()) {
+            final var row = idNames.stream().map(it -> "?").collect(joining(", ", "(", ")"));
+            out.append(idNames.stream().collect(joining(", ", "(", ")"))).append(" IN (");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    out.append(", ");
                 }
-                return;
+                out.append(row);
             }
+            return out.append(')').toString();
+        }
+        final var row = idNames.stream().map(it -> it + " = ?").collect(joining(" AND ", "(", ")"));
+        out.append('(');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                out.append(" OR ");
+            }
+            out.append(row);
+        }
+        return out.append(')').toString();
+    }
+
+    private int bindId(final PreparedStatement stmt, final int offset, final Object id) {
+        if (idFields.size() == 1) {
+            final Column.ValueMapper mapper = idFields.get(0).valueMapper;
             try {
-                stmt.setObject(1, id);
+                stmt.setObject(offset, mapper != null ? mapper.toDatabase(id) : id);
             } catch (final SQLException ex) {
                 throw new PersistenceException(ex);
             }
-            return;
+            return offset + 1;
         }
 
-        int idx = 1;
+        final Iterator<?> ids;
         if (Object[].class.isInstance(id)) {
-            final var ids = Object[].class.cast(id);
-            if (ids.length != idFields.size()) {
-                throw new IllegalArgumentException("Invalid id, expected " + idFields.size() + " bindings but got " + ids.length + ": " + idFields);
-            }
-            for (final var field : idFields) {
-                final var value = ids[idx - 1];
-                try {
-                    doBind(stmt, idx, field.type, value, field.valueMapper);
-                    idx++;
-                } catch (final SQLException ex) {
-                    throw new PersistenceException(ex);
-                }
+            final var array = Object[].class.cast(id);
+            if (array.length != idFields.size()) {
+                throw new IllegalArgumentException("Invalid id, expected " + idFields.size() + " bindings but got " + array.length + ": " + idFields);
             }
+            ids = Arrays.asList(array).iterator();
         } else if (Collection.class.isInstance(id)) {
-            final var ids = Collection.class.cast(id);
-            if (ids.size() != idFields.size()) {
-                throw new IllegalArgumentException("Invalid id, expected " + idFields.size() + " bindings but got " + ids.size() + ": " + idFields);
-            }
-            final var it = ids.iterator();
-            for (final var field : idFields) {
-                final var value = it.next();
-                try {
-                    doBind(stmt, idx, field.type, value, field.valueMapper);
-                    idx++;
-                } catch (final SQLException ex) {
-                    throw new PersistenceException(ex);
-                }
+            final var collection = Collection.class.cast(id);
+            if (collection.size() != idFields.size()) {
+                throw new IllegalArgumentException("Invalid id, expected " + idFields.size() + " bindings but got " + collection.size() + ": " + idFields);
             }
+            ids = collection.iterator();
         } else {
             throw new IllegalArgumentException("Invalid id, ensure to pass an object array or collection");
         }
+        int idx = offset;
+        for (final var field : idFields) {
+            try {
+                doBind(stmt, idx++, field.type, ids.next(), field.valueMapper);
+            } catch (final SQLException ex) {
+                throw new PersistenceException(ex);
+            }
+        }
+        return idx;
     }
 
     private Comparator<Map.Entry<String, ParameterHolder>> constructorOrder() {
@@ -604,10 +964,16 @@ public class EntityImpl<E> implements Entity<E> {
     }
 
     private void doBind(final Object instance, final PreparedStatement statement, final int idx, final ColumnModel field) {
+        final Object value;
         try {
-            doBind(statement, idx, field.type, field.field.get(instance), field.valueMapper);
-        } catch (final IllegalAccessException e) {
+            value = (Object) field.getter.invokeExact(instance);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
             throw new IllegalStateException(e);
+        }
+        try {
+            doBind(statement, idx, field.type, value, field.valueMapper);
         } catch (final SQLException ex) {
             throw new PersistenceException(ex);
         }
@@ -622,19 +988,39 @@ public class EntityImpl<E> implements Entity<E> {
         }
     }
 
-    private void callMethodsWith(final List<Method> callback, final Object instance) {
-        if (callback.isEmpty()) {
-            return;
+    private void callMethodsWith(final MethodHandle[] callbacks, final Object instance) {
+        for (final var callback : callbacks) {
+            try {
+                callback.invokeExact(instance);
+            } catch (final Throwable e) {
+                throw new PersistenceException(e);
+            }
         }
-        callback.forEach(m -> {
+    }
+
+    private MethodHandle[] toHandles(final List<Method> methods) {
+        return methods.stream()
+                .map(m -> {
+                    try {
+                        return MethodHandles.lookup().unreflect(m).asType(methodType(void.class, Object.class));
+                    } catch (final IllegalAccessException e) {
+                        throw new PersistenceException(e);
+                    }
+                })
+                .toArray(MethodHandle[]::new);
+    }
+
+    private MethodHandle unreflect(final Constructor<E> constructor) {
+        try {
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (final IllegalAccessException e) { // public constructor but not public class
+            constructor.setAccessible(true);
             try {
-                m.invoke(instance);
-            } catch (final IllegalAccessException e) {
-                throw new IllegalStateException(e);
-            } catch (final InvocationTargetException e) {
-                throw new PersistenceException(e.getTargetException());
+                return MethodHandles.lookup().unreflectConstructor(constructor);
+            } catch (final IllegalAccessException iae) {
+                throw new PersistenceException(iae);
             }
-        });
+        }
     }
 
     private Stream<Parameter> captureConstructorParameters(final Class<?> type) {
@@ -786,30 +1172,49 @@ public class EntityImpl<E> implements Entity<E> {
 
         private IdColumnModel(final Field field, final Class<?> type,
                               final Column.ValueMapper<?, ?> valueMapper,
-                              final int hash, final boolean autoIncremented) {
-            super(field, type, valueMapper, hash);
+                              final int hash, final MethodHandle getter, final MethodHandle setter,
+                              final MethodHandle rawSetter, final boolean autoIncremented) {
+            super(field, type, valueMapper, hash, getter, setter, rawSetter);
             this.autoIncremented = autoIncremented;
         }
     }
 
     private static class ColumnModel {
+        private static final MethodType GETTER_TYPE = methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = methodType(void.class, Object.class, Object.class);
+
         protected final Field field;
         protected final Class<?> type;
         protected final Column.ValueMapper<?, ?> valueMapper;
+        protected final MethodHandle getter; // (Object) -> Object
+        protected final MethodHandle setter; // (Object, Object) -> void, null for records (final fields)
+        protected final MethodHandle rawSetter; // exact field signature, used to set primitives without boxing
 
         private final int hash;
 
         private ColumnModel(final Field field, final Class<?> type,
                             final Column.ValueMapper<?, ?> valueMapper,
-                            final int hash) {
+                            final int hash, final MethodHandle getter, final MethodHandle setter,
+                            final MethodHandle rawSetter) {
             this.field = field;
             this.type = type;
             this.hash = hash;
             this.valueMapper = valueMapper;
+            this.getter = getter;
+            this.setter = setter;
+            this.rawSetter = rawSetter;
         }
 
-        private ColumnModel(final Field field, final Column.ValueMapper<?, ?> valueMapper) {
+        private ColumnModel(final Field field, final Column.ValueMapper<?, ?> valueMapper, final boolean writable) {
             this.field = field;
+            try { // field is already accessible
+                final var lookup = MethodHandles.lookup();
+                this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                this.rawSetter = writable ? lookup.unreflectSetter(field) : null;
+                this.setter = writable ? rawSetter.asType(SETTER_TYPE) : null;
+            } catch (final IllegalAccessException e) {
+                throw new PersistenceException(e);
+            }
             this.hash = Objects.hash(field);
             this.valueMapper = valueMapper == null && field.getType().isEnum() ? new EnumMapper<>(Class.class.cast(field.getType())) : valueMapper;
             this.type = valueMapper == null ?
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl;
+
+import io.yupiik.uship.persistence.api.CloseableIterator;
+import io.yupiik.uship.persistence.api.PersistenceException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Aggregates the rows of a join fetch query (ordered by parent identifier) into parents with their children.
+ * Only the current parent is kept in memory, children are deduplicated by identifier (several joins produce a cartesian product).
+ *
+ * @param <P> the parent type.
+ */
+public class JoinFetchIterator<P> implements CloseableIterator<P> {
+    private final ResultSetIterator<P> rows;
+    private final Function<ResultSet, P> parentMapper;
+    private final int[] parentIdIndices;
+    private final List<JoinMapping<P, ?>> joins;
+
+    private Object currentKey;
+    private P current;
+    private P next;
+
+    public JoinFetchIterator(final ResultSet resultSet, final Function<ResultSet, P> parentMapper, final int[] parentIdIndices,
+                             final List<JoinMapping<P, ?>> joins, final AutoCloseable... resources) {
+        this.parentMapper = parentMapper;
+        this.parentIdIndices = parentIdIndices;
+        this.joins = joins;
+        this.rows = new ResultSetIterator<>(resultSet, this::onRow, resources);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        while (rows.hasNext()) {
+            final var completed = rows.next();
+            if (completed != null) {
+                next = completed;
+                return true;
+            }
+        }
+        next = complete();
+        return next != null;
+    }
+
+    @Override
+    public P next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final var value = next;
+        next = null;
+        return value;
+    }
+
+    @Override
+    public void close() {
+        rows.close();
+    }
+
+    // returns the previous parent when the row starts a new one, null otherwise
+    private P onRow(final ResultSet resultSet) {
+        try {
+            final var key = key(resultSet, parentIdIndices);
+            P completed = null;
+            if (current == null || !Objects.equals(key, currentKey)) {
+                completed = complete();
+                currentKey = key;
+                current = parentMapper.apply(resultSet);
+            }
+            for (final var join : joins) {
+                join.onRow(resultSet);
+            }
+            return completed;
+        } catch (final SQLException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    private P complete() {
+        if (current == null) {
+            return null;
+        }
+        final var parent = current;
+        for (final var join : joins) {
+            join.flush(parent);
+        }
+        current = null;
+        currentKey = null;
+        return parent;
+    }
+
+    // null if all identifier columns are null (left join without child)
+    private static Object key(final ResultSet resultSet, final int[] indices) throws SQLException {
+        if (indices.length == 1) {
+            return resultSet.getObject(indices[0]);
+        }
+        final var values = new Object[indices.length];
+        boolean hasValue = false;
+        for (int i = 0; i < indices.length; i++) {
+            values[i] = resultSet.getObject(indices[i]);
+            hasValue |= values[i] != null;
+        }
+        return hasValue ? Arrays.asList(values) : null;
+    }
+
+    public static class JoinMapping<P, C> {
+        private final Function<ResultSet, C> mapper;
+        private final int[] idIndices;
+        private final BiConsumer<P, List<C>> setter;
+        private final Map<Object, C> children = new LinkedHashMap<>();
+
+        public JoinMapping(final Function<ResultSet, C> mapper, final int[] idIndices, final BiConsumer<P, List<C>> setter) {
+            this.mapper = mapper;
+            this.idIndices = idIndices;
+            this.setter = setter;
+        }
+
+        private void onRow(final ResultSet resultSet) throws SQLException {
+            final var key = key(resultSet, idIndices);
+            if (key != null && !children.containsKey(key)) {
+                children.put(key, mapper.apply(resultSet));
+            }
+        }
+
+        private void flush(final P parent) {
+            setter.accept(parent, new ArrayList<>(children.values()));
+            children.clear();
+        }
+    }
+}
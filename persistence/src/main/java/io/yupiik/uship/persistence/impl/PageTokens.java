@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl;
+
+import io.yupiik.uship.persistence.api.PersistenceException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serializes keyset pagination positions (identifier values) as opaque URL safe tokens.
+ * Format (before base64 encoding) is a sequence of {@code <length>:<value>}, {@code -} being {@code null}.
+ */
+public final class PageTokens {
+    private static final Set<Class<?>> SUPPORTED_TYPES = Set.of(
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Boolean.class,
+            BigDecimal.class, BigInteger.class, UUID.class,
+            LocalDate.class, LocalDateTime.class, LocalTime.class, OffsetDateTime.class, ZonedDateTime.class, Instant.class);
+
+    private PageTokens() {
+        // no-op
+    }
+
+    public static String encode(final List<?> values) {
+        final var out = new StringBuilder();
+        for (final var value : values) {
+            if (value == null) {
+                out.append('-');
+                continue;
+            }
+            if (!Enum.class.isInstance(value) && !SUPPORTED_TYPES.contains(value.getClass())) { // else decode would fail
+                throw new PersistenceException("Unsupported keyset pagination identifier type: " + value.getClass());
+            }
+            final var string = Enum.class.isInstance(value) ? Enum.class.cast(value).name() : value.toString();
+            out.append(string.length()).append(':').append(string);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(out.toString().getBytes(UTF_8));
+    }
+
+    public static List<Object> decode(final String token, final List<Class<?>> types) {
+        final String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), UTF_8);
+        } catch (final IllegalArgumentException iae) {
+            throw new PersistenceException("Invalid continuation token: '" + token + "'");
+        }
+        final var values = new ArrayList<>(types.size());
+        int index = 0;
+        for (final var type : types) {
+            if (index >= raw.length()) {
+                throw new PersistenceException("Invalid continuation token: '" + token + "'");
+            }
+            if (raw.charAt(index) == '-') {
+                values.add(null);
+                index++;
+                continue;
+            }
+            final int sep = raw.indexOf(':', index);
+            if (sep < 0) {
+                throw new PersistenceException("Invalid continuation token: '" + token + "'");
+            }
+            final int end;
+            try {
+                end = sep + 1 + Integer.parseInt(raw.substring(index, sep));
+            } catch (final NumberFormatException nfe) {
+                throw new PersistenceException("Invalid continuation token: '" + token + "'");
+            }
+            if (end > raw.length()) {
+                throw new PersistenceException("Invalid continuation token: '" + token + "'");
+            }
+            try {
+                values.add(parse(type, raw.substring(sep + 1, end)));
+            } catch (final IllegalArgumentException | DateTimeException e) {
+                throw new PersistenceException("Invalid continuation token: '" + token + "'");
+            }
+            index = end;
+        }
+        if (index != raw.length()) {
+            throw new PersistenceException("Invalid continuation token: '" + token + "'");
+        }
+        return values;
+    }
+
+    private static Object parse(final Class<?> type, final String value) {
+        if (String.class == type) {
+            return value;
+        }
+        if (Integer.class == type || int.class == type) {
+            return Integer.valueOf(value);
+        }
+        if (Long.class == type || long.class == type) {
+            return Long.valueOf(value);
+        }
+        if (Short.class == type || short.class == type) {
+            return Short.valueOf(value);
+        }
+        if (Byte.class == type || byte.class == type) {
+            return Byte.valueOf(value);
+        }
+        if (Double.class == type || double.class == type) {
+            return Double.valueOf(value);
+        }
+        if (Float.class == type || float.class == type) {
+            return Float.valueOf(value);
+        }
+        if (Boolean.class == type || boolean.class == type) {
+            return Boolean.valueOf(value);
+        }
+        if (BigDecimal.class == type) {
+            return new BigDecimal(value);
+        }
+        if (BigInteger.class == type) {
+            return new BigInteger(value);
+        }
+        if (UUID.class == type) {
+            return UUID.fromString(value);
+        }
+        if (LocalDate.class == type) {
+            return LocalDate.parse(value);
+        }
+        if (LocalDateTime.class == type) {
+            return LocalDateTime.parse(value);
+        }
+        if (LocalTime.class == type) {
+            return LocalTime.parse(value);
+        }
+        if (OffsetDateTime.class == type) {
+            return OffsetDateTime.parse(value);
+        }
+        if (ZonedDateTime.class == type) {
+            return ZonedDateTime.parse(value);
+        }
+        if (Instant.class == type) {
+            return Instant.parse(value);
+        }
+        if (type.isEnum()) {
+            return Enum.valueOf(type.asSubclass(Enum.class), value);
+        }
+        throw new PersistenceException("Unsupported keyset pagination identifier type: " + type);
+    }
+}
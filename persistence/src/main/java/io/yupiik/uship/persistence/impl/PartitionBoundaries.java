@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl;
+
+import io.yupiik.uship.persistence.api.PersistenceException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Computes partition boundaries of a key range, numeric and temporal keys are projected on a {@code long}
+ * (epoch day for dates, epoch milliseconds for timestamps) to be split.
+ */
+final class PartitionBoundaries {
+    private PartitionBoundaries() {
+        // no-op
+    }
+
+    /**
+     * @param min        lowest key.
+     * @param max        greatest key.
+     * @param partitions number of partitions.
+     * @param type       key type.
+     * @return the (distinct and sorted) boundaries between partitions, there are at most {@code partitions - 1} values.
+     */
+    static List<Object> compute(final Object min, final Object max, final int partitions, final Class<?> type) {
+        final var out = new ArrayList<Object>(Math.max(0, partitions - 1));
+        if (min == null || max == null || partitions <= 1) {
+            return out;
+        }
+        final var from = BigInteger.valueOf(toLong(min));
+        final var range = BigInteger.valueOf(toLong(max)).subtract(from);
+        if (range.signum() <= 0) {
+            return out;
+        }
+        final var count = BigInteger.valueOf(partitions);
+        long last = Long.MIN_VALUE;
+        for (int i = 1; i < partitions; i++) {
+            final var boundary = from.add(range.multiply(BigInteger.valueOf(i)).divide(count)).longValue();
+            if (boundary != last && boundary > from.longValue()) {
+                out.add(fromLong(boundary, type));
+                last = boundary;
+            }
+        }
+        return out;
+    }
+
+    private static long toLong(final Object value) {
+        if (Number.class.isInstance(value)) {
+            return Number.class.cast(value).longValue();
+        }
+        if (LocalDate.class.isInstance(value)) {
+            return LocalDate.class.cast(value).toEpochDay();
+        }
+        if (java.sql.Date.class.isInstance(value)) {
+            return java.sql.Date.class.cast(value).toLocalDate().toEpochDay();
+        }
+        if (LocalDateTime.class.isInstance(value)) {
+            return LocalDateTime.class.cast(value).toInstant(UTC).toEpochMilli();
+        }
+        if (OffsetDateTime.class.isInstance(value)) {
+            return OffsetDateTime.class.cast(value).toInstant().toEpochMilli();
+        }
+        if (Instant.class.isInstance(value)) {
+            return Instant.class.cast(value).toEpochMilli();
+        }
+        if (Date.class.isInstance(value)) {
+            return Date.class.cast(value).getTime();
+        }
+        throw new PersistenceException("Unsupported partition key: " + value + " (" + value.getClass().getName() + ")");
+    }
+
+    private static Object fromLong(final long value, final Class<?> type) {
+        if (type == long.class || type == Long.class) {
+            return value;
+        }
+        if (type == int.class || type == Integer.class) {
+            return (int) value;
+        }
+        if (type == short.class || type == Short.class) {
+            return (short) value;
+        }
+        if (type == double.class || type == Double.class) {
+            return (double) value;
+        }
+        if (type == float.class || type == Float.class) {
+            return (float) value;
+        }
+        if (type == BigInteger.class) {
+            return BigInteger.valueOf(value);
+        }
+        if (type == BigDecimal.class) {
+            return BigDecimal.valueOf(value);
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.ofEpochDay(value);
+        }
+        if (type == java.sql.Date.class) {
+            return java.sql.Date.valueOf(LocalDate.ofEpochDay(value));
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(value), UTC);
+        }
+        if (type == OffsetDateTime.class) {
+            return OffsetDateTime.ofInstant(Instant.ofEpochMilli(value), UTC);
+        }
+        if (type == Instant.class) {
+            return Instant.ofEpochMilli(value);
+        }
+        if (type == Timestamp.class) {
+            return new Timestamp(value);
+        }
+        if (type == Date.class) {
+            return new Date(value);
+        }
+        throw new PersistenceException("Unsupported partition key type: " + type.getName());
+    }
+}
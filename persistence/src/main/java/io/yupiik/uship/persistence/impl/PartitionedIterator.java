@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl;
+
+import io.yupiik.uship.persistence.api.CloseableIterator;
+import io.yupiik.uship.persistence.api.PersistenceException;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Merges partitions read in parallel (each partition being its own query iterator).
+ * <p>
+ * Partitions are started lazily, at most {@code maxInFlight} at a time, a new one being started when the consumer
+ * sees one completing. When ordered, partitions are consumed one after the other (next ones are prefetched in their own buffer),
+ * else all partitions share a single buffer and items are returned as soon as they are read.
+ *
+ * @param <T> the item type.
+ */
+public class PartitionedIterator<T> implements CloseableIterator<T> {
+    private static final Object END = new Object();
+
+    private final List<Supplier<CloseableIterator<T>>> partitions;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final int bufferSize;
+    private final boolean ordered;
+    private final BlockingQueue<Object>[] queues;
+
+    private volatile boolean closed;
+    private int started;
+    private int completed;
+    private Object next;
+
+    @SuppressWarnings("unchecked")
+    public PartitionedIterator(final List<Supplier<CloseableIterator<T>>> partitions, final Executor executor,
+                               final int maxInFlight, final int bufferSize, final boolean ordered) {
+        this.partitions = partitions;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight <= 0 ? partitions.size() : maxInFlight;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.ordered = ordered;
+        this.queues = new BlockingQueue[ordered ? partitions.size() : 1];
+        if (!ordered) {
+            queues[0] = new ArrayBlockingQueue<>(this.bufferSize);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        startPartitions();
+        while (completed < partitions.size()) {
+            final Object value;
+            try {
+                value = queues[ordered ? completed : 0].take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new PersistenceException(e);
+            }
+            if (value == END) {
+                completed++;
+                startPartitions();
+            } else if (Failure.class.isInstance(value)) {
+                close();
+                final var error = Failure.class.cast(value).error;
+                if (RuntimeException.class.isInstance(error)) {
+                    throw RuntimeException.class.cast(error);
+                }
+                if (Error.class.isInstance(error)) {
+                    throw Error.class.cast(error);
+                }
+                throw new PersistenceException(error);
+            } else {
+                next = value;
+                return true;
+            }
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final var value = (T) next;
+        next = null;
+        return value;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (final var queue : queues) { // unblock producers, they stop and release their connection
+            if (queue != null) {
+                queue.clear();
+            }
+        }
+    }
+
+    private void startPartitions() {
+        while (started < partitions.size() && started - completed < maxInFlight) {
+            final var partition = partitions.get(started);
+            final BlockingQueue<Object> queue;
+            if (ordered) {
+                queue = new ArrayBlockingQueue<>(bufferSize);
+                queues[started] = queue;
+            } else {
+                queue = queues[0];
+            }
+            started++;
+            try {
+                executor.execute(() -> produce(partition, queue));
+            } catch (final RuntimeException re) {
+                close();
+                throw re;
+            }
+        }
+    }
+
+    // whatever happens a terminal marker is enqueued else the consumer would wait forever for this partition
+    private void produce(final Supplier<CloseableIterator<T>> partition, final BlockingQueue<Object> queue) {
+        Object terminal = END;
+        try (final var iterator = partition.get()) {
+            while (!closed && iterator.hasNext()) {
+                if (!put(queue, iterator.next())) {
+                    terminal = new Failure(new PersistenceException("Partition reading interrupted"));
+                    return;
+                }
+            }
+        } catch (final Throwable error) {
+            terminal = new Failure(error);
+        } finally {
+            putTerminal(queue, terminal);
+        }
+    }
+
+    private boolean put(final BlockingQueue<Object> queue, final Object value) {
+        try {
+            while (!closed) {
+                if (queue.offer(value, 100, MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return true; // closed so nobody consumes the value anymore
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ignores interruptions until the value is enqueued (or the iterator closed) and restores the interrupted flag
+    private void putTerminal(final BlockingQueue<Object> queue, final Object value) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (!closed) {
+                try {
+                    if (queue.offer(value, 100, MILLISECONDS)) {
+                        return;
+                    }
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Failure {
+        private final Throwable error;
+
+        private Failure(final Throwable error) {
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl;
+
+import io.yupiik.uship.persistence.api.CloseableIterator;
+import io.yupiik.uship.persistence.api.PersistenceException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+public class ResultSetIterator<T> implements CloseableIterator<T> {
+    private final ResultSet resultSet;
+    private final Function<ResultSet, T> mapper;
+    private final AutoCloseable[] resources;
+
+    private Boolean hasNext;
+    private boolean closed;
+
+    /**
+     * @param resultSet the resultset to iterate over.
+     * @param mapper    the line mapper.
+     * @param resources the resources to close with the iterator (in order), generally statement and connection.
+     */
+    public ResultSetIterator(final ResultSet resultSet, final Function<ResultSet, T> mapper, final AutoCloseable... resources) {
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+        this.resources = resources;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (hasNext == null) {
+            try {
+                hasNext = resultSet.next();
+            } catch (final SQLException e) {
+                throw new PersistenceException(e);
+            }
+            if (!hasNext) { // release the connection asap
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        hasNext = null;
+        return mapper.apply(resultSet);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        final var all = new AutoCloseable[resources.length + 1];
+        all[0] = resultSet;
+        System.arraycopy(resources, 0, all, 1, resources.length);
+        closeAll(all);
+    }
+
+    // closes all resources (null are ignored) even if one fails
+    static void closeAll(final AutoCloseable... resources) {
+        PersistenceException error = null;
+        for (final var resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (final Exception e) {
+                if (error == null) {
+                    error = new PersistenceException(e);
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Simple LRU/TTL cache for {@link io.yupiik.uship.persistence.api.Cacheable} entities.
+ * A generation counter ensures a value loaded concurrently to an invalidation is not cached.
+ * When the write happens in a bound {@link io.yupiik.uship.persistence.impl.datasource.Transaction},
+ * the entry is invalidated again once it completes since a concurrent lookup can cache the row as it was before the commit.
+ */
+public class EntityCache {
+    private final int maxSize;
+    private final long ttl;
+    private final Map<Object, CachedValue> entries;
+    private long generation;
+
+    public EntityCache(final int maxSize, final long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttl = ttlMs < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.entries = new LinkedHashMap<>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Object, CachedValue> eldest) {
+                return size() > EntityCache.this.maxSize;
+            }
+        };
+    }
+
+    public <T> T getOrLoad(final Object id, final Supplier<T> loader) {
+        final var key = toKey(id);
+        final long currentGeneration;
+        synchronized (this) {
+            final var entry = entries.get(key);
+            if (entry != null) {
+                if (ttl < 0 || entry.expiresAt - System.nanoTime() > 0) {
+                    return (T) entry.value;
+                }
+                entries.remove(key);
+            }
+            currentGeneration = generation;
+        }
+
+        final var value = loader.get();
+        if (value != null) {
+            synchronized (this) {
+                if (currentGeneration == generation) {
+                    entries.put(key, new CachedValue(value, ttl < 0 ? 0 : System.nanoTime() + ttl));
+                }
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(final Object id) {
+        generation++;
+        if (id == null) {
+            entries.clear();
+        } else {
+            entries.remove(toKey(id));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // normalize composite identifiers to get a proper equals/hashCode
+    public static Object toKey(final Object id) {
+        if (Object[].class.isInstance(id)) {
+            return Arrays.asList(Object[].class.cast(id));
+        }
+        if (Collection.class.isInstance(id) && !List.class.isInstance(id)) {
+            return List.copyOf(Collection.class.cast(id));
+        }
+        return id;
+    }
+
+    private static class CachedValue {
+        private final Object value;
+        private final long expiresAt;
+
+        private CachedValue(final Object value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
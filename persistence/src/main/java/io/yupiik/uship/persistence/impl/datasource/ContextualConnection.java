@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.datasource;
+
+import java.sql.Connection;
+
+/**
+ * A connection bound to a context (transaction): {@link #close()} is ignored since the context owns the connection lifecycle.
+ * It keeps the identity equality of a connection, use {@link #unwrap(Class)} to compare the physical connections.
+ */
+public class ContextualConnection extends DelegatingConnection {
+    private final Transaction transaction;
+
+    public ContextualConnection(final Connection delegate) {
+        this(delegate, null);
+    }
+
+    public ContextualConnection(final Connection delegate, final Transaction transaction) {
+        super(delegate);
+        this.transaction = transaction;
+    }
+
+    /**
+     * @return the transaction owning this connection if any, {@code null} otherwise.
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    @Override
+    public void close() {
+        // no-op, owned by the context
+    }
+}
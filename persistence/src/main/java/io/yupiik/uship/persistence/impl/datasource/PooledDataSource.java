@@ -0,0 +1,641 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.datasource;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Lightweight connection pool without any dependency.
+ * <p>
+ * The borrow path does not use any monitor (safe for virtual threads): a connection is taken with a CAS on its state,
+ * trying first the connection previously used by the current (platform) thread, then any idle one.
+ * The number of borrowed connections is bounded by a fair semaphore, callers wait at most {@code maxWait} milliseconds.
+ * <p>
+ * Connections idle for more than {@code validationInterval} are validated ({@link Connection#isValid(int)}) before being returned,
+ * idle connections are evicted after {@code idleTimeout} and all connections after {@code maxLifetime}.
+ * Eviction runs at most every {@code evictionInterval}, triggered by borrow/release calls: it is submitted to the
+ * {@code evictionExecutor} if set, otherwise only expired and idle connections are closed inline and {@code minIdle}
+ * connections are never created on the caller thread, schedule {@link #evict()} to keep them.
+ * <p>
+ * Returned connections are reset when closed: pending transaction is rolled back, auto-commit, read-only and isolation
+ * level are restored.
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = 2;
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final DataSource factory;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final CopyOnWriteArrayList<PooledEntry> entries = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<WeakReference<PooledEntry>> lastUsed = new ThreadLocal<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private Executor evictionExecutor;
+    private int minIdle;
+    private long maxWait = 30_000;
+    private int validationTimeout = 5;
+    private long validationInterval = TimeUnit.SECONDS.toNanos(5);
+    private long idleTimeout = TimeUnit.MINUTES.toNanos(10);
+    private long maxLifetime = TimeUnit.MINUTES.toNanos(30);
+    private long evictionInterval = TimeUnit.SECONDS.toNanos(30);
+    private volatile boolean closed;
+
+    public PooledDataSource(final String url, final String username, final String password, final int maxSize) {
+        this(new SimpleDataSource(url, username, password), maxSize);
+    }
+
+    /**
+     * @param factory the datasource creating physical connections (not pooled), generally a {@link SimpleDataSource}.
+     * @param maxSize max number of connections.
+     */
+    public PooledDataSource(final DataSource factory, final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid pool max size: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * @param minIdle number of connections the eviction keeps (and creates if missing).
+     * @return this pool.
+     */
+    public PooledDataSource setMinIdle(final int minIdle) {
+        this.minIdle = Math.min(minIdle, maxSize);
+        return this;
+    }
+
+    /**
+     * @param maxWait how long (milliseconds) {@link #getConnection()} waits for a connection before failing.
+     * @return this pool.
+     */
+    public PooledDataSource setMaxWait(final long maxWait) {
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    /**
+     * @param validationTimeout timeout (seconds) of {@link Connection#isValid(int)}.
+     * @return this pool.
+     */
+    public PooledDataSource setValidationTimeout(final int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+        return this;
+    }
+
+    /**
+     * @param validationInterval connections idle for more than this duration (milliseconds) are validated before being borrowed.
+     * @return this pool.
+     */
+    public PooledDataSource setValidationInterval(final long validationInterval) {
+        this.validationInterval = TimeUnit.MILLISECONDS.toNanos(validationInterval);
+        return this;
+    }
+
+    /**
+     * @param idleTimeout duration (milliseconds) after which an idle connection is closed, {@code 0} to disable.
+     * @return this pool.
+     */
+    public PooledDataSource setIdleTimeout(final long idleTimeout) {
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        return this;
+    }
+
+    /**
+     * @param maxLifetime duration (milliseconds) after which a connection is closed once released, {@code 0} to disable.
+     * @return this pool.
+     */
+    public PooledDataSource setMaxLifetime(final long maxLifetime) {
+        this.maxLifetime = TimeUnit.MILLISECONDS.toNanos(maxLifetime);
+        return this;
+    }
+
+    /**
+     * @param evictionInterval min duration (milliseconds) between two automatic evictions.
+     * @return this pool.
+     */
+    public PooledDataSource setEvictionInterval(final long evictionInterval) {
+        this.evictionInterval = TimeUnit.MILLISECONDS.toNanos(evictionInterval);
+        return this;
+    }
+
+    /**
+     * @param evictionExecutor executor running the automatic evictions (including {@code minIdle} connection creations),
+     *                         if not set they are partially done inline.
+     * @return this pool.
+     */
+    public PooledDataSource setEvictionExecutor(final Executor evictionExecutor) {
+        this.evictionExecutor = evictionExecutor;
+        return this;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of physical connections (idle and borrowed).
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    public int getActive() {
+        int active = 0;
+        for (final var entry : entries) {
+            if (entry.state.get() == IN_USE) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    public int getIdle() {
+        int idle = 0;
+        for (final var entry : entries) {
+            if (entry.state.get() == IDLE) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * @return an estimate of the number of callers waiting for a connection.
+     */
+    public int getPending() {
+        return permits.getQueueLength();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getDestroyedCount() {
+        return destroyed.sum();
+    }
+
+    public long getBorrowedCount() {
+        return borrowed.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return cumulated time (nanoseconds) spent by callers in {@link #getConnection()}, divide by {@link #getBorrowedCount()} to get the average.
+     */
+    public long getTotalWaitTime() {
+        return waitTime.sum();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Pool is closed");
+        }
+
+        final long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire() && !permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                throw timeout();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+
+        try {
+            final var entry = borrow(start + TimeUnit.MILLISECONDS.toNanos(maxWait));
+            waitTime.add(System.nanoTime() - start);
+            borrowed.increment();
+            maybeEvict(start);
+            return new PooledConnection(this, entry);
+        } catch (final SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Closes expired and idle connections (keeping {@code minIdle} ones) and creates missing idle connections.
+     */
+    public void evict() {
+        final long now = System.nanoTime();
+        lastEviction.set(now);
+        removeExpiredAndIdle(now);
+        while (!closed && size.get() < minIdle) {
+            final int current = size.get();
+            if (!size.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            try {
+                entries.add(new PooledEntry(factory.getConnection(), IDLE));
+                created.increment();
+                signal();
+            } catch (final SQLException | RuntimeException e) {
+                size.decrementAndGet();
+                logger.log(Level.WARNING, e, () -> "Can't create an idle connection: " + e.getMessage());
+                break;
+            }
+        }
+    }
+
+    private void removeExpiredAndIdle(final long now) {
+        int idle = getIdle();
+        for (final var entry : entries) {
+            if (!entry.state.compareAndSet(IDLE, IN_USE)) {
+                continue;
+            }
+            if (isExpired(entry, now) || (idleTimeout > 0 && idle > minIdle && now - entry.lastUsed > idleTimeout)) {
+                remove(entry);
+                idle--;
+            } else {
+                entry.state.set(IDLE);
+                signal();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (final var entry : entries) { // borrowed ones are closed when released
+            if (entry.state.compareAndSet(IDLE, IN_USE)) {
+                remove(entry);
+            }
+        }
+    }
+
+    private PooledEntry borrow(final long deadline) throws SQLException {
+        if (!isVirtual(Thread.currentThread())) { // thread affinity, useless for virtual threads which are not reused
+            final var ref = lastUsed.get();
+            final var entry = ref == null ? null : ref.get();
+            if (entry != null && entry.state.compareAndSet(IDLE, IN_USE) && validate(entry)) {
+                return entry;
+            }
+        }
+        while (true) {
+            if (closed) {
+                throw new SQLException("Pool is closed");
+            }
+            final long version = releases.get();
+            for (final var entry : entries) {
+                if (entry.state.compareAndSet(IDLE, IN_USE) && validate(entry)) {
+                    return entry;
+                }
+            }
+
+            final int current = size.get();
+            if (current < maxSize) {
+                if (size.compareAndSet(current, current + 1)) {
+                    try {
+                        final var entry = new PooledEntry(factory.getConnection(), IN_USE);
+                        entries.add(entry);
+                        created.increment();
+                        return entry;
+                    } catch (final SQLException | RuntimeException e) {
+                        size.decrementAndGet();
+                        throw e;
+                    }
+                }
+                continue;
+            }
+
+            // a permit was acquired so a connection is being released or checked by the eviction, wait for it
+            await(version, deadline);
+        }
+    }
+
+    private void await(final long version, final long deadline) throws SQLException {
+        waiters.incrementAndGet();
+        lock.lock();
+        try {
+            long remaining = deadline - System.nanoTime();
+            while (releases.get() == version) {
+                if (remaining <= 0) {
+                    throw timeout();
+                }
+                remaining = available.awaitNanos(remaining);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
+    // called once a connection is idle or a slot is free, must be done after the state change
+    private void signal() {
+        releases.incrementAndGet();
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private SQLTransientConnectionException timeout() {
+        timeouts.increment();
+        return new SQLTransientConnectionException(
+                "No connection available after " + maxWait + "ms (max size=" + maxSize + ", pending=" + getPending() + ")");
+    }
+
+    private boolean validate(final PooledEntry entry) {
+        final long now = System.nanoTime();
+        if (isExpired(entry, now)) {
+            remove(entry);
+            return false;
+        }
+        if (now - entry.lastUsed > validationInterval) {
+            try {
+                if (!entry.connection.isValid(validationTimeout)) {
+                    remove(entry);
+                    return false;
+                }
+            } catch (final SQLException e) {
+                remove(entry);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isExpired(final PooledEntry entry, final long now) {
+        return maxLifetime > 0 && now - entry.createdAt > maxLifetime;
+    }
+
+    private void release(final PooledEntry entry, final boolean broken) {
+        try {
+            final long now = System.nanoTime();
+            entry.lastUsed = now;
+            if (broken || closed || isExpired(entry, now)) {
+                remove(entry);
+            } else {
+                entry.state.set(IDLE);
+                signal();
+                if (!isVirtual(Thread.currentThread())) {
+                    lastUsed.set(entry.reference);
+                }
+            }
+            maybeEvict(now);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void maybeEvict(final long now) {
+        final long last = lastEviction.get();
+        if (now - last > evictionInterval && lastEviction.compareAndSet(last, now)) {
+            if (evictionExecutor == null) {
+                removeExpiredAndIdle(now);
+            } else {
+                try {
+                    evictionExecutor.execute(this::evict);
+                } catch (final RuntimeException e) { // rejected
+                    logger.log(Level.FINE, e, () -> "Can't submit the eviction: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void remove(final PooledEntry entry) {
+        entry.state.set(REMOVED);
+        if (entries.remove(entry)) {
+            size.decrementAndGet();
+            destroyed.increment();
+            signal();
+        }
+        try {
+            entry.connection.close();
+        } catch (final SQLException e) {
+            logger.log(Level.FINE, e, () -> "Can't close connection: " + e.getMessage());
+        }
+    }
+
+    private static boolean isVirtual(final Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (final Throwable e) {
+            return false;
+        }
+    }
+
+    // Thread#isVirtual is not in java 11 API
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", methodType(boolean.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) {
+        // no-op
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) {
+        // no-op
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) {
+        return iface.cast(this);
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private static class PooledEntry {
+        private final Connection connection;
+        private final AtomicInteger state;
+        private final WeakReference<PooledEntry> reference = new WeakReference<>(this);
+        private final long createdAt = System.nanoTime();
+        private final boolean defaultAutoCommit;
+        private final boolean defaultReadOnly;
+        private final int defaultTransactionIsolation;
+        private volatile long lastUsed = createdAt;
+
+        private PooledEntry(final Connection connection, final int state) throws SQLException {
+            this.connection = connection;
+            this.state = new AtomicInteger(state);
+            try {
+                this.defaultAutoCommit = connection.getAutoCommit();
+                this.defaultReadOnly = connection.isReadOnly();
+                this.defaultTransactionIsolation = connection.getTransactionIsolation();
+            } catch (final SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+    }
+
+    private static class PooledConnection extends DelegatingConnection {
+        private final PooledDataSource pool;
+        private final PooledEntry entry;
+        private boolean autoCommit;
+        private boolean readOnlyChanged;
+        private boolean transactionIsolationChanged;
+        private boolean closed;
+
+        private PooledConnection(final PooledDataSource pool, final PooledEntry entry) {
+            super(entry.connection);
+            this.pool = pool;
+            this.entry = entry;
+            this.autoCommit = entry.defaultAutoCommit;
+        }
+
+        @Override
+        public void setAutoCommit(final boolean autoCommit) throws SQLException {
+            delegate().setAutoCommit(autoCommit);
+            this.autoCommit = autoCommit;
+        }
+
+        @Override
+        public void setReadOnly(final boolean readOnly) throws SQLException {
+            delegate().setReadOnly(readOnly);
+            readOnlyChanged = true;
+        }
+
+        @Override
+        public void setTransactionIsolation(final int level) throws SQLException {
+            delegate().setTransactionIsolation(level);
+            transactionIsolationChanged = true;
+        }
+
+        @Override
+        public boolean isClosed() throws SQLException {
+            return closed || delegate.isClosed();
+        }
+
+        @Override
+        public void abort(final Executor executor) throws SQLException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                delegate.abort(executor);
+            } finally {
+                pool.release(entry, true);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            boolean broken = false;
+            try { // reset the connection state for the next user
+                if (!autoCommit) {
+                    delegate.rollback();
+                }
+                if (autoCommit != entry.defaultAutoCommit) {
+                    delegate.setAutoCommit(entry.defaultAutoCommit);
+                }
+                if (readOnlyChanged) {
+                    delegate.setReadOnly(entry.defaultReadOnly);
+                }
+                if (transactionIsolationChanged) {
+                    delegate.setTransactionIsolation(entry.defaultTransactionIsolation);
+                }
+                delegate.clearWarnings();
+            } catch (final SQLException e) {
+                broken = true;
+            }
+            pool.release(entry, broken);
+        }
+
+        @Override
+        protected Connection delegate() throws SQLException {
+            if (closed) { // the physical connection can already be used by another caller
+                throw new SQLException("Connection closed");
+            }
+            return delegate;
+        }
+    }
+}
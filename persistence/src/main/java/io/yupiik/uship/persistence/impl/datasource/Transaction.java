@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.datasource;
+
+import io.yupiik.uship.persistence.api.PersistenceException;
+import io.yupiik.uship.persistence.api.SQLFunction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A transaction bound to a {@link TransactionContext}, it owns a physical connection until {@link #end()} is called.
+ * <p>
+ * Nested scopes rely on savepoints:
+ * <ul>
+ *     <li>{@link #savepoint(SQLFunction)}: the work is rolled back to the savepoint if it fails, released otherwise,</li>
+ *     <li>{@link #readOnly(SQLFunction)}: the work is always rolled back to the savepoint so nothing it wrote is kept.</li>
+ * </ul>
+ * <p>
+ * IMPORTANT: a transaction can be propagated to another thread (see {@link TransactionContext#wrap(Runnable)})
+ * but a JDBC connection is not thread safe so steps must be sequential (a continuation chain is fine, parallel tasks are not).
+ */
+public class Transaction {
+    private final Connection physical;
+    private final ContextualConnection connection;
+    private final List<Runnable> completionCallbacks = new CopyOnWriteArrayList<>();
+    private volatile boolean readOnly;
+    private volatile boolean active = true;
+
+    protected Transaction(final Connection physical, final boolean readOnly) {
+        this.physical = physical;
+        this.connection = new ContextualConnection(physical, this);
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @return the connection of this transaction, closing it is ignored.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Registers a callback executed when the transaction ends, typically to evict cached data once the changes are visible.
+     *
+     * @param callback the callback to execute in {@link #end()}.
+     */
+    public void afterCompletion(final Runnable callback) {
+        ensureActive();
+        completionCallbacks.add(callback);
+    }
+
+    /**
+     * Marks this transaction as ended, it can no more be bound to a thread, and executes the completion callbacks.
+     * Commit/rollback and connection release stay the responsibility of the caller which acquired the connection
+     * and this method should be called after them.
+     */
+    public void end() {
+        active = false;
+        RuntimeException error = null;
+        for (final var callback : completionCallbacks) {
+            try {
+                callback.run();
+            } catch (final RuntimeException re) {
+                if (error == null) {
+                    error = re;
+                } else {
+                    error.addSuppressed(re);
+                }
+            }
+        }
+        completionCallbacks.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Executes a nested read-only scope: the connection is marked as read-only when the driver supports it
+     * in the middle of a transaction, {@link io.yupiik.uship.persistence.api.Database} writes are rejected
+     * and whatever is written anyway is rolled back at the end of the scope.
+     *
+     * @param task the task to execute.
+     * @param <T>  the returned type.
+     * @return the task result.
+     * @throws SQLException if the task fails.
+     */
+    public <T> T readOnly(final SQLFunction<Connection, T> task) throws SQLException {
+        ensureActive();
+        final var savepoint = physical.setSavepoint();
+        final var wasReadOnly = readOnly;
+        final var switched = !physical.isReadOnly() && setPhysicalReadOnly(true);
+        readOnly = true;
+        final T result;
+        try {
+            result = task.apply(connection);
+        } catch (final SQLException | RuntimeException | Error e) {
+            readOnly = wasReadOnly;
+            rollback(savepoint, e);
+            if (switched) {
+                setPhysicalReadOnly(false);
+            }
+            throw e;
+        }
+        readOnly = wasReadOnly;
+        physical.rollback(savepoint);
+        if (switched) {
+            setPhysicalReadOnly(false);
+        }
+        return result;
+    }
+
+    /**
+     * Executes a nested read-write scope: if it fails, the transaction is rolled back to the state it had before the scope.
+     *
+     * @param task the task to execute.
+     * @param <T>  the returned type.
+     * @return the task result.
+     * @throws SQLException if the task fails.
+     */
+    public <T> T savepoint(final SQLFunction<Connection, T> task) throws SQLException {
+        ensureActive();
+        if (readOnly) {
+            throw new PersistenceException("Can't open a read-write scope in a read-only transaction");
+        }
+        final var savepoint = physical.setSavepoint();
+        final T result;
+        try {
+            result = task.apply(connection);
+        } catch (final SQLException | RuntimeException | Error e) {
+            rollback(savepoint, e);
+            throw e;
+        }
+        try {
+            physical.releaseSavepoint(savepoint);
+        } catch (final SQLFeatureNotSupportedException e) {
+            // released with the transaction
+        }
+        return result;
+    }
+
+    protected void ensureActive() {
+        if (!active) {
+            throw new PersistenceException("Transaction already ended");
+        }
+    }
+
+    // some drivers (PostgreSQL for ex) can't change it in the middle of a transaction
+    private boolean setPhysicalReadOnly(final boolean value) {
+        try {
+            physical.setReadOnly(value);
+            return true;
+        } catch (final SQLException e) {
+            return false;
+        }
+    }
+
+    private void rollback(final Savepoint savepoint, final Throwable error) {
+        try {
+            if (!physical.isClosed()) {
+                physical.rollback(savepoint);
+            }
+        } catch (final SQLException e) {
+            error.addSuppressed(e);
+        }
+    }
+}
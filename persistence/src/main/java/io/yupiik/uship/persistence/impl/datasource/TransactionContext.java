@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.datasource;
+
+import io.yupiik.uship.persistence.api.PersistenceException;
+import io.yupiik.uship.persistence.api.SQLFunction;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Binds a {@link Transaction} to the current execution for the duration of a task.
+ * <p>
+ * Platform threads use a {@link ThreadLocal}, virtual threads use a {@code ScopedValue} when the JVM provides it
+ * (it is looked up reflectively since this module targets Java 11) and fallback on the {@link ThreadLocal} otherwise.
+ * No monitor is used so it does not pin virtual threads.
+ * <p>
+ * The binding does not follow the task to other threads by itself, to propagate it to a continuation or another executor
+ * use {@link #wrap(Runnable)}, {@link #wrap(Supplier)} or {@link #propagating(Executor)} which capture the current transaction
+ * when they are called and bind it around the task execution.
+ */
+public class TransactionContext {
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+    private static final ScopedValues SCOPED_VALUES = ScopedValues.find();
+
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+    private final Object scopedValue = SCOPED_VALUES == null ? null : SCOPED_VALUES.newInstance();
+
+    /**
+     * @return the connection bound to the current execution or {@code null}.
+     */
+    public Connection current() {
+        final var current = currentTransaction();
+        return current == null ? null : current.getConnection();
+    }
+
+    /**
+     * @return the transaction bound to the current execution or {@code null}.
+     */
+    public Transaction currentTransaction() {
+        if (scopedValue != null) {
+            final var scoped = SCOPED_VALUES.get(scopedValue);
+            if (scoped != null) {
+                return scoped;
+            }
+        }
+        return transaction.get();
+    }
+
+    /**
+     * Creates a transaction for a connection, it is not bound until {@link #execute(Transaction, SQLFunction)} is called.
+     * The connection should not be in auto-commit mode if nested scopes are used.
+     *
+     * @param physical the connection the transaction uses.
+     * @param readOnly is the transaction read-only.
+     * @return the transaction, ensure to call {@link Transaction#end()} once done.
+     */
+    public Transaction begin(final Connection physical, final boolean readOnly) {
+        return new Transaction(physical, readOnly);
+    }
+
+    /**
+     * Executes a task with a bound connection, previous binding (if any) is restored after the execution.
+     *
+     * @param physical the connection to bind.
+     * @param task     the task to execute, it gets the contextual connection.
+     * @param <T>      the returned type.
+     * @return the task result.
+     * @throws SQLException if the task fails.
+     */
+    public <T> T execute(final Connection physical, final SQLFunction<Connection, T> task) throws SQLException {
+        return execute(physical, false, task);
+    }
+
+    /**
+     * Same as {@link #execute(Connection, SQLFunction)} but enables to mark the transaction as read-only.
+     *
+     * @param physical the connection to bind.
+     * @param readOnly is the transaction read-only.
+     * @param task     the task to execute, it gets the contextual connection.
+     * @param <T>      the returned type.
+     * @return the task result.
+     * @throws SQLException if the task fails.
+     */
+    public <T> T execute(final Connection physical, final boolean readOnly, final SQLFunction<Connection, T> task) throws SQLException {
+        final var tx = begin(physical, readOnly);
+        try {
+            return execute(tx, task);
+        } finally {
+            tx.end();
+        }
+    }
+
+    /**
+     * Binds an existing transaction for the duration of the task, used to resume a transaction in another thread.
+     *
+     * @param tx   the transaction to bind.
+     * @param task the task to execute, it gets the contextual connection.
+     * @param <T>  the returned type.
+     * @return the task result.
+     * @throws SQLException if the task fails.
+     */
+    public <T> T execute(final Transaction tx, final SQLFunction<Connection, T> task) throws SQLException {
+        tx.ensureActive();
+        if (scopedValue != null && isVirtual(Thread.currentThread())) {
+            return SCOPED_VALUES.call(scopedValue, tx, task);
+        }
+
+        final var previous = transaction.get();
+        transaction.set(tx);
+        try {
+            return task.apply(tx.getConnection());
+        } finally {
+            if (previous == null) {
+                transaction.remove();
+            } else {
+                transaction.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @param task the task to bind to the current transaction.
+     * @return a task executed in the transaction active when this method was called (or the task itself if there is none).
+     */
+    public Runnable wrap(final Runnable task) {
+        final var tx = currentTransaction();
+        if (tx == null) {
+            return task;
+        }
+        return () -> {
+            try {
+                execute(tx, c -> {
+                    task.run();
+                    return null;
+                });
+            } catch (final SQLException e) {
+                throw new PersistenceException(e);
+            }
+        };
+    }
+
+    /**
+     * @param task the task to bind to the current transaction.
+     * @param <T>  the returned type.
+     * @return a task executed in the transaction active when this method was called (or the task itself if there is none).
+     */
+    public <T> Supplier<T> wrap(final Supplier<T> task) {
+        final var tx = currentTransaction();
+        if (tx == null) {
+            return task;
+        }
+        return () -> {
+            try {
+                return execute(tx, c -> task.get());
+            } catch (final SQLException e) {
+                throw new PersistenceException(e);
+            }
+        };
+    }
+
+    /**
+     * Typically used with {@code CompletionStage#thenApplyAsync(Function, Executor)} to keep the transaction in the continuation.
+     *
+     * @param delegate the executor running the tasks.
+     * @return an executor binding the transaction active at submission time around the tasks.
+     */
+    public Executor propagating(final Executor delegate) {
+        return task -> delegate.execute(wrap(task));
+    }
+
+    private static boolean isVirtual(final Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (final Throwable e) {
+            return false;
+        }
+    }
+
+    // Thread#isVirtual is not in java 11 API
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", methodType(boolean.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    // java.lang.ScopedValue is not in java 11 API (and can be a preview API), use it reflectively
+    private static class ScopedValues {
+        private final MethodHandle newInstance;
+        private final MethodHandle where;
+        private final MethodHandle run;
+        private final MethodHandle isBound;
+        private final MethodHandle get;
+
+        private ScopedValues(final MethodHandle newInstance, final MethodHandle where, final MethodHandle run,
+                             final MethodHandle isBound, final MethodHandle get) {
+            this.newInstance = newInstance;
+            this.where = where;
+            this.run = run;
+            this.isBound = isBound;
+            this.get = get;
+        }
+
+        private Object newInstance() {
+            try {
+                return newInstance.invoke();
+            } catch (final Throwable e) {
+                return null;
+            }
+        }
+
+        private Transaction get(final Object scopedValue) {
+            try {
+                return (boolean) isBound.invoke(scopedValue) ? Transaction.class.cast(get.invoke(scopedValue)) : null;
+            } catch (final Throwable e) {
+                return null;
+            }
+        }
+
+        private <T> T call(final Object scopedValue, final Transaction tx, final SQLFunction<Connection, T> task) throws SQLException {
+            final var result = new Object[1];
+            final var error = new SQLException[1];
+            try {
+                run.invoke(where.invoke(scopedValue, tx), (Runnable) () -> {
+                    try {
+                        result[0] = task.apply(tx.getConnection());
+                    } catch (final SQLException e) {
+                        error[0] = e;
+                    }
+                });
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new PersistenceException(e);
+            }
+            if (error[0] != null) {
+                throw error[0];
+            }
+            @SuppressWarnings("unchecked") final var value = (T) result[0];
+            return value;
+        }
+
+        private static ScopedValues find() {
+            try {
+                final var lookup = MethodHandles.publicLookup();
+                final var scopedValue = Class.forName("java.lang.ScopedValue");
+                final var carrier = Class.forName("java.lang.ScopedValue$Carrier");
+                final var values = new ScopedValues(
+                        lookup.findStatic(scopedValue, "newInstance", methodType(scopedValue)),
+                        lookup.findStatic(scopedValue, "where", methodType(carrier, scopedValue, Object.class)),
+                        lookup.findVirtual(carrier, "run", methodType(void.class, Runnable.class)),
+                        lookup.findVirtual(scopedValue, "isBound", methodType(boolean.class)),
+                        lookup.findVirtual(scopedValue, "get", methodType(Object.class)));
+                return values.newInstance() == null ? null : values; // preview not enabled
+            } catch (final ClassNotFoundException | NoSuchMethodException | IllegalAccessException | RuntimeException | LinkageError e) {
+                return null;
+            }
+        }
+    }
+}
@@ -16,20 +16,21 @@
 package io.yupiik.uship.persistence.impl.datasource.tomcat;
 
 import io.yupiik.uship.persistence.api.SQLFunction;
+import io.yupiik.uship.persistence.impl.datasource.Transaction;
+import io.yupiik.uship.persistence.impl.datasource.TransactionContext;
+import io.yupiik.uship.persistence.spi.ReplicaRouter;
 import org.apache.tomcat.jdbc.pool.DataSource;
 import org.apache.tomcat.jdbc.pool.PoolProperties;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 
 public class TomcatDataSource extends DataSource {
-    private final Class<?>[] connectionProxiedTypes = {Connection.class};
-    private final ThreadLocal<Connection> connectionThreadLocal = new ThreadLocal<>();
+    private final TransactionContext transactionContext = new TransactionContext();
+    private ReplicaRouter replicaRouter;
 
     public TomcatDataSource(final PoolProperties properties) {
         super(properties);
@@ -40,8 +41,25 @@ public class TomcatDataSource extends DataSource {
         super(new PoolProperties());
     }
 
+    /**
+     * @param replicaRouter if set, {@link #read(Function)} blocks use a replica connection when one is available.
+     * @return this datasource.
+     */
+    public TomcatDataSource setReplicaRouter(final ReplicaRouter replicaRouter) {
+        this.replicaRouter = replicaRouter;
+        return this;
+    }
+
+    /**
+     * @return the context binding the connections, use it to propagate a transaction to another thread.
+     */
+    public TransactionContext getTransactionContext() {
+        return transactionContext;
+    }
+
     /**
      * Binds a connection to current thread in write mode, the result will be committed if there is no error.
+     * It always uses a new connection, see {@link #writeNested(Function)} to join a bound transaction.
      *
      * @param function the task to execute.
      * @param <T>      the returned type.
@@ -57,13 +75,15 @@ public class TomcatDataSource extends DataSource {
 
     /**
      * Binds a connection to current thread in read-only mode, the result will be rolle-backed if needed.
+     * If a {@link ReplicaRouter} is set, the connection comes from a replica when possible.
+     * It always uses a new connection, see {@link #readNested(Function)} to join a bound transaction.
      *
      * @param function the task to execute.
      * @param <T>      the returned type.
      * @return the result of the function computation.
      */
     public <T> T read(final Function<Connection, T> function) {
-        return withConnection(connection -> {
+        return withConnection(true, connection -> {
             final var readOnly = connection.isReadOnly();
             connection.setReadOnly(true);
             try {
@@ -79,6 +99,64 @@ public class TomcatDataSource extends DataSource {
         });
     }
 
+    /**
+     * Same as {@link #write(Function)} but if a transaction is already bound, the function is executed in a savepoint
+     * of this transaction instead: it is rolled back to the savepoint if it fails and committed with the bound transaction.
+     *
+     * @param function the task to execute.
+     * @param <T>      the returned type.
+     * @return the result of the function computation.
+     */
+    public <T> T writeNested(final Function<Connection, T> function) {
+        final var existing = transactionContext.currentTransaction();
+        if (existing == null) {
+            return write(function);
+        }
+        return nested(() -> existing.savepoint(function::apply));
+    }
+
+    /**
+     * Same as {@link #read(Function)} but if a transaction is already bound, the function is executed in a read-only scope
+     * of this transaction instead, see {@link Transaction#readOnly(SQLFunction)}.
+     *
+     * @param function the task to execute.
+     * @param <T>      the returned type.
+     * @return the result of the function computation.
+     */
+    public <T> T readNested(final Function<Connection, T> function) {
+        final var existing = transactionContext.currentTransaction();
+        if (existing == null) {
+            return read(function);
+        }
+        return nested(() -> existing.readOnly(function::apply));
+    }
+
+    /**
+     * Asynchronous flavor of {@link #write(Function)}: the transaction is committed (or rolled back) and the connection released
+     * when the returned stage completes.
+     * The function is executed with the connection bound to the caller thread, continuations must use
+     * {@link TransactionContext#propagating(java.util.concurrent.Executor)} to get it bound too.
+     * It always uses a new connection even if a transaction is already bound.
+     *
+     * @param function the task to execute.
+     * @param <T>      the returned type.
+     * @return the result of the function computation.
+     */
+    public <T> CompletionStage<T> writeAsync(final Function<Connection, CompletionStage<T>> function) {
+        return withConnectionAsync(false, function);
+    }
+
+    /**
+     * Asynchronous flavor of {@link #read(Function)}, see {@link #writeAsync(Function)}.
+     *
+     * @param function the task to execute.
+     * @param <T>      the returned type.
+     * @return the result of the function computation.
+     */
+    public <T> CompletionStage<T> readAsync(final Function<Connection, CompletionStage<T>> function) {
+        return withConnectionAsync(true, function);
+    }
+
     @Override
     public Connection getConnection() {
         final var existing = current();
@@ -89,21 +167,20 @@ public class TomcatDataSource extends DataSource {
     }
 
     public Connection current() {
-        final var connection = connectionThreadLocal.get();
-        if (connection == null) {
-            connectionThreadLocal.remove();
-        }
-        return connection;
+        return transactionContext.current();
     }
 
     public <T> T withConnection(final SQLFunction<Connection, T> function) {
+        return withConnection(false, function);
+    }
+
+    private <T> T withConnection(final boolean read, final SQLFunction<Connection, T> function) {
         Connection conRef = null;
-        try (final var connection = super.getConnection()) {
+        try (final var connection = read ? readConnection() : super.getConnection()) {
             conRef = connection;
-            connectionThreadLocal.set(wrap(connection));
             final var original = disableAutoCommit(connection);
             try {
-                return function.apply(connection);
+                return transactionContext.execute(connection, read, contextual -> function.apply(connection));
             } catch (final RuntimeException | Error re) {
                 if (!connection.isClosed()) {
                     connection.rollback();
@@ -121,16 +198,97 @@ public class TomcatDataSource extends DataSource {
                 ex.addSuppressed(e);
             }
             throw new IllegalStateException(ex);
-        } finally {
-            connectionThreadLocal.remove();
         }
     }
 
-    private Connection wrap(final Connection connection) {
-        return Connection.class.cast(Proxy.newProxyInstance(
-                Thread.currentThread().getContextClassLoader(),
-                connectionProxiedTypes,
-                new ConnectionHandler(connection)));
+    private <T> CompletionStage<T> withConnectionAsync(final boolean read, final Function<Connection, CompletionStage<T>> function) {
+        final Connection connection;
+        try {
+            connection = read ? readConnection() : super.getConnection();
+        } catch (final SQLException ex) {
+            return CompletableFuture.failedFuture(new IllegalStateException(ex));
+        }
+
+        boolean originalAutoCommit = false;
+        boolean originalReadOnly = false;
+        Transaction transaction = null;
+        CompletionStage<T> stage;
+        try {
+            originalAutoCommit = disableAutoCommit(connection);
+            originalReadOnly = connection.isReadOnly();
+            if (read && !originalReadOnly) {
+                connection.setReadOnly(true);
+            }
+            transaction = transactionContext.begin(connection, read);
+            stage = transactionContext.execute(transaction, contextual -> function.apply(connection));
+            if (stage == null) {
+                stage = CompletableFuture.failedFuture(new IllegalStateException("The function returned a null stage"));
+            }
+        } catch (final SQLException | RuntimeException | Error e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+
+        final var autoCommit = originalAutoCommit;
+        final var readOnly = originalReadOnly;
+        final var tx = transaction;
+        final var result = new CompletableFuture<T>();
+        stage.whenComplete((value, error) -> {
+            final var failure = completeAsync(connection, tx, read, autoCommit, readOnly, error);
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private Throwable completeAsync(final Connection connection, final Transaction transaction,
+                                    final boolean read, final boolean autoCommit, final boolean readOnly,
+                                    final Throwable error) {
+        Throwable failure = error;
+        try (connection) {
+            try {
+                if (error == null && !read) {
+                    connection.commit();
+                } else if (!connection.isClosed()) {
+                    connection.rollback();
+                }
+            } finally {
+                if (transaction != null) { // after commit/rollback to let completion callbacks see the final state
+                    transaction.end();
+                }
+                if (read && !readOnly) {
+                    connection.setReadOnly(false);
+                }
+                restoreAutoCommit(connection, autoCommit);
+            }
+        } catch (final SQLException e) {
+            if (failure == null) {
+                failure = new IllegalStateException(e);
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        return failure;
+    }
+
+    private <T> T nested(final SQLCall<T> task) {
+        try {
+            return task.call();
+        } catch (final SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Connection readConnection() throws SQLException {
+        if (replicaRouter != null) {
+            final var replica = replicaRouter.getReadConnection();
+            if (replica != null) {
+                return replica;
+            }
+        }
+        return super.getConnection();
     }
 
     private boolean disableAutoCommit(final Connection connection) throws SQLException {
@@ -147,38 +305,8 @@ public class TomcatDataSource extends DataSource {
         }
     }
 
-    private static class ConnectionHandler implements InvocationHandler {
-        private final Connection connection;
-
-        private ConnectionHandler(final Connection connection) {
-            this.connection = connection;
-        }
-
-        @Override
-        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-            if ("close".equals(method.getName())) {
-                return null;
-            }
-            try {
-                final var result = method.invoke(connection, args);
-                if ("equals".equals(method.getName())) {
-                    return (Boolean) result ||
-                            (args[0] != null &&
-                                    Proxy.isProxyClass(args[0].getClass()) &&
-                                    areEquals(Proxy.getInvocationHandler(args[0]), this));
-                }
-                if ("hashCode".equals(method.getName())) {
-                    return connection.hashCode();
-                }
-                return result;
-            } catch (final InvocationTargetException ite) {
-                throw ite.getTargetException();
-            }
-        }
-
-        private boolean areEquals(final InvocationHandler invocationHandler, final ConnectionHandler connectionHandler) {
-            return invocationHandler instanceof ConnectionHandler &&
-                    ConnectionHandler.class.cast(connectionHandler).connection.equals(connectionHandler.connection);
-        }
+    @FunctionalInterface
+    private interface SQLCall<T> {
+        T call() throws SQLException;
     }
 }
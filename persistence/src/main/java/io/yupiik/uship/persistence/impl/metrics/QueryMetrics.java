@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.metrics;
+
+import io.yupiik.uship.persistence.spi.QueryEvent;
+import io.yupiik.uship.persistence.spi.QueryListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * In memory aggregation of the executed statements per SQL, {@link #snapshot()} gives a consistent enough view
+ * to be exported to any monitoring solution.
+ * <p>
+ * To avoid an unbounded memory usage when SQL are generated, only {@code maxQueries} distinct statements are tracked,
+ * others are counted in {@link #getDropped()}.
+ */
+public class QueryMetrics implements QueryListener {
+    /**
+     * Upper bounds (inclusive) of the latency histogram buckets in milliseconds, last bucket is unbounded.
+     */
+    public static final long[] LATENCY_BUCKETS = {1, 5, 10, 25, 50, 100, 250, 500, 1_000, 5_000};
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final int maxQueries;
+
+    public QueryMetrics() {
+        this(1_000);
+    }
+
+    public QueryMetrics(final int maxQueries) {
+        this.maxQueries = maxQueries;
+    }
+
+    @Override
+    public void onQuery(final QueryEvent event) {
+        var stat = stats.get(event.getSql());
+        if (stat == null) {
+            if (stats.size() >= maxQueries) {
+                dropped.increment();
+                return;
+            }
+            stat = stats.computeIfAbsent(event.getSql(), k -> new Stats());
+        }
+        stat.add(event);
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public Map<String, QueryStats> snapshot() {
+        return stats.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, e -> e.getValue().snapshot()));
+    }
+
+    public void reset() {
+        stats.clear();
+        dropped.reset();
+    }
+
+    private static class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder totalDuration = new LongAdder();
+        private final LongAdder connectionAcquisitionDuration = new LongAdder();
+        private final LongAdder executionDuration = new LongAdder();
+        private final LongAdder mappingDuration = new LongAdder();
+        private final LongAccumulator maxDuration = new LongAccumulator(Math::max, 0);
+        private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] histogram = new LongAdder[LATENCY_BUCKETS.length + 1];
+
+        private Stats() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        private void add(final QueryEvent event) {
+            count.increment();
+            if (event.isFailed()) {
+                failures.increment();
+            }
+            rows.add(event.getRows());
+            statements.add(event.getBatchSize());
+            totalDuration.add(event.getTotalDuration());
+            connectionAcquisitionDuration.add(event.getConnectionAcquisitionDuration());
+            executionDuration.add(event.getExecutionDuration());
+            mappingDuration.add(event.getMappingDuration());
+            maxDuration.accumulate(event.getTotalDuration());
+            maxBatchSize.accumulate(event.getBatchSize());
+
+            final long millis = event.getTotalDuration() / 1_000_000;
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket].increment();
+        }
+
+        private QueryStats snapshot() {
+            final var buckets = new long[histogram.length];
+            for (int i = 0; i < histogram.length; i++) {
+                buckets[i] = histogram[i].sum();
+            }
+            return new QueryStats(
+                    count.sum(), failures.sum(), rows.sum(), statements.sum(), maxBatchSize.get(),
+                    totalDuration.sum(), maxDuration.get(), connectionAcquisitionDuration.sum(),
+                    executionDuration.sum(), mappingDuration.sum(), buckets);
+        }
+    }
+
+    /**
+     * Aggregated statistics of a statement, durations are in nanoseconds.
+     */
+    public static class QueryStats {
+        private final long count;
+        private final long failures;
+        private final long rows;
+        private final long statements;
+        private final long maxBatchSize;
+        private final long totalDuration;
+        private final long maxDuration;
+        private final long connectionAcquisitionDuration;
+        private final long executionDuration;
+        private final long mappingDuration;
+        private final long[] latencyHistogram;
+
+        public QueryStats(final long count, final long failures, final long rows,
+                          final long statements, final long maxBatchSize,
+                          final long totalDuration, final long maxDuration,
+                          final long connectionAcquisitionDuration, final long executionDuration,
+                          final long mappingDuration, final long[] latencyHistogram) {
+            this.count = count;
+            this.failures = failures;
+            this.rows = rows;
+            this.statements = statements;
+            this.maxBatchSize = maxBatchSize;
+            this.totalDuration = totalDuration;
+            this.maxDuration = maxDuration;
+            this.connectionAcquisitionDuration = connectionAcquisitionDuration;
+            this.executionDuration = executionDuration;
+            this.mappingDuration = mappingDuration;
+            this.latencyHistogram = latencyHistogram;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return number of executed statements, it differs from {@link #getCount()} for batches.
+         */
+        public long getStatements() {
+            return statements;
+        }
+
+        public long getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public long getTotalDuration() {
+            return totalDuration;
+        }
+
+        public long getMaxDuration() {
+            return maxDuration;
+        }
+
+        public long getAverageDuration() {
+            return count == 0 ? 0 : totalDuration / count;
+        }
+
+        public long getConnectionAcquisitionDuration() {
+            return connectionAcquisitionDuration;
+        }
+
+        public long getExecutionDuration() {
+            return executionDuration;
+        }
+
+        public long getMappingDuration() {
+            return mappingDuration;
+        }
+
+        /**
+         * @return counts per {@link QueryMetrics#LATENCY_BUCKETS}, last value is for slower calls.
+         */
+        public long[] getLatencyHistogram() {
+            return latencyHistogram.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "QueryStats[" +
+                    "count=" + count +
+                    ", failures=" + failures +
+                    ", rows=" + rows +
+                    ", statements=" + statements +
+                    ", maxBatchSize=" + maxBatchSize +
+                    ", totalDuration=" + totalDuration +
+                    ", maxDuration=" + maxDuration +
+                    ", connectionAcquisitionDuration=" + connectionAcquisitionDuration +
+                    ", executionDuration=" + executionDuration +
+                    ", mappingDuration=" + mappingDuration +
+                    ']';
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.metrics;
+
+import io.yupiik.uship.persistence.spi.QueryEvent;
+import io.yupiik.uship.persistence.spi.QueryListener;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures a statement execution and notifies the listeners when closed.
+ * Not thread safe, one instance per call.
+ */
+public class QueryTracker implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(QueryTracker.class.getName());
+
+    public static final QueryTracker NOOP = new QueryTracker(null, null, null) {
+        @Override
+        public QueryTracker connectionAcquired() {
+            return this;
+        }
+
+        @Override
+        public QueryTracker executed() {
+            return this;
+        }
+
+        @Override
+        public QueryTracker mapped(final long rows) {
+            return this;
+        }
+
+        @Override
+        public void row() {
+            // no-op
+        }
+
+        @Override
+        public QueryTracker parameters(final int count) {
+            return this;
+        }
+
+        @Override
+        public QueryTracker batch(final int[] results) {
+            return this;
+        }
+
+        @Override
+        public void succeeded(final long rows) {
+            // no-op
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    };
+
+    private final String sql;
+    private final QueryEvent.Kind kind;
+    private final QueryListener[] listeners;
+    private final long start;
+    private long mark;
+    private long connectionAcquisition;
+    private long execution;
+    private long mapping;
+    private long rows;
+    private int batchSize = -1;
+    private int parameters = -1;
+    private boolean success;
+
+    public QueryTracker(final String sql, final QueryEvent.Kind kind, final QueryListener[] listeners) {
+        this.sql = sql;
+        this.kind = kind;
+        this.listeners = listeners;
+        this.start = System.nanoTime();
+        this.mark = start;
+    }
+
+    public QueryTracker connectionAcquired() {
+        final var now = System.nanoTime();
+        connectionAcquisition = now - mark;
+        mark = now;
+        return this;
+    }
+
+    public QueryTracker executed() {
+        final var now = System.nanoTime();
+        execution += now - mark;
+        mark = now;
+        return this;
+    }
+
+    public QueryTracker mapped(final long rows) {
+        final var now = System.nanoTime();
+        mapping += now - mark;
+        mark = now;
+        if (rows >= 0) {
+            this.rows = rows;
+        }
+        return this;
+    }
+
+    public void row() {
+        rows++;
+    }
+
+    public QueryTracker parameters(final int count) {
+        if (parameters < 0) {
+            parameters = count;
+        }
+        return this;
+    }
+
+    public QueryTracker batch(final int[] results) {
+        executed();
+        batchSize = (batchSize < 0 ? 0 : batchSize) + results.length;
+        for (final int result : results) {
+            if (result > 0) {
+                rows += result;
+            }
+        }
+        return this;
+    }
+
+    public void succeeded(final long rows) {
+        if (rows >= 0) {
+            this.rows = rows;
+        }
+        success = true;
+    }
+
+    @Override
+    public void close() {
+        final var event = new QueryEvent(
+                sql, kind, connectionAcquisition, execution, mapping, System.nanoTime() - start,
+                rows, batchSize < 0 ? 1 : batchSize, parameters, !success);
+        for (final var listener : listeners) {
+            try {
+                listener.onQuery(event);
+            } catch (final RuntimeException re) {
+                LOGGER.log(Level.WARNING, re, () -> "Listener " + listener + " failed: " + re.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.metrics;
+
+import io.yupiik.uship.persistence.spi.QueryEvent;
+import io.yupiik.uship.persistence.spi.QueryListener;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.Locale.ROOT;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Logs the statements slower than a threshold (in milliseconds).
+ * Parameter values are never logged since they can be sensitive, only their count is.
+ */
+public class SlowQueryLogger implements QueryListener {
+    private final Logger logger;
+    private final long threshold;
+
+    public SlowQueryLogger(final long thresholdMs) {
+        this(Logger.getLogger(SlowQueryLogger.class.getName()), thresholdMs);
+    }
+
+    public SlowQueryLogger(final Logger logger, final long thresholdMs) {
+        this.logger = logger;
+        this.threshold = MILLISECONDS.toNanos(thresholdMs);
+    }
+
+    @Override
+    public void onQuery(final QueryEvent event) {
+        if (event.getTotalDuration() < threshold || !logger.isLoggable(Level.WARNING)) {
+            return;
+        }
+        logger.warning(() -> "Slow " + event.getKind().name().toLowerCase(ROOT) + " (" +
+                NANOSECONDS.toMillis(event.getTotalDuration()) + "ms, " +
+                "connection=" + NANOSECONDS.toMillis(event.getConnectionAcquisitionDuration()) + "ms, " +
+                "execution=" + NANOSECONDS.toMillis(event.getExecutionDuration()) + "ms, " +
+                "mapping=" + NANOSECONDS.toMillis(event.getMappingDuration()) + "ms, " +
+                "rows=" + event.getRows() + ", " +
+                "batchSize=" + event.getBatchSize() + ", " +
+                "parameters=" + event.getParameterCount() +
+                (event.isFailed() ? ", failed" : "") + "): " + event.getSql());
+    }
+}
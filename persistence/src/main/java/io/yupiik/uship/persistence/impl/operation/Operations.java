@@ -23,6 +23,7 @@ import io.yupiik.uship.persistence.api.SQLFunction;
 import io.yupiik.uship.persistence.api.StatementBinder;
 import io.yupiik.uship.persistence.api.operation.Operation;
 import io.yupiik.uship.persistence.api.operation.Statement;
+import io.yupiik.uship.persistence.impl.query.SqlTemplate;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
@@ -37,6 +38,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.IntStream;
@@ -101,23 +103,38 @@ public class Operations implements InvocationHandler {
                     }
                     switch (bindingType) {
                         case "in":
+                            // sizes are bucketed (1, 2, 4, 8, ...) padding with the last value to limit the number of distinct statements
                             bindings.add((a, b) -> {
                                 final var value = a[index];
                                 if (value == null) {
                                     return;
                                 }
                                 final var collection = (Collection<?>) value;
-                                collection.forEach(b::bind);
+                                if (collection.isEmpty()) {
+                                    return;
+                                }
+                                Object last = null;
+                                for (final var item : collection) {
+                                    b.bind(item);
+                                    last = item;
+                                }
+                                for (int i = collection.size(); i < SqlTemplate.bucket(collection.size()); i++) {
+                                    b.bind(last);
+                                }
                             });
+                            final var inClauses = new ConcurrentHashMap<Integer, String>();
                             return args -> {
                                 final var value = args[index];
                                 if (value == null) {
                                     return "1 <> 1"; // false, todo: move to translation?
                                 }
                                 final var collection = (Collection<?>) value;
-                                return collection.stream()
-                                        .map(i -> "?")
-                                        .collect(joining(",", "in (", ")"));
+                                if (collection.isEmpty()) { // no expansion keeps both "in" and "not in" semantics
+                                    throw new PersistenceException("Empty collection for parameter '" + suffix + "' in " + method + ", skip the call instead");
+                                }
+                                return inClauses.computeIfAbsent(SqlTemplate.bucket(collection.size()), size -> IntStream.range(0, size)
+                                        .mapToObj(i -> "?")
+                                        .collect(joining(",", "in (", ")")));
                             };
                         default:
                             throw new IllegalArgumentException("Unsupported placeholder: '" + key + "' in " + method);
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.query;
+
+import io.yupiik.uship.persistence.api.PersistenceException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Column layout of a query result shared by all its {@code Map} projections:
+ * each row only stores its values ({@code Object[]}) and is exposed as an immutable {@link Map} view over this index.
+ * As for the historical mapping, {@code null} values are not visible in the map and when a label is duplicated the first column wins.
+ */
+public class ColumnIndex {
+    private final String[] names;
+    private final Map<String, Integer> indices;
+
+    public ColumnIndex(final String[] names) {
+        this.names = names;
+        this.indices = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            indices.putIfAbsent(names[i], i);
+        }
+    }
+
+    /**
+     * @param resultSet the result set positioned on the row to read.
+     * @return an immutable map view of the current row.
+     */
+    public Map<String, Object> read(final ResultSet resultSet) {
+        try {
+            final var values = new Object[names.length];
+            int size = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (indices.get(names[i]) != i) { // duplicated label
+                    continue;
+                }
+                values[i] = resultSet.getObject(i + 1);
+                if (values[i] != null) {
+                    size++;
+                }
+            }
+            return new Row(this, values, size);
+        } catch (final SQLException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    private static class Row extends AbstractMap<String, Object> {
+        private final ColumnIndex index;
+        private final Object[] values;
+        private final int size;
+        private Set<Entry<String, Object>> entries;
+
+        private Row(final ColumnIndex index, final Object[] values, final int size) {
+            this.index = index;
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            final var idx = index.indices.get(key);
+            return idx == null ? null : values[idx];
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            if (entries == null) {
+                entries = new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, Object>> iterator() {
+                        return new Iterator<>() {
+                            private int next = advance(0);
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < values.length;
+                            }
+
+                            @Override
+                            public Entry<String, Object> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                final var entry = new SimpleImmutableEntry<>(index.names[next], values[next]);
+                                next = advance(next + 1);
+                                return entry;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+            return entries;
+        }
+
+        private int advance(final int from) {
+            int i = from;
+            while (i < values.length && values[i] == null) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
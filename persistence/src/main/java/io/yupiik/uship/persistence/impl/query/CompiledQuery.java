@@ -23,11 +23,14 @@ import java.sql.SQLException;
 public class CompiledQuery<T> {
     private final DatabaseImpl database;
     private final QueryKey<T> key;
+    private final SqlTemplate template;
     private volatile String[] columnNames;
+    private volatile ColumnIndex columnIndex;
 
-    public CompiledQuery(final DatabaseImpl database, final QueryKey<T> queryKey) {
+    public CompiledQuery(final DatabaseImpl database, final QueryKey<T> queryKey, final SqlTemplate template) {
         this.database = database;
         this.key = queryKey;
+        this.template = template;
     }
 
     public String[] getColumnNames() {
@@ -36,18 +39,35 @@ public class CompiledQuery<T> {
 
     public CompiledQuery<T> setColumnNames(final String[] columnNames) {
         this.columnNames = columnNames;
+        this.columnIndex = null;
         return this;
     }
 
+    /**
+     * @return the index used for {@code Map} projections, {@code null} until column names are known.
+     */
+    public ColumnIndex getColumnIndex() {
+        var index = columnIndex;
+        if (index == null && columnNames != null) {
+            index = new ColumnIndex(columnNames);
+            columnIndex = index;
+        }
+        return index;
+    }
+
     public QueryKey<T> getKey() {
         return key;
     }
 
+    public SqlTemplate getTemplate() {
+        return template;
+    }
+
     public DatabaseImpl getDatabase() {
         return database;
     }
 
     public StatementBinderImpl apply(final Connection connection) throws SQLException {
-        return new StatementBinderImpl(database, key.getSql(), connection);
+        return new StatementBinderImpl(database, template, connection);
     }
 }
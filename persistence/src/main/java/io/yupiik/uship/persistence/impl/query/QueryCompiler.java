@@ -32,8 +32,8 @@ public class QueryCompiler {
         return queries.computeIfAbsent(key, this::compute);
     }
 
-    // todo: named parameters support?
     private <T> CompiledQuery<T> compute(final QueryKey<T> queryKey) {
-        return new CompiledQuery<>(database, queryKey);
+        return new CompiledQuery<>(database, queryKey, database.isNamedParameters() ?
+                SqlTemplate.parse(queryKey.getSql()) : SqlTemplate.positional(queryKey.getSql()));
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.query;
+
+import io.yupiik.uship.persistence.api.PersistenceException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A SQL statement parsed once, named parameters ({@code :name}) are replaced by positional ones.
+ * When a collection is bound to a named parameter it is expanded to as many placeholders as the next power of two
+ * of its size (values are padded with the last one) to keep the number of distinct statements small.
+ * An empty collection is rejected since no placeholder expansion keeps {@code IN} and {@code NOT IN} semantics,
+ * the caller should skip the query.
+ * Typical usage is {@code WHERE id IN (:ids)}.
+ */
+public class SqlTemplate {
+    private static final int[] NO_SHAPE = new int[0];
+
+    private final String sql;
+    private final String[] fragments; // sql around placeholders, length = slots.length + 1
+    private final int[] slots; // placeholder -> parameter index
+    private final Map<String, Integer> parameters;
+    private final Map<Shape, String> expanded = new ConcurrentHashMap<>();
+
+    private SqlTemplate(final String sql, final String[] fragments, final int[] slots, final Map<String, Integer> parameters) {
+        this.sql = sql;
+        this.fragments = fragments;
+        this.slots = slots;
+        this.parameters = parameters;
+    }
+
+    public boolean hasNamedParameters() {
+        return slots.length > 0;
+    }
+
+    /**
+     * @return the SQL with positional parameters, only relevant when no collection is bound.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public int getParameterCount() {
+        return parameters.size();
+    }
+
+    public int indexOf(final String name) {
+        final var index = parameters.get(name);
+        if (index == null) {
+            throw new PersistenceException("Unknown parameter '" + name + "' in '" + sql + "', available: " + parameters.keySet());
+        }
+        return index;
+    }
+
+    /**
+     * @param values the bound values indexed by parameter.
+     * @return the expansion size of each parameter, {@code -1} for scalars.
+     */
+    public int[] shape(final Object[] values) {
+        int[] shape = NO_SHAPE;
+        for (int i = 0; i < values.length; i++) {
+            final int size = sizeOf(values[i]);
+            if (size < 0) {
+                continue;
+            }
+            if (size == 0) {
+                throw new PersistenceException("Empty collection bound to parameter '" + nameOf(i) + "', skip the query instead: '" + sql + "'");
+            }
+            if (shape == NO_SHAPE) {
+                shape = new int[values.length];
+                Arrays.fill(shape, -1);
+            }
+            shape[i] = bucket(size);
+        }
+        return shape;
+    }
+
+    public String getSql(final int[] shape) {
+        if (shape.length == 0) {
+            return sql;
+        }
+        return expanded.computeIfAbsent(new Shape(shape), this::expand);
+    }
+
+    /**
+     * Placeholder to parameter index, collections take {@code shape[parameter]} placeholders.
+     *
+     * @return slots in statement order.
+     */
+    public int[] getSlots() {
+        return slots;
+    }
+
+    public static int bucket(final int size) {
+        return size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    static int sizeOf(final Object value) {
+        if (Collection.class.isInstance(value)) {
+            return Collection.class.cast(value).size();
+        }
+        if (Object[].class.isInstance(value)) {
+            return Object[].class.cast(value).length;
+        }
+        return -1;
+    }
+
+    private String expand(final Shape shape) {
+        final var out = new StringBuilder(sql.length() + 16);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(fragments[i]);
+            final int size = shape.sizes[slots[i]];
+            if (size < 0) {
+                out.append('?');
+            } else {
+                out.append('?');
+                for (int j = 1; j < size; j++) {
+                    out.append(", ?");
+                }
+            }
+        }
+        return out.append(fragments[slots.length]).toString();
+    }
+
+    private String nameOf(final int index) {
+        return parameters.entrySet().stream()
+                .filter(it -> it.getValue() == index)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * @param sql the raw statement.
+     * @return a template without any named parameter, {@code :} is kept as is.
+     */
+    public static SqlTemplate positional(final String sql) {
+        return new SqlTemplate(sql, new String[]{sql}, new int[0], Map.of());
+    }
+
+    /**
+     * Parses named parameters skipping literals, quoted identifiers, dollar quoted bodies, comments,
+     * {@code ::} casts and colons directly following an identifier or a number (array slices).
+     *
+     * @param sql the raw statement.
+     * @return the parsed template.
+     */
+    public static SqlTemplate parse(final String sql) {
+        if (sql.indexOf(':') < 0) {
+            return positional(sql);
+        }
+
+        final var fragments = new ArrayList<String>();
+        final var slots = new ArrayList<Integer>();
+        final var parameters = new HashMap<String, Integer>();
+        final var positional = new StringBuilder(sql.length());
+        int fragmentStart = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            final char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                final int end = sql.indexOf(c, i + 1);
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+                final int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end + 1;
+            } else if (c == '/' && i + 1 < sql.length() && sql.charAt(i + 1) == '*') {
+                final int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 2;
+            } else if (c == '$' && (i == 0 || !Character.isJavaIdentifierPart(sql.charAt(i - 1))) && dollarTagEnd(sql, i) > 0) {
+                final var tag = sql.substring(i, dollarTagEnd(sql, i));
+                final int end = sql.indexOf(tag, i + tag.length());
+                i = end < 0 ? sql.length() : end + tag.length();
+            } else if (c == ':' && i + 1 < sql.length() && sql.charAt(i + 1) == ':') {
+                i += 2;
+            } else if (c == ':' && i > 0 && (Character.isLetterOrDigit(sql.charAt(i - 1)) || sql.charAt(i - 1) == '_')) {
+                i++; // array slice (arr[1:n]) or vendor syntax, not a parameter
+            } else if (c == ':' && i + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 2;
+                while (end < sql.length() && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                final var fragment = sql.substring(fragmentStart, i);
+                fragments.add(fragment);
+                positional.append(fragment).append('?');
+                slots.add(parameters.computeIfAbsent(sql.substring(i + 1, end), k -> parameters.size()));
+                fragmentStart = end;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        if (slots.isEmpty()) {
+            return positional(sql);
+        }
+        final var last = sql.substring(fragmentStart);
+        fragments.add(last);
+        positional.append(last);
+        return new SqlTemplate(
+                positional.toString(), fragments.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray(), Map.copyOf(parameters));
+    }
+
+    // $$ or $tag$, returns the index after the tag or -1
+    private static int dollarTagEnd(final String sql, final int start) {
+        int i = start + 1;
+        while (i < sql.length() && (Character.isLetter(sql.charAt(i)) || sql.charAt(i) == '_')) {
+            i++;
+        }
+        return i < sql.length() && sql.charAt(i) == '$' ? i + 1 : -1;
+    }
+
+    private static class Shape {
+        private final int[] sizes;
+        private final int hash;
+
+        private Shape(final int[] sizes) {
+            this.sizes = sizes;
+            this.hash = Arrays.hashCode(sizes);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return this == o || (o instanceof Shape && Arrays.equals(sizes, ((Shape) o).sizes));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -23,36 +23,80 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
 
 public class StatementBinderImpl implements StatementBinder, AutoCloseable {
     private final DatabaseImpl database;
     private final Connection connection;
     private final String sql;
+    private final SqlTemplate template; // null if no named parameter
+    private final Object[] namedValues;
+    private final Class<?>[] namedTypes;
     private PreparedStatement preparedStatement;
+    private int[] shape;
     private int index = 1;
+    private int fetchSize;
+    private boolean readOnlyForwardOnly;
+    private boolean generatedKeys;
+    private boolean pendingNamedValues;
 
     public StatementBinderImpl(final DatabaseImpl database, final String sql, final Connection connection) {
         this.database = database;
         this.connection = connection;
         this.sql = sql;
+        this.template = null;
+        this.namedValues = null;
+        this.namedTypes = null;
+    }
+
+    public StatementBinderImpl(final DatabaseImpl database, final SqlTemplate template, final Connection connection) {
+        this.database = database;
+        this.connection = connection;
+        this.sql = template.getSql();
+        if (template.hasNamedParameters()) {
+            this.template = template;
+            this.namedValues = new Object[template.getParameterCount()];
+            this.namedTypes = new Class<?>[namedValues.length];
+        } else {
+            this.template = null;
+            this.namedValues = null;
+            this.namedTypes = null;
+        }
     }
 
     @Override
     public StatementBinderImpl withReadOnlyForwardOnlyStatement() {
-        if (preparedStatement == null) {
+        if (preparedStatement == null && template != null) { // statement is created once values are bound
+            readOnlyForwardOnly = true;
+        } else if (preparedStatement == null) {
             try {
-                preparedStatement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                preparedStatement = database.getStatementCache().acquire(
+                        connection, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, PreparedStatement.NO_GENERATED_KEYS);
+                readOnlyForwardOnly = true;
             } catch (final SQLException e) {
                 throw new PersistenceException(e);
             }
-        } else {
+        } else if (!readOnlyForwardOnly) {
             throw new PersistenceException("Statement is already created, ensure to call withReadOnlyForwardOnlyStatement() first on the StatementBinder");
         }
         return this;
     }
 
+    public StatementBinderImpl withGeneratedKeys() {
+        if (preparedStatement != null) {
+            throw new PersistenceException("Statement is already created, ensure to call withGeneratedKeys() first");
+        }
+        generatedKeys = true;
+        return this;
+    }
+
     @Override
     public StatementBinderImpl withFetchSize(final int fetchSize) {
+        if (preparedStatement == null && template != null) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
         try {
             getPreparedStatement().setFetchSize(fetchSize);
         } catch (final SQLException e) {
@@ -63,6 +107,9 @@ public class StatementBinderImpl implements StatementBinder, AutoCloseable {
 
     @Override
     public StatementBinderImpl bind(final Class<?> type, final Object instance) {
+        if (template != null) {
+            throw new PersistenceException("Statement uses named parameters, use bind(name, value): '" + sql + "'");
+        }
         try {
             database.doBind(getPreparedStatement(), index++, instance, type);
         } catch (final SQLException e) {
@@ -71,10 +118,28 @@ public class StatementBinderImpl implements StatementBinder, AutoCloseable {
         return this;
     }
 
+    @Override
+    public StatementBinderImpl bind(final String name, final Class<?> type, final Object instance) {
+        if (template == null) {
+            throw new PersistenceException(database.isNamedParameters() ?
+                    "No named parameter in '" + sql + "'" :
+                    "Named parameters are disabled, enable them with Configuration#setNamedParameters(true)");
+        }
+        final int idx = template.indexOf(name);
+        namedValues[idx] = instance;
+        namedTypes[idx] = type;
+        pendingNamedValues = true;
+        return this;
+    }
+
     public PreparedStatement getPreparedStatement() {
+        if (template != null && (pendingNamedValues || preparedStatement == null)) {
+            bindNamedValues();
+        }
         if (preparedStatement == null) {
             try {
-                preparedStatement = connection.prepareStatement(sql);
+                preparedStatement = database.getStatementCache().acquire(
+                        connection, sql, -1, -1, generatedKeys ? PreparedStatement.RETURN_GENERATED_KEYS : PreparedStatement.NO_GENERATED_KEYS);
             } catch (final SQLException e) {
                 throw new PersistenceException(e);
             }
@@ -82,14 +147,62 @@ public class StatementBinderImpl implements StatementBinder, AutoCloseable {
         return preparedStatement;
     }
 
+    private void bindNamedValues() {
+        final var currentShape = template.shape(namedValues);
+        try {
+            if (preparedStatement == null) {
+                final var expandedSql = template.getSql(currentShape);
+                preparedStatement = readOnlyForwardOnly ?
+                        database.getStatementCache().acquire(
+                                connection, expandedSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, PreparedStatement.NO_GENERATED_KEYS) :
+                        database.getStatementCache().acquire(
+                                connection, expandedSql, -1, -1, generatedKeys ? PreparedStatement.RETURN_GENERATED_KEYS : PreparedStatement.NO_GENERATED_KEYS);
+                if (fetchSize != 0) {
+                    preparedStatement.setFetchSize(fetchSize);
+                }
+                shape = currentShape;
+            } else if (!Arrays.equals(shape, currentShape)) { // batch
+                throw new PersistenceException("Collection parameters must keep the same size bucket in a batch: '" + sql + "'");
+            }
+
+            index = 1;
+            for (final int slot : template.getSlots()) {
+                final var value = namedValues[slot];
+                final int size = shape.length == 0 ? -1 : shape[slot];
+                if (size < 0) {
+                    database.doBind(preparedStatement, index++, value, namedTypes[slot]);
+                } else {
+                    final var values = Collection.class.isInstance(value) ?
+                            Collection.class.cast(value).toArray() : Object[].class.cast(value);
+                    for (int i = 0; i < size; i++) { // pad with the last value to stay in the bucket
+                        final var item = values[Math.min(i, values.length - 1)];
+                        database.doBind(preparedStatement, index++, item, item == null ? Object.class : item.getClass());
+                    }
+                }
+            }
+            pendingNamedValues = false;
+        } catch (final SQLException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    public int getBoundParameters() {
+        if (template != null && pendingNamedValues) {
+            bindNamedValues();
+        }
+        return index - 1;
+    }
+
     public void reset() {
         index = 1;
     }
 
     @Override
     public void close() throws SQLException {
-        if (preparedStatement != null) {
-            preparedStatement.close();
+        if (preparedStatement != null) { // returns it to the cache if enabled
+            final var statement = preparedStatement;
+            preparedStatement = null;
+            database.getStatementCache().release(connection, statement);
         }
     }
 }
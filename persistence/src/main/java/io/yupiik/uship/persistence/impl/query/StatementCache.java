@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.query;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINEST;
+
+/**
+ * Keeps prepared statements open per physical connection to avoid to re-prepare them for each call.
+ * Statements are checked out of the cache while used - so the same statement can't be used twice concurrently
+ * (nested queries on a thread bound connection) - and returned to the cache once released.
+ * <p>
+ * It relies on the fact the physical connection (the one returned by {@code unwrap(Connection.class)})
+ * stays the same when the datasource is a pool (tomcat one for example).
+ * For non pooled datasources the physical connection is closed after each usage so it is cleaned up
+ * on release or by the periodic sweep.
+ */
+public class StatementCache {
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final int maxSize;
+    private final Map<Connection, Statements> caches = new ConcurrentHashMap<>();
+    private final AtomicInteger acquisitions = new AtomicInteger();
+
+    public StatementCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public PreparedStatement acquire(final Connection connection, final String sql,
+                                     final int resultSetType, final int resultSetConcurrency,
+                                     final int autoGeneratedKeys) throws SQLException {
+        if (!isEnabled()) {
+            return prepare(connection, new Key(sql, resultSetType, resultSetConcurrency, autoGeneratedKeys)).statement;
+        }
+        if (acquisitions.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            sweep();
+        }
+
+        final var key = new Key(sql, resultSetType, resultSetConcurrency, autoGeneratedKeys);
+        final var physical = unwrap(connection);
+        final var statements = caches.computeIfAbsent(physical, k -> new Statements(maxSize));
+        final CachedStatement cached;
+        synchronized (statements) {
+            cached = statements.remove(key);
+        }
+        if (cached != null && !cached.statement.isClosed()) {
+            statements.inUse.put(cached.statement, cached);
+            return cached.statement;
+        }
+
+        final var entry = prepare(connection, key);
+        statements.inUse.put(entry.statement, entry);
+        return entry.statement;
+    }
+
+    public void release(final Connection connection, final PreparedStatement statement) throws SQLException {
+        if (!isEnabled()) {
+            statement.close();
+            return;
+        }
+
+        final var physical = unwrap(connection);
+        final var statements = caches.get(physical);
+        final var entry = statements == null ? null : statements.inUse.remove(statement);
+        if (entry == null || statement.isClosed()) {
+            statement.close();
+            return;
+        }
+        if (physical.isClosed()) {
+            caches.remove(physical);
+            statements.closeAll();
+            statement.close();
+            return;
+        }
+
+        try { // ensure next usage does not see previous state
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            if (statement.getFetchSize() != entry.defaultFetchSize) {
+                statement.setFetchSize(entry.defaultFetchSize);
+            }
+        } catch (final SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+
+        final CachedStatement previous;
+        synchronized (statements) {
+            previous = statements.put(entry.key, entry);
+        }
+        if (previous != null && previous.statement != statement) { // same statement used twice in nested calls
+            previous.statement.close();
+        }
+    }
+
+    public void clear() {
+        final var all = new ArrayList<>(caches.values());
+        caches.clear();
+        all.forEach(Statements::closeAll);
+    }
+
+    private void sweep() {
+        caches.entrySet().removeIf(e -> {
+            try {
+                if (e.getKey().isClosed()) {
+                    e.getValue().closeAll();
+                    return true;
+                }
+                return false;
+            } catch (final SQLException ex) {
+                e.getValue().closeAll();
+                return true;
+            }
+        });
+    }
+
+    private CachedStatement prepare(final Connection connection, final Key key) throws SQLException {
+        final PreparedStatement statement;
+        if (key.autoGeneratedKeys != PreparedStatement.NO_GENERATED_KEYS) {
+            statement = connection.prepareStatement(key.sql, key.autoGeneratedKeys);
+        } else if (key.resultSetType >= 0) {
+            statement = connection.prepareStatement(key.sql, key.resultSetType, key.resultSetConcurrency);
+        } else {
+            statement = connection.prepareStatement(key.sql);
+        }
+        return new CachedStatement(key, statement, isEnabled() ? statement.getFetchSize() : 0);
+    }
+
+    private Connection unwrap(final Connection connection) throws SQLException {
+        try {
+            return connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+        } catch (final SQLException | RuntimeException | AbstractMethodError e) { // some proxies don't support it
+            return connection;
+        }
+    }
+
+    private static class Statements extends LinkedHashMap<Key, CachedStatement> {
+        private final int maxSize;
+        private final Map<PreparedStatement, CachedStatement> inUse = new ConcurrentHashMap<>();
+
+        private Statements(final int maxSize) {
+            super(maxSize + 1, 1f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, CachedStatement> eldest) {
+            if (size() > maxSize) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized void closeAll() {
+            values().forEach(CachedStatement::close);
+            clear();
+        }
+    }
+
+    private static class CachedStatement {
+        private final Key key;
+        private final PreparedStatement statement;
+        private final int defaultFetchSize;
+
+        private CachedStatement(final Key key, final PreparedStatement statement, final int defaultFetchSize) {
+            this.key = key;
+            this.statement = statement;
+            this.defaultFetchSize = defaultFetchSize;
+        }
+
+        private void close() {
+            try {
+                statement.close();
+            } catch (final SQLException e) {
+                Logger.getLogger(StatementCache.class.getName()).log(FINEST, e.getMessage(), e);
+            }
+        }
+    }
+
+    private static class Key {
+        private final String sql;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+        private final int autoGeneratedKeys;
+        private final int hash;
+
+        private Key(final String sql, final int resultSetType, final int resultSetConcurrency, final int autoGeneratedKeys) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.hash = Objects.hash(sql, resultSetType, resultSetConcurrency, autoGeneratedKeys);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final var key = (Key) o;
+            return resultSetType == key.resultSetType && resultSetConcurrency == key.resultSetConcurrency &&
+                    autoGeneratedKeys == key.autoGeneratedKeys && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
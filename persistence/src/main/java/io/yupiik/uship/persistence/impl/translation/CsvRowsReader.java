@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.translation;
+
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * Lazily serializes rows as CSV (PostgreSQL {@code COPY ... WITH (FORMAT csv)} flavor):
+ * {@code null} is an empty unquoted value and all other values are quoted.
+ */
+class CsvRowsReader extends Reader {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Iterator<Object[]> rows;
+    private final StringBuilder buffer = new StringBuilder(512);
+    private int position;
+    private long count;
+
+    CsvRowsReader(final Iterator<Object[]> rows) {
+        this.rows = rows;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read(final char[] chars, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int written = 0;
+        while (written < length) {
+            if (position == buffer.length()) {
+                if (!rows.hasNext()) {
+                    break;
+                }
+                buffer.setLength(0);
+                position = 0;
+                appendRow(rows.next());
+                count++;
+            }
+            final int toCopy = Math.min(length - written, buffer.length() - position);
+            buffer.getChars(position, position + toCopy, chars, offset + written);
+            position += toCopy;
+            written += toCopy;
+        }
+        return written == 0 ? -1 : written;
+    }
+
+    @Override
+    public void close() {
+        // no-op
+    }
+
+    private void appendRow(final Object[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            final var value = row[i];
+            if (value != null) {
+                appendQuoted(toString(value));
+            }
+        }
+        buffer.append('\n');
+    }
+
+    private String toString(final Object value) {
+        if (value instanceof byte[]) {
+            final var bytes = (byte[]) value;
+            final var out = new char[2 + bytes.length * 2];
+            out[0] = '\\';
+            out[1] = 'x';
+            for (int i = 0; i < bytes.length; i++) {
+                out[2 + i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+                out[3 + i * 2] = HEX[bytes[i] & 0xF];
+            }
+            return new String(out);
+        }
+        if (value instanceof ZonedDateTime) { // toString adds the zone id which is not understood by the database
+            return ((ZonedDateTime) value).toOffsetDateTime().toString();
+        }
+        if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof Timestamp)) {
+            return new Timestamp(((Date) value).getTime()).toString();
+        }
+        return String.valueOf(value);
+    }
+
+    private void appendQuoted(final String value) {
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+}
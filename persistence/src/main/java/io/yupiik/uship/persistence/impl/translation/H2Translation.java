@@ -25,4 +25,19 @@ public class H2Translation extends DefaultTranslation {
                 return name;
         }
     }
+
+    @Override
+    public int getMaxInListParameters() {
+        return getMultiRowsInsertMaxParameters();
+    }
+
+    @Override
+    public int getMultiRowsInsertMaxParameters() {
+        return 10_000;
+    }
+
+    @Override
+    public boolean supportsRowValueComparison() {
+        return true;
+    }
 }
@@ -15,6 +15,19 @@
  */
 package io.yupiik.uship.persistence.impl.translation;
 
-// TBD
 public class MySQLTranslation extends DefaultTranslation {
+    @Override
+    public int getMaxInListParameters() {
+        return getMultiRowsInsertMaxParameters();
+    }
+
+    @Override
+    public int getMultiRowsInsertMaxParameters() { // what rewriteBatchedStatements would do but without driver setup
+        return 65_535;
+    }
+
+    @Override
+    public String toLimitClause() {
+        return " LIMIT ?";
+    }
 }
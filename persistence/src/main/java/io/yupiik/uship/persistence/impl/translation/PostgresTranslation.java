@@ -15,6 +15,91 @@
  */
 package io.yupiik.uship.persistence.impl.translation;
 
-// TBD
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.Optional.ofNullable;
+
 public class PostgresTranslation extends DefaultTranslation {
+    private volatile CopyApi copyApi;
+
+    @Override
+    public int getMaxInListParameters() {
+        return getMultiRowsInsertMaxParameters();
+    }
+
+    @Override
+    public int getMultiRowsInsertMaxParameters() {
+        return 32_767;
+    }
+
+    @Override
+    public boolean supportsRowValueComparison() {
+        return true;
+    }
+
+    /**
+     * Uses {@code COPY FROM STDIN} when the PostgreSQL driver is available (reflection to avoid a hard dependency).
+     */
+    @Override
+    public long bulkLoad(final Connection connection, final String table, final List<String> columns,
+                         final Iterator<Object[]> rows) throws SQLException {
+        final var api = getCopyApi();
+        if (api == null || !connection.isWrapperFor(api.connectionType)) {
+            return -1;
+        }
+        final var sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)";
+        try {
+            final var manager = api.getCopyApi.invoke(connection.unwrap(api.connectionType));
+            return (long) api.copyIn.invoke(manager, sql, new CsvRowsReader(rows));
+        } catch (final IllegalAccessException e) {
+            throw new SQLException(e);
+        } catch (final InvocationTargetException e) {
+            final var target = e.getTargetException();
+            if (target instanceof SQLException) {
+                throw (SQLException) target;
+            }
+            throw new SQLException(target);
+        }
+    }
+
+    private CopyApi getCopyApi() {
+        if (copyApi == null) {
+            synchronized (this) {
+                if (copyApi == null) {
+                    copyApi = CopyApi.load();
+                }
+            }
+        }
+        return copyApi.connectionType == null ? null : copyApi;
+    }
+
+    private static class CopyApi {
+        private final Class<?> connectionType;
+        private final Method getCopyApi;
+        private final Method copyIn;
+
+        private CopyApi(final Class<?> connectionType, final Method getCopyApi, final Method copyIn) {
+            this.connectionType = connectionType;
+            this.getCopyApi = getCopyApi;
+            this.copyIn = copyIn;
+        }
+
+        private static CopyApi load() {
+            final var loader = ofNullable(Thread.currentThread().getContextClassLoader())
+                    .orElseGet(PostgresTranslation.class::getClassLoader);
+            try {
+                final var connection = loader.loadClass("org.postgresql.PGConnection");
+                final var manager = loader.loadClass("org.postgresql.copy.CopyManager");
+                return new CopyApi(connection, connection.getMethod("getCopyAPI"), manager.getMethod("copyIn", String.class, Reader.class));
+            } catch (final ClassNotFoundException | NoSuchMethodException | NoClassDefFoundError e) {
+                return new CopyApi(null, null, null); // no driver, disabled
+            }
+        }
+    }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.spi;
+
+/**
+ * Called when a {@link io.yupiik.uship.persistence.api.Cacheable} entity is invalidated locally (update/delete).
+ * Enables to broadcast the invalidation to other nodes which will then call
+ * {@link io.yupiik.uship.persistence.api.Database#evict(Class, Object)}.
+ */
+@FunctionalInterface
+public interface CacheInvalidationListener {
+    /**
+     * @param type entity type.
+     * @param id   the invalidated identifier normalized to the database representation of the identifier columns
+     *             (a {@link java.util.List} for composite identifiers), {@code null} when the whole cache is invalidated.
+     */
+    void onInvalidation(Class<?> type, Object id);
+}
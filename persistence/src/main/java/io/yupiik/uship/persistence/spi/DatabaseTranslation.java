@@ -16,6 +16,9 @@
 package io.yupiik.uship.persistence.spi;
 
 import java.lang.annotation.Annotation;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -31,4 +34,56 @@ public interface DatabaseTranslation {
     String toDatabaseType(Class<?> type, Annotation... annotations);
 
     String toCreateTablePrimaryKeySuffix(final List<Map.Entry<String, Annotation[]>> columns);
+
+    /**
+     * @return the clause appended to an ordered query to limit the number of rows to the last bound parameter.
+     */
+    default String toLimitClause() {
+        return " FETCH FIRST ? ROWS ONLY";
+    }
+
+    /**
+     * Used by {@code findAllById} to chunk the identifiers.
+     *
+     * @return the max number of parameters an {@code IN} clause (or its expanded form for composite identifiers) can use.
+     */
+    default int getMaxInListParameters() {
+        return 1_000; // oracle limit
+    }
+
+    /**
+     * Used by keyset pagination and {@code findAllById} on composite identifiers: when {@code true} {@code (a, b) > (?, ?)} is used
+     * else the expanded form {@code (a > ?) OR (a = ? AND b > ?)}.
+     *
+     * @return {@code true} if the database supports (and indexes) row value comparisons.
+     */
+    default boolean supportsRowValueComparison() {
+        return false;
+    }
+
+    /**
+     * Enables {@code batchInsert} to use multi-rows inserts ({@code INSERT INTO t (a, b) VALUES (?, ?), (?, ?), ...})
+     * instead of a JDBC batch of single row inserts.
+     *
+     * @return the max number of bound parameters a statement can use, {@code 0} to disable multi-rows inserts.
+     */
+    default int getMultiRowsInsertMaxParameters() {
+        return 0;
+    }
+
+    /**
+     * Dialect specific bulk load (PostgreSQL {@code COPY} for example), used by {@code batchInsert} when supported.
+     *
+     * @param connection the connection to use.
+     * @param table      the (wrapped) table name.
+     * @param columns    the (wrapped) column names.
+     * @param rows       the values to insert, each array matches {@code columns}.
+     * @return the number of inserted rows or {@code -1} - without consuming {@code rows} - to fall back on the batch insert
+     * (default, or when the connection does not support it).
+     * @throws SQLException if the load fails.
+     */
+    default long bulkLoad(final Connection connection, final String table, final List<String> columns,
+                          final Iterator<Object[]> rows) throws SQLException {
+        return -1;
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.spi;
+
+/**
+ * Execution data of a statement, durations are in nanoseconds.
+ */
+public class QueryEvent {
+    private final String sql;
+    private final Kind kind;
+    private final long connectionAcquisitionDuration;
+    private final long executionDuration;
+    private final long mappingDuration;
+    private final long totalDuration;
+    private final long rows;
+    private final int batchSize;
+    private final boolean failed;
+    private int parameterCount;
+
+    public QueryEvent(final String sql, final Kind kind,
+                      final long connectionAcquisitionDuration, final long executionDuration,
+                      final long mappingDuration, final long totalDuration,
+                      final long rows, final int batchSize, final int parameterCount, final boolean failed) {
+        this.sql = sql;
+        this.kind = kind;
+        this.connectionAcquisitionDuration = connectionAcquisitionDuration;
+        this.executionDuration = executionDuration;
+        this.mappingDuration = mappingDuration;
+        this.totalDuration = totalDuration;
+        this.rows = rows;
+        this.batchSize = batchSize;
+        this.parameterCount = parameterCount;
+        this.failed = failed;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getConnectionAcquisitionDuration() {
+        return connectionAcquisitionDuration;
+    }
+
+    public long getExecutionDuration() {
+        return executionDuration;
+    }
+
+    public long getMappingDuration() {
+        return mappingDuration;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * @return rows returned by a query or updated rows for other statements.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return number of statements for batches, {@code 1} otherwise.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return bound parameters (for batches, of the first statement), computed from the SQL placeholders when not tracked.
+     */
+    public int getParameterCount() {
+        if (parameterCount < 0) {
+            int count = 0;
+            boolean quoted = false;
+            for (int i = 0; i < sql.length(); i++) {
+                final char c = sql.charAt(i);
+                if (c == '\'') {
+                    quoted = !quoted;
+                } else if (c == '?' && !quoted) {
+                    count++;
+                }
+            }
+            parameterCount = count;
+        }
+        return parameterCount;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryEvent[" +
+                "sql='" + sql + '\'' +
+                ", kind=" + kind +
+                ", connectionAcquisitionDuration=" + connectionAcquisitionDuration +
+                ", executionDuration=" + executionDuration +
+                ", mappingDuration=" + mappingDuration +
+                ", totalDuration=" + totalDuration +
+                ", rows=" + rows +
+                ", batchSize=" + batchSize +
+                ", parameterCount=" + getParameterCount() +
+                ", failed=" + failed +
+                ']';
+    }
+
+    public enum Kind {
+        QUERY, STREAM, EXECUTE, BATCH, INSERT, UPDATE, DELETE, FIND_BY_ID
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.spi;
+
+import io.yupiik.uship.persistence.api.SQLFunction;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Selects a read replica for read-only work, routing is explicit: only work declared as read-only
+ * ({@link #read(Supplier)} blocks for a {@code Database}, {@code read(...)} blocks for a {@code TomcatDataSource}) uses replicas.
+ * Replicas are picked with a {@link LoadBalancingPolicy} among the healthy ones, a replica is unhealthy when it failed
+ * to provide a connection recently or when its replication lag (optional probe) is greater than the configured max lag.
+ * When no replica is usable, the caller falls back on the primary.
+ */
+public class ReplicaRouter {
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final List<Replica> replicas;
+    private final ThreadLocal<Boolean> readOnlyScope = new ThreadLocal<>();
+    private LoadBalancingPolicy policy = LoadBalancingPolicy.roundRobin();
+    private SQLFunction<Connection, Long> lagProbe;
+    private long maxLag = 10_000;
+    private long checkInterval = TimeUnit.SECONDS.toNanos(5);
+
+    public ReplicaRouter(final List<DataSource> replicas) {
+        this.replicas = replicas.stream().map(Replica::new).collect(toList());
+    }
+
+    /**
+     * @param policy how to select a replica among the healthy ones, defaults to round robin.
+     * @return this router.
+     */
+    public ReplicaRouter setPolicy(final LoadBalancingPolicy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * @param lagProbe computes the replication lag in milliseconds from a replica connection
+     *                 (for example {@code extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000} on PostgreSQL).
+     * @return this router.
+     */
+    public ReplicaRouter setLagProbe(final SQLFunction<Connection, Long> lagProbe) {
+        this.lagProbe = lagProbe;
+        return this;
+    }
+
+    /**
+     * @param maxLag max accepted replication lag in milliseconds.
+     * @return this router.
+     */
+    public ReplicaRouter setMaxLag(final long maxLag) {
+        this.maxLag = maxLag;
+        return this;
+    }
+
+    /**
+     * @param checkInterval how often (milliseconds) the health of a replica is re-evaluated.
+     * @return this router.
+     */
+    public ReplicaRouter setCheckInterval(final long checkInterval) {
+        this.checkInterval = TimeUnit.MILLISECONDS.toNanos(checkInterval);
+        return this;
+    }
+
+    /**
+     * Executes a task declared read-only: read queries ({@code query}, {@code querySingle}, {@code stream}, {@code findById}, ...)
+     * of a {@code Database} using this router go to a replica during its execution (in the calling thread only).
+     * Writes ({@code execute}, {@code insert}, ...) always use the primary datasource.
+     *
+     * @param task the read-only task.
+     * @param <T>  the result type.
+     * @return the task result.
+     */
+    public <T> T read(final Supplier<T> task) {
+        final var previous = readOnlyScope.get();
+        readOnlyScope.set(true);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                readOnlyScope.remove();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the current thread is executing a {@link #read(Supplier)} block.
+     */
+    public boolean isReadOnlyScope() {
+        return readOnlyScope.get() != null;
+    }
+
+    /**
+     * @return a connection on a healthy replica or {@code null} if none is available (caller should use the primary then).
+     */
+    public Connection getReadConnection() {
+        final var now = System.nanoTime();
+        final var candidates = new ArrayList<DataSource>(replicas.size());
+        for (final var replica : replicas) {
+            if (replica.isHealthy(now)) {
+                candidates.add(replica.dataSource);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            final var selected = candidates.remove(Math.floorMod(policy.select(candidates.size()), candidates.size()));
+            final var replica = find(selected);
+            try {
+                return replica.dataSource.getConnection();
+            } catch (final SQLException | RuntimeException e) {
+                logger.warning(() -> "Can't get a connection on replica " + replica.dataSource + ": " + e.getMessage());
+                replica.markUnhealthy(System.nanoTime());
+            }
+        }
+        return null;
+    }
+
+    private Replica find(final DataSource dataSource) {
+        for (final var replica : replicas) {
+            if (replica.dataSource == dataSource) {
+                return replica;
+            }
+        }
+        throw new IllegalStateException("Unknown replica: " + dataSource);
+    }
+
+    private class Replica {
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+        private volatile long nextCheck = System.nanoTime();
+        private final AtomicInteger checking = new AtomicInteger();
+
+        private Replica(final DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private boolean isHealthy(final long now) {
+            if (now - nextCheck >= 0 && checking.compareAndSet(0, 1)) { // single thread checks, others use last state
+                try {
+                    healthy = check();
+                    nextCheck = now + checkInterval;
+                } finally {
+                    checking.set(0);
+                }
+            }
+            return healthy;
+        }
+
+        private void markUnhealthy(final long now) {
+            healthy = false;
+            nextCheck = now + checkInterval;
+        }
+
+        private boolean check() {
+            if (lagProbe == null) {
+                return true; // unhealthy state expired, retry it
+            }
+            try (final var connection = dataSource.getConnection()) {
+                final var lag = lagProbe.apply(connection);
+                if (lag != null && lag > maxLag) {
+                    logger.warning(() -> "Replica " + dataSource + " lag is " + lag + "ms, disabling it");
+                    return false;
+                }
+                return true;
+            } catch (final SQLException | RuntimeException e) {
+                logger.warning(() -> "Can't check replica " + dataSource + ": " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface LoadBalancingPolicy {
+        /**
+         * @param candidates number of healthy replicas.
+         * @return the index of the replica to use.
+         */
+        int select(int candidates);
+
+        static LoadBalancingPolicy roundRobin() {
+            final var counter = new AtomicInteger();
+            return candidates -> counter.getAndIncrement();
+        }
+
+        static LoadBalancingPolicy random() {
+            return candidates -> ThreadLocalRandom.current().nextInt(candidates);
+        }
+    }
+}
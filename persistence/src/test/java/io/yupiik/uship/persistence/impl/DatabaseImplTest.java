@@ -15,9 +15,15 @@
  */
 package io.yupiik.uship.persistence.impl;
 
+import io.yupiik.uship.persistence.api.Cacheable;
+import io.yupiik.uship.persistence.api.CloseableIterator;
 import io.yupiik.uship.persistence.api.Column;
 import io.yupiik.uship.persistence.api.Database;
 import io.yupiik.uship.persistence.api.Id;
+import io.yupiik.uship.persistence.api.JoinFetch;
+import io.yupiik.uship.persistence.api.PartitionedScan;
+import io.yupiik.uship.persistence.api.PersistenceException;
+import io.yupiik.uship.persistence.api.SQLFunction;
 import io.yupiik.uship.persistence.api.StatementBinder;
 import io.yupiik.uship.persistence.api.Table;
 import io.yupiik.uship.persistence.api.bootstrap.Configuration;
@@ -25,22 +31,50 @@ import io.yupiik.uship.persistence.api.lifecycle.OnInsert;
 import io.yupiik.uship.persistence.api.lifecycle.OnLoad;
 import io.yupiik.uship.persistence.api.operation.Operation;
 import io.yupiik.uship.persistence.api.operation.Statement;
+import io.yupiik.uship.persistence.impl.datasource.PooledDataSource;
+import io.yupiik.uship.persistence.impl.datasource.SimpleDataSource;
+import io.yupiik.uship.persistence.impl.datasource.TransactionContext;
+import io.yupiik.uship.persistence.impl.datasource.tomcat.TomcatDataSource;
+import io.yupiik.uship.persistence.impl.metrics.QueryMetrics;
 import io.yupiik.uship.persistence.impl.test.EnableH2;
 import io.yupiik.uship.persistence.impl.translation.H2Translation;
+import io.yupiik.uship.persistence.spi.QueryEvent;
+import io.yupiik.uship.persistence.spi.ReplicaRouter;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import static io.yupiik.uship.persistence.api.StatementBinder.NONE;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DatabaseImplTest {
@@ -62,6 +96,8 @@ class DatabaseImplTest {
         assertEquals(all.get(0), ops.findOne("test_0"));
         assertEquals(all.get(0), ops.findOneWithPlaceholders("test_0"));
         assertEquals(all.subList(0, 2), ops.findByName(List.of("test_0", "test_1")));
+        assertEquals(all, ops.findByName(List.of("test_0", "test_1", "test_2"))); // padded to 4 parameters
+        assertThrows(PersistenceException.class, () -> ops.findByName(List.of()));
 
         final IntSupplier counter = () -> database.query(MyFlatEntity.class, "select name, id, age from FLAT_ENTITY order by name", StatementBinder.NONE).size();
         assertEquals(1, ops.delete("test_1"), () -> ops.findAll().toString());
@@ -73,6 +109,45 @@ class DatabaseImplTest {
         assertEquals(0, counter.getAsInt(), () -> ops.findAll().toString());
     }
 
+    @Test
+    @EnableH2
+    void namedParameters(final DataSource dataSource) throws SQLException {
+        final var database = init(new Configuration().setDataSource(dataSource).setNamedParameters(true));
+        assertThrows(PersistenceException.class, () -> Database.of(new Configuration().setDataSource(dataSource))
+                .execute("delete from FLAT_ENTITY where name = :name", b -> b.bind("name", "disabled")));
+
+        for (int i = 0; i < 3; i++) {
+            final var instance = new MyFlatEntity();
+            instance.name = "named_" + i;
+            database.insert(instance);
+        }
+
+        final var sql = "select name, id, age from FLAT_ENTITY where name in (:names) and age = :age order by name";
+        assertEquals(
+                List.of("named_0", "named_2"),
+                database.query(MyFlatEntity.class, sql, b -> b.bind("names", List.of("named_0", "named_2")).bind("age", 0)).stream()
+                        .map(it -> it.name)
+                        .collect(toList()));
+        assertEquals(
+                List.of("named_0", "named_1", "named_2"),
+                database.query(MyFlatEntity.class, sql, b -> b.bind("names", List.of("named_0", "named_1", "named_2")).bind("age", 0)).stream()
+                        .map(it -> it.name)
+                        .collect(toList()));
+        assertThrows(PersistenceException.class, () -> database.query(MyFlatEntity.class, sql, b -> b.bind("names", List.of()).bind("age", 0)));
+        assertEquals(1, database.execute("delete from FLAT_ENTITY where name = :name", b -> b.bind("name", "named_1")));
+        assertEquals(2, count(dataSource));
+
+        final var request = new PartitionedScan<>(MyFlatEntity.class)
+                .setColumn("age")
+                .setPartitions(2)
+                .setMin(0)
+                .setMax(2)
+                .setWhere("name in (:names)");
+        try (final var scanned = database.partitionedScan(request, b -> b.bind("names", List.of("named_0", "named_2")))) {
+            assertEquals(List.of("named_0", "named_2"), scanned.map(it -> it.name).sorted().collect(toList()));
+        }
+    }
+
     @Test
     @EnableH2
     void autoincrement(final DataSource dataSource) throws SQLException {
@@ -166,6 +241,32 @@ class DatabaseImplTest {
         assertEquals(entities, all);
     }
 
+    @Test
+    @EnableH2
+    void stream(final DataSource dataSource) throws SQLException {
+        final var database = init(dataSource);
+
+        final var entities = new ArrayList<MyFlatEntity>();
+        for (int i = 0; i < 3; i++) { // seed data
+            final var instance = new MyFlatEntity();
+            instance.name = "test_" + i;
+            database.insert(instance);
+            entities.add(instance);
+        }
+
+        try {
+            try (final var all = database.stream(MyFlatEntity.class, "select name, id, age from FLAT_ENTITY order by name", b -> b.withFetchSize(2))) {
+                assertEquals(entities, all.collect(toList()));
+            }
+            try (final var partial = database.iterate(MyFlatEntity.class, "select name, id, age from FLAT_ENTITY order by name", StatementBinder.NONE)) {
+                assertTrue(partial.hasNext());
+                assertEquals(entities.get(0), partial.next());
+            } // connection is released there even if not fully consumed, H2Extension validates it
+        } finally {
+            entities.forEach(database::delete);
+        }
+    }
+
     @Test
     @EnableH2
     void findWithBinding(final DataSource dataSource) throws SQLException {
@@ -219,6 +320,143 @@ class DatabaseImplTest {
         assertEquals(entities, all);
     }
 
+    @Test
+    @EnableH2
+    void chunkedBatch(final DataSource dataSource) throws SQLException {
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var database = Database.of(new Configuration()
+                    .setDataSource(dataSource)
+                    .setBatchChunkSize(2)
+                    .setBatchPrefetchExecutor(executor));
+            try (final var connection = dataSource.getConnection();
+                 final var stmt = connection.createStatement()) {
+                for (final var sql : database.getOrCreateEntity(MyFlatEntity.class).ddl()) {
+                    stmt.execute(sql);
+                }
+            }
+
+            final var entities = new ArrayList<MyFlatEntity>();
+            for (int i = 0; i < 5; i++) {
+                final var instance = new MyFlatEntity();
+                instance.id = "test_" + i;
+                instance.name = instance.id;
+                entities.add(instance);
+            }
+
+            final var caller = Thread.currentThread();
+            final var chunks = new ArrayList<String>();
+            database.batch(
+                    "insert into FLAT_ENTITY(id, age, name) values(?, ?, ?)",
+                    entities.stream()
+                            .map(it -> (Consumer<StatementBinder>) binder -> {
+                                assertSame(caller, Thread.currentThread());
+                                binder.bind(String.class, it.id);
+                                binder.bind(int.class, it.age);
+                                binder.bind(String.class, it.name);
+                            })
+                            .peek(it -> assertSame(caller, Thread.currentThread())) // iterator is not used by the executor
+                            .iterator(),
+                    chunk -> chunks.add(Arrays.toString(chunk)));
+            assertEquals(List.of("[1, 1]", "[1, 1]", "[1]"), chunks);
+
+            // a failure while a chunk is executed waits for it before releasing the statement
+            final var failing = IntStream.range(0, 4).iterator();
+            assertThrows(IllegalStateException.class, () -> database.batch(
+                    "insert into FLAT_ENTITY(id, age, name) values(?, 0, ?)",
+                    new Iterator<Consumer<StatementBinder>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return failing.hasNext();
+                        }
+
+                        @Override
+                        public Consumer<StatementBinder> next() {
+                            final var id = "failing_" + failing.nextInt();
+                            if (id.equals("failing_2")) {
+                                throw new IllegalStateException("failed");
+                            }
+                            return binder -> binder.bind(id).bind(id);
+                        }
+                    }));
+            assertEquals(7, count(dataSource)); // first chunk was executed (auto-commit)
+            database.execute("delete from FLAT_ENTITY where id like ?", b -> b.bind("failing_%"));
+
+            assertArrayEquals(new int[]{1, 1, 1, 1, 1}, database.batchDelete(MyFlatEntity.class, entities.iterator()));
+            assertEquals(0, count(dataSource));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @EnableH2
+    void multiRowsBatchInsert(final DataSource dataSource) throws SQLException {
+        final var database = Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .setTranslation(new H2Translation() {
+                    @Override
+                    public int getMultiRowsInsertMaxParameters() {
+                        return 6; // 2 rows per statement
+                    }
+                }));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyFlatEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var entities = new ArrayList<MyFlatEntity>();
+        for (int i = 0; i < 5; i++) {
+            final var instance = new MyFlatEntity();
+            instance.name = "test_" + i;
+            instance.age = i;
+            entities.add(instance);
+        }
+
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1}, database.batchInsert(MyFlatEntity.class, entities.iterator()));
+        final var all = database.query(MyFlatEntity.class, "select name, id, age from FLAT_ENTITY order by name", StatementBinder.NONE);
+        entities.forEach(database::delete);
+        assertEquals(entities, all);
+    }
+
+    @Test
+    @EnableH2
+    void batchInsertFallsBackWhenBulkLoadIsNotHandled(final DataSource dataSource) throws SQLException {
+        final var bulkLoads = new AtomicInteger();
+        final var database = Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .setTranslation(new H2Translation() {
+                    @Override
+                    public long bulkLoad(final Connection connection, final String table, final List<String> columns,
+                                         final Iterator<Object[]> rows) throws SQLException {
+                        bulkLoads.incrementAndGet();
+                        return super.bulkLoad(connection, table, columns, rows);
+                    }
+                }));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyFlatEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var entities = new ArrayList<MyFlatEntity>();
+        for (int i = 0; i < 3; i++) {
+            final var instance = new MyFlatEntity();
+            instance.name = "test_" + i;
+            instance.age = i;
+            entities.add(instance);
+        }
+
+        assertArrayEquals(new int[]{1, 1, 1}, database.batchInsert(MyFlatEntity.class, entities.iterator()));
+        assertEquals(1, bulkLoads.get());
+        final var all = database.query(MyFlatEntity.class, "select name, id, age from FLAT_ENTITY order by name", StatementBinder.NONE);
+        entities.forEach(database::delete);
+        assertEquals(entities, all);
+    }
+
     @Test
     @EnableH2
     void querySingle(final DataSource dataSource) throws SQLException {
@@ -305,6 +543,629 @@ class DatabaseImplTest {
         assertEquals(0, count(dataSource));
     }
 
+    @Test
+    @EnableH2
+    void statementCache(final Connection connection) throws SQLException {
+        final var prepared = new AtomicInteger();
+        final var pooled = Connection.class.cast(Proxy.newProxyInstance( // simulates a pool: close does not close the physical connection
+                Thread.currentThread().getContextClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    if ("prepareStatement".equals(method.getName())) {
+                        prepared.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (final InvocationTargetException ite) {
+                        throw ite.getTargetException();
+                    }
+                }));
+        final var dataSource = DataSource.class.cast(Proxy.newProxyInstance(
+                Thread.currentThread().getContextClassLoader(),
+                new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        return pooled;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+        final var database = DatabaseImpl.class.cast(Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .setTranslation(new H2Translation())
+                .setStatementCacheSize(8)));
+        try (final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyFlatEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                final var instance = new MyFlatEntity();
+                instance.name = "test_" + i;
+                database.insert(instance);
+                assertEquals(instance.toString(), database.findById(MyFlatEntity.class, instance.name).toString());
+                database.delete(instance);
+            }
+            assertEquals(3, prepared.get()); // insert, findById, delete, then reused
+        } finally {
+            database.getStatementCache().clear();
+        }
+    }
+
+    @Test
+    @EnableH2
+    void async(final DataSource dataSource) throws Exception {
+        final var database = init(dataSource);
+        final var async = database.async();
+
+        final var instance = new MyFlatEntity();
+        instance.name = "async";
+        async.insert(instance).toCompletableFuture().get();
+
+        final var found = async.findById(MyFlatEntity.class, "async");
+        final var count = async.operation(MyOps.class, MyOps::countAll);
+        assertEquals(instance, found.toCompletableFuture().get());
+        assertEquals(1L, count.toCompletableFuture().get().longValue());
+
+        async.delete(instance).toCompletableFuture().get();
+        assertEquals(0, count(dataSource));
+    }
+
+    @Test
+    void asyncWithThreadBoundDataSource() throws Exception {
+        final var properties = new PoolProperties();
+        properties.setUrl("jdbc:h2:mem:asyncWithThreadBoundDataSource;DB_CLOSE_DELAY=-1");
+        properties.setDriverClassName("org.h2.Driver");
+        final var dataSource = new TomcatDataSource(properties);
+        try {
+            final var database = Database.of(new Configuration().setDataSource(dataSource).setTranslation(new H2Translation()));
+            dataSource.write(connection -> {
+                try (final var stmt = connection.createStatement()) {
+                    for (final var sql : database.getOrCreateEntity(MyFlatEntity.class).ddl()) {
+                        stmt.execute(sql);
+                    }
+                } catch (final SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            });
+            final var async = database.async();
+
+            final var instance = new MyFlatEntity();
+            instance.name = "async";
+            async.insert(instance).toCompletableFuture().get(); // committed by its write block
+
+            assertEquals(instance, async.findById(MyFlatEntity.class, "async").toCompletableFuture().get());
+            assertEquals(1L, async.operation(MyOps.class, MyOps::countAll).toCompletableFuture().get().longValue());
+
+            async.delete(instance).toCompletableFuture().get();
+            assertNull(async.findById(MyFlatEntity.class, "async").toCompletableFuture().get());
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void asyncSubmitsOnlyWithPermits() {
+        final var submitted = new ArrayList<Runnable>();
+        final var async = new AsyncDatabaseImpl(null, submitted::add, 1);
+        final var first = async.submit(db -> {
+            throw new IllegalStateException("failed");
+        }).toCompletableFuture();
+        final var second = async.submit(db -> "second").toCompletableFuture();
+        assertEquals(1, submitted.size()); // second waits for a permit in the caller, not in the executor
+
+        submitted.get(0).run();
+        assertThrows(Exception.class, first::join);
+        assertEquals(2, submitted.size()); // failure released the permit
+
+        submitted.get(1).run();
+        assertEquals("second", second.join());
+    }
+
+    @Test
+    @EnableH2
+    void replicas(final DataSource dataSource, final DataSource replica) throws SQLException {
+        final var replicaConnections = new AtomicInteger();
+        final var countingReplica = DataSource.class.cast(Proxy.newProxyInstance(
+                Thread.currentThread().getContextClassLoader(),
+                new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        replicaConnections.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(replica, args);
+                    } catch (final InvocationTargetException ite) {
+                        throw ite.getTargetException();
+                    }
+                }));
+        final var router = new ReplicaRouter(List.of(countingReplica));
+        final var database = Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .setReplicaRouter(router));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyFlatEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var instance = new MyFlatEntity();
+        instance.name = "replica";
+        database.insert(instance);
+        assertEquals(0, replicaConnections.get());
+
+        assertEquals(instance, database.findById(MyFlatEntity.class, "replica")); // not declared read-only
+        assertEquals(0, replicaConnections.get());
+
+        assertEquals(instance, router.read(() -> database.findById(MyFlatEntity.class, "replica")));
+        assertEquals(List.of(instance), router.read(() -> database.query(MyFlatEntity.class, "select name, id, age from FLAT_ENTITY", NONE)));
+        assertEquals(2, replicaConnections.get());
+        assertTrue(!router.isReadOnlyScope());
+
+        database.delete(instance);
+        assertEquals(2, replicaConnections.get());
+    }
+
+    @Test
+    @EnableH2
+    void pooledDataSource(final DataSource dataSource) throws SQLException {
+        try (final var pool = new PooledDataSource(dataSource, 2)) {
+            final var database = init(pool);
+            for (int i = 0; i < 5; i++) {
+                final var instance = new MyFlatEntity();
+                instance.name = "pooled_" + i;
+                database.insert(instance);
+            }
+            assertEquals(5, count(pool));
+            assertEquals(1, pool.getCreatedCount());
+            assertEquals(1, pool.getIdle());
+            assertEquals(0, pool.getActive());
+
+            // uncommitted work is rolled back and auto-commit restored when the connection is released
+            try (final var connection = pool.getConnection();
+                 final var stmt = connection.createStatement()) {
+                connection.setAutoCommit(false);
+                stmt.executeUpdate("delete from FLAT_ENTITY");
+            }
+            try (final var connection = pool.getConnection()) {
+                assertTrue(connection.getAutoCommit());
+            }
+            assertEquals(5, count(pool));
+            assertEquals(1, pool.getCreatedCount());
+        }
+    }
+
+    @Test
+    @EnableH2
+    void transactionContext(final DataSource dataSource) throws SQLException {
+        final var context = new TransactionContext();
+        assertNull(context.current());
+        try (final var connection = dataSource.getConnection()) {
+            final var result = context.execute(connection, bound -> {
+                assertSame(bound, context.current());
+                assertSame(connection.unwrap(Connection.class), bound.unwrap(Connection.class));
+                bound.close(); // ignored, the context owns the connection
+                assertTrue(!connection.isClosed());
+                return context.execute(connection, nested -> nested != bound && context.current() == nested) &&
+                        context.current() == bound;
+            });
+            assertTrue(result);
+        }
+        assertNull(context.current());
+    }
+
+    @Test
+    @EnableH2
+    void transactionScopes(final DataSource dataSource) throws SQLException {
+        init(dataSource);
+        final var context = new TransactionContext();
+        final var database = Database.of(new Configuration()
+                .setDataSource(contextual(context, dataSource))
+                .setTranslation(new H2Translation()));
+        final var executor = Executors.newSingleThreadExecutor();
+        try (final var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            final var sizes = context.execute(connection, bound -> {
+                final var tx = context.currentTransaction();
+                final SQLFunction<String, Integer> insert = name -> {
+                    try (final var stmt = bound.prepareStatement("insert into FLAT_ENTITY (id, name, age) values (?, ?, 1)")) {
+                        stmt.setString(1, name);
+                        stmt.setString(2, name);
+                        return stmt.executeUpdate();
+                    }
+                };
+                final IntSupplier size = () -> {
+                    try (final var stmt = bound.createStatement();
+                         final var rset = stmt.executeQuery("select count(*) from FLAT_ENTITY")) {
+                        assertTrue(rset.next());
+                        return rset.getInt(1);
+                    } catch (final SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+
+                insert.apply("outer");
+                tx.savepoint(c -> insert.apply("kept"));
+                try {
+                    tx.savepoint(c -> {
+                        insert.apply("failed");
+                        throw new IllegalStateException("rollback to savepoint");
+                    });
+                } catch (final IllegalStateException ise) {
+                    // expected
+                }
+                tx.readOnly(c -> {
+                    insert.apply("read");
+                    assertThrows(PersistenceException.class, () -> tx.savepoint(it -> insert.apply("nested")));
+                    assertThrows(PersistenceException.class, () -> database.execute("delete from FLAT_ENTITY", NONE));
+                    return null;
+                });
+
+                // the continuation runs in another thread but in the same transaction
+                final var asyncSize = CompletableFuture.supplyAsync(size::getAsInt, context.propagating(executor))
+                        .thenApply(it -> context.current() == null ? -1 : it)
+                        .join();
+                final var unbound = CompletableFuture.supplyAsync(context::current, executor).join();
+                assertNull(unbound);
+                return List.of(size.getAsInt(), asyncSize);
+            });
+            assertEquals(List.of(2, 2), sizes);
+            connection.rollback();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertNull(context.current());
+    }
+
+    @Test
+    @EnableH2
+    void joinFetch(final DataSource dataSource) throws SQLException {
+        final var database = init(dataSource);
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyChildEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            final var parent = new MyFlatEntity();
+            parent.name = "parent_" + i;
+            database.insert(parent);
+            for (int j = 0; j < i; j++) {
+                final var child = new MyChildEntity();
+                child.id = parent.name + "_child_" + j;
+                child.parentId = parent.id;
+                child.label = "label_" + j;
+                database.insert(child);
+            }
+        }
+
+        final var children = new LinkedHashMap<String, List<String>>();
+        try (final var parents = database.joinFetch(new JoinFetch<>(MyFlatEntity.class)
+                .join(MyChildEntity.class, "parent_id", (parent, list) -> children.put(parent.id, list.stream()
+                        .map(c -> c.id + '/' + c.parentId + '/' + c.label)
+                        .collect(toList())))
+                .setWhere("p.name like ?"), b -> b.bind("parent_%"))) {
+            assertEquals(List.of("parent_0", "parent_1", "parent_2"), parents.map(p -> p.name).collect(toList()));
+        }
+        assertEquals(Map.of(
+                "parent_0", List.of(),
+                "parent_1", List.of("parent_1_child_0/parent_1/label_0"),
+                "parent_2", List.of("parent_2_child_0/parent_2/label_0", "parent_2_child_1/parent_2/label_1")), children);
+    }
+
+    @Test
+    @EnableH2
+    void mapProjection(final DataSource dataSource) throws SQLException {
+        final var database = init(dataSource);
+        for (int i = 0; i < 2; i++) {
+            final var instance = new MyFlatEntity();
+            instance.name = "map_" + i;
+            instance.age = i;
+            database.insert(instance);
+        }
+        database.execute("update FLAT_ENTITY set name = null where id = ?", b -> b.bind("map_1"));
+
+        final var sql = "select id as \"id\", name as \"name\", age as \"age\" from FLAT_ENTITY order by id";
+        final var rows = database.query(Map.class, sql, StatementBinder.NONE);
+        assertEquals(List.of(
+                Map.of("id", "map_0", "name", "map_0", "age", 0),
+                Map.of("id", "map_1", "age", 1) /* null values are not in the map */), rows);
+        assertThrows(UnsupportedOperationException.class, () -> rows.get(0).put("id", "other"));
+        try (final var stream = database.stream(Map.class, sql, StatementBinder.NONE)) {
+            assertEquals(rows, stream.collect(toList()));
+        }
+    }
+
+    @Test
+    @EnableH2
+    void partitionedScan(final DataSource dataSource) throws SQLException {
+        final var executor = Executors.newFixedThreadPool(2);
+        try {
+            final var database = Database.of(new Configuration().setDataSource(dataSource).setAsyncExecutor(executor));
+            final var table = database.getOrCreateEntity(AutoIncrementEntity.class).getTable();
+            try (final var connection = dataSource.getConnection();
+                 final var stmt = connection.createStatement()) {
+                stmt.executeUpdate("" +
+                        "CREATE TABLE " + table + " " +
+                        "(id INTEGER GENERATED BY DEFAULT AS IDENTITY primary key, name VARCHAR(16))");
+            }
+            for (int i = 0; i < 100; i++) {
+                final var instance = new AutoIncrementEntity();
+                instance.name = i % 10 == 0 ? "skipped" : "test_" + i;
+                database.insert(instance);
+            }
+
+            final var expected = database.query(AutoIncrementEntity.class,
+                    "select id, name from " + table + " where name <> ? order by id", b -> b.bind("skipped"));
+            assertEquals(90, expected.size());
+
+            final var request = new PartitionedScan<>(AutoIncrementEntity.class)
+                    .setPartitions(8)
+                    .setMaxInFlight(2)
+                    .setBufferSize(4)
+                    .setWhere("name <> ?");
+            try (final var ordered = database.partitionedScan(request.setOrdered(true), b -> b.bind("skipped"))) {
+                assertEquals(expected, ordered.collect(toList()));
+            }
+            try (final var unordered = database.partitionedScan(request.setOrdered(false), b -> b.bind("skipped"))) {
+                assertEquals(expected, unordered.sorted(Comparator.comparingLong(e -> e.id)).collect(toList()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void partitionedScanRejectsThreadBoundDataSource() {
+        final var dataSource = new TomcatDataSource(new PoolProperties());
+        try {
+            final var database = Database.of(new Configuration().setDataSource(dataSource).setTranslation(new H2Translation()));
+            final var error = assertThrows(PersistenceException.class, () -> database.partitionedScan(
+                    new PartitionedScan<>(MyFlatEntity.class).setColumn("age").setPartitions(2), NONE));
+            assertTrue(error.getMessage().contains("TomcatDataSource"), error::getMessage);
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    void partitionedScanPropagatesErrors() {
+        final var executor = Executors.newFixedThreadPool(2);
+        try (final var iterator = new PartitionedIterator<>(List.<Supplier<CloseableIterator<String>>>of(() -> {
+            throw new NoClassDefFoundError("missing");
+        }), executor, 2, 4, true)) {
+            final var error = assertTimeoutPreemptively(Duration.ofMinutes(1), () -> assertThrows(Error.class, iterator::hasNext));
+            assertEquals("missing", error.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @EnableH2
+    void metrics(final DataSource dataSource) throws SQLException {
+        final var metrics = new QueryMetrics();
+        final var events = new ArrayList<QueryEvent>();
+        final var database = Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .addQueryListener(metrics)
+                .addQueryListener(events::add));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyFlatEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var instances = new ArrayList<MyFlatEntity>();
+        for (int i = 0; i < 3; i++) {
+            final var instance = new MyFlatEntity();
+            instance.name = "metrics_" + i;
+            instances.add(instance);
+        }
+        database.batchInsert(MyFlatEntity.class, instances.iterator());
+        final var select = "select name, id, age from FLAT_ENTITY where name like ?";
+        for (int i = 0; i < 2; i++) {
+            assertEquals(3, database.query(MyFlatEntity.class, select, b -> b.bind("metrics_%")).size());
+        }
+
+        final var query = events.get(events.size() - 1);
+        assertEquals(QueryEvent.Kind.QUERY, query.getKind());
+        assertEquals(select, query.getSql());
+        assertEquals(3, query.getRows());
+        assertEquals(1, query.getParameterCount());
+        assertTrue(query.getTotalDuration() >= query.getExecutionDuration() + query.getMappingDuration());
+
+        final var snapshot = metrics.snapshot();
+        final var queryStats = snapshot.get(select);
+        assertEquals(2, queryStats.getCount());
+        assertEquals(6, queryStats.getRows());
+        assertEquals(0, queryStats.getFailures());
+        assertEquals(2, Arrays.stream(queryStats.getLatencyHistogram()).sum());
+
+        final var batchStats = snapshot.get(database.getOrCreateEntity(MyFlatEntity.class).getInsertQuery());
+        assertEquals(1, batchStats.getCount());
+        assertEquals(3, batchStats.getStatements());
+        assertEquals(3, batchStats.getRows());
+    }
+
+    @Test
+    @EnableH2
+    void findAllById(final DataSource dataSource) throws SQLException {
+        final var database = init(dataSource);
+        for (int i = 0; i < 5; i++) {
+            final var instance = new MyFlatEntity();
+            instance.name = "bulk_" + i;
+            database.insert(instance);
+        }
+
+        assertEquals(
+                List.of("bulk_0", "bulk_2", "bulk_4"),
+                database.findAllById(MyFlatEntity.class, List.of("bulk_4", "bulk_0", "missing", "bulk_2")).stream()
+                        .map(it -> it.name)
+                        .sorted()
+                        .collect(toList()));
+        assertEquals(List.of(), database.findAllById(MyFlatEntity.class, List.of()));
+
+        final var indexed = database.findAllByIdAsMap(MyFlatEntity.class, List.of("bulk_1", "bulk_3"));
+        assertEquals(2, indexed.size());
+        assertEquals("bulk_3", indexed.get("bulk_3").name);
+
+        assertThrows(PersistenceException.class, () -> database.findAllById(MyNoIdEntity.class, List.of("any")));
+    }
+
+    @Test
+    @EnableH2
+    void findAllByIdKeepsTheQueryFailure(final DataSource dataSource) {
+        final var database = Database.of(new Configuration()
+                .setDataSource(new SimpleDataSource(null, null, null) {
+                    @Override
+                    public Connection getConnection() throws SQLException {
+                        final var connection = dataSource.getConnection();
+                        return Connection.class.cast(Proxy.newProxyInstance(
+                                Thread.currentThread().getContextClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                                    try {
+                                        final var result = method.invoke(connection, args);
+                                        if ("close".equals(method.getName())) {
+                                            throw new SQLException("close failed");
+                                        }
+                                        return result;
+                                    } catch (final InvocationTargetException ite) {
+                                        throw ite.getTargetException();
+                                    }
+                                }));
+                    }
+                })
+                .setTranslation(new H2Translation()));
+
+        // no table so the query fails, then the close fails too
+        final var error = assertThrows(PersistenceException.class, () -> database.findAllById(MyFlatEntity.class, List.of("any")));
+        assertTrue(error.getMessage().contains("FLAT_ENTITY"), error::getMessage);
+        assertEquals(1, error.getSuppressed().length);
+        assertEquals("close failed", error.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    @EnableH2
+    void findAllByCompositeId(final DataSource dataSource) throws SQLException {
+        final var database = Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .setTranslation(new H2Translation() {
+                    @Override
+                    public int getMaxInListParameters() { // 2 identifiers per chunk
+                        return 4;
+                    }
+                }));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyCompositeEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            final var instance = new MyCompositeEntity();
+            instance.tenant = "t" + (i % 2);
+            instance.number = i;
+            instance.label = "composite_" + i;
+            database.insert(instance);
+        }
+
+        // duplicates are in different chunks
+        assertEquals(
+                List.of("composite_0", "composite_1", "composite_2"),
+                database.findAllById(MyCompositeEntity.class, List.of(
+                                new Object[]{"t0", 0}, List.of("t1", 1), new Object[]{"t1", 2}, new Object[]{"t0", 0},
+                                List.of("t0", 2), new Object[]{"t1", 1})).stream()
+                        .map(it -> it.label)
+                        .sorted()
+                        .collect(toList()));
+    }
+
+    @Test
+    @EnableH2
+    void keysetPagination(final DataSource dataSource) throws SQLException {
+        final var database = init(dataSource);
+        for (int i = 0; i < 5; i++) {
+            final var instance = new MyFlatEntity();
+            instance.name = "page_" + i;
+            database.insert(instance);
+        }
+
+        final var first = database.page(MyFlatEntity.class, 2, null);
+        assertEquals(List.of("page_0", "page_1"), first.getItems().stream().map(it -> it.name).collect(toList()));
+        assertTrue(first.hasNext());
+
+        final var second = database.page(MyFlatEntity.class, 2, first.getContinuationToken());
+        assertEquals(List.of("page_2", "page_3"), second.getItems().stream().map(it -> it.name).collect(toList()));
+
+        final var last = database.page(MyFlatEntity.class, 2, second.getContinuationToken());
+        assertEquals(List.of("page_4"), last.getItems().stream().map(it -> it.name).collect(toList()));
+        assertNull(last.getContinuationToken());
+
+        assertEquals(
+                List.of(List.of("page_0", "page_1"), List.of("page_2", "page_3"), List.of("page_4")),
+                database.pages(MyFlatEntity.class, 2)
+                        .map(page -> page.getItems().stream().map(it -> it.name).collect(toList()))
+                        .collect(toList()));
+
+        assertThrows(PersistenceException.class, () -> PageTokens.encode(List.of(new Date())));
+    }
+
+    @Test
+    @EnableH2
+    void lazyPages(final DataSource dataSource) throws SQLException {
+        init(dataSource);
+        final var events = new ArrayList<QueryEvent>();
+        final var database = Database.of(new Configuration().setDataSource(dataSource).addQueryListener(events::add));
+        final var pages = database.pages(MyFlatEntity.class, 2);
+        assertEquals(List.of(), events);
+        assertEquals(1, pages.count());
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    @EnableH2
+    void compositeKeysetPagination(final DataSource dataSource) throws SQLException {
+        for (final boolean rowValues : List.of(true, false)) {
+            final var database = Database.of(new Configuration()
+                    .setDataSource(dataSource)
+                    .setTranslation(new H2Translation() {
+                        @Override
+                        public boolean supportsRowValueComparison() { // else (a > ?) OR (a = ? AND b > ?)
+                            return rowValues;
+                        }
+                    }));
+            try (final var connection = dataSource.getConnection();
+                 final var stmt = connection.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS COMPOSITE_ENTITY");
+                for (final var sql : database.getOrCreateEntity(MyCompositeEntity.class).ddl()) {
+                    stmt.execute(sql);
+                }
+            }
+            for (int i = 0; i < 5; i++) {
+                final var instance = new MyCompositeEntity();
+                instance.tenant = "t" + (i % 2);
+                instance.number = i;
+                instance.label = instance.tenant + "_" + i;
+                database.insert(instance);
+            }
+
+            assertEquals(
+                    List.of(List.of("t0_0", "t0_2"), List.of("t0_4", "t1_1"), List.of("t1_3")),
+                    database.pages(MyCompositeEntity.class, 2)
+                            .map(page -> page.getItems().stream().map(it -> it.label).collect(toList()))
+                            .collect(toList()),
+                    "rowValues=" + rowValues);
+        }
+    }
+
     @Test
     @EnableH2
     void onLoad(final DataSource dataSource) throws SQLException {
@@ -322,8 +1183,130 @@ class DatabaseImplTest {
         database.delete(instance);
     }
 
+    @Test
+    @EnableH2
+    void cache(final DataSource dataSource) throws SQLException {
+        final var invalidations = new ArrayList<String>();
+        final var database = Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .setCacheInvalidationListener((type, id) -> invalidations.add(type.getSimpleName() + ":" + id)));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyCachedEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var instance = new MyCachedEntity();
+        instance.id = "conf";
+        instance.label = "v1";
+        database.insert(instance);
+
+        final var first = database.findById(MyCachedEntity.class, "conf");
+        assertEquals("v1", first.label);
+        assertSame(first, database.findById(MyCachedEntity.class, "conf"));
+
+        // plain SQL is not tracked
+        database.execute("UPDATE CACHED_ENTITY SET label = 'v2'", NONE);
+        assertEquals("v1", database.findById(MyCachedEntity.class, "conf").label);
+        database.evict(MyCachedEntity.class, "conf");
+        assertEquals("v2", database.findById(MyCachedEntity.class, "conf").label);
+        assertEquals(List.of(), invalidations);
+
+        // update through the database invalidates the entry
+        instance.label = "v3";
+        database.update(instance);
+        assertEquals(List.of("MyCachedEntity:conf"), invalidations);
+        assertEquals("v3", database.findById(MyCachedEntity.class, "conf").label);
+
+        database.delete(instance);
+        assertNull(database.findById(MyCachedEntity.class, "conf"));
+        assertEquals(List.of("MyCachedEntity:conf", "MyCachedEntity:conf"), invalidations);
+    }
+
+    @Test
+    @EnableH2
+    void cacheNormalizesIdentifiers(final DataSource dataSource) throws SQLException {
+        final var invalidations = new ArrayList<Object>();
+        final var database = Database.of(new Configuration()
+                .setDataSource(dataSource)
+                .setCacheInvalidationListener((type, id) -> invalidations.add(id)));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyCachedLongIdEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var instance = new MyCachedLongIdEntity();
+        instance.id = 1L;
+        instance.label = "v1";
+        database.insert(instance);
+
+        // int literal, the entity id is a long
+        assertEquals("v1", database.findById(MyCachedLongIdEntity.class, 1).label);
+
+        instance.label = "v2";
+        database.update(instance);
+        assertEquals(List.of(1L), invalidations);
+        assertEquals("v2", database.findById(MyCachedLongIdEntity.class, 1).label);
+        assertSame(database.findById(MyCachedLongIdEntity.class, 1), database.findById(MyCachedLongIdEntity.class, 1L));
+
+        database.execute("UPDATE CACHED_LONG_ID_ENTITY SET label = 'v3'", NONE);
+        database.evict(MyCachedLongIdEntity.class, 1);
+        assertEquals("v3", database.findById(MyCachedLongIdEntity.class, 1L).label);
+    }
+
+    @Test
+    @EnableH2
+    void cacheEvictedOnCommit(final DataSource dataSource) throws SQLException {
+        final var context = new TransactionContext();
+        final var database = Database.of(new Configuration().setDataSource(contextual(context, dataSource)));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(MyCachedEntity.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var instance = new MyCachedEntity();
+        instance.id = "conf";
+        instance.label = "v1";
+        database.insert(instance);
+        assertEquals("v1", database.findById(MyCachedEntity.class, "conf").label);
+
+        try (final var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            context.execute(connection, bound -> {
+                instance.label = "v2";
+                database.update(instance);
+                // another thread re-caches the committed row while the transaction is pending
+                assertEquals("v1", CompletableFuture.supplyAsync(() -> database.findById(MyCachedEntity.class, "conf").label).join());
+                bound.commit();
+                return null;
+            });
+        }
+        assertEquals("v2", database.findById(MyCachedEntity.class, "conf").label);
+    }
+
+    // uses the bound connection if any
+    private DataSource contextual(final TransactionContext context, final DataSource dataSource) {
+        return new SimpleDataSource(null, null, null) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                final var current = context.current();
+                return current != null ? current : dataSource.getConnection();
+            }
+        };
+    }
+
     private Database init(final DataSource dataSource) throws SQLException {
-        final var database = Database.of(new Configuration().setDataSource(dataSource));
+        return init(new Configuration().setDataSource(dataSource));
+    }
+
+    private Database init(final Configuration configuration) throws SQLException {
+        final var dataSource = configuration.getDataSource();
+        final var database = Database.of(configuration);
         final var entity = database.getOrCreateEntity(MyFlatEntity.class);
 
         // ddl
@@ -365,6 +1348,56 @@ class DatabaseImplTest {
         return count(dataSource, "FLAT_ENTITY");
     }
 
+    @Cacheable
+    @Table("CACHED_ENTITY")
+    public static class MyCachedEntity {
+        @Id
+        private String id;
+
+        @Column
+        private String label;
+    }
+
+    @Cacheable
+    @Table("CACHED_LONG_ID_ENTITY")
+    public static class MyCachedLongIdEntity {
+        @Id
+        private long id;
+
+        @Column
+        private String label;
+    }
+
+    @Table("COMPOSITE_ENTITY")
+    public static class MyCompositeEntity {
+        @Id
+        private String tenant;
+
+        @Id(order = 1)
+        private int number;
+
+        @Column
+        private String label;
+    }
+
+    @Table("NO_ID_ENTITY")
+    public static class MyNoIdEntity {
+        @Column
+        private String label;
+    }
+
+    @Table("CHILD_ENTITY")
+    public static class MyChildEntity {
+        @Id
+        private String id;
+
+        @Column(name = "parent_id")
+        private String parentId;
+
+        @Column
+        private String label;
+    }
+
     @Table("FLAT_ENTITY")
     public static class MyFlatEntity {
         @Id
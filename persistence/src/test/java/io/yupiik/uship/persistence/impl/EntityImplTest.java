@@ -19,8 +19,11 @@ import io.yupiik.uship.persistence.api.Column;
 import io.yupiik.uship.persistence.api.Database;
 import io.yupiik.uship.persistence.api.Entity;
 import io.yupiik.uship.persistence.api.Id;
+import io.yupiik.uship.persistence.api.StatementBinder;
 import io.yupiik.uship.persistence.api.Table;
 import io.yupiik.uship.persistence.api.bootstrap.Configuration;
+import io.yupiik.uship.persistence.api.lifecycle.OnInsert;
+import io.yupiik.uship.persistence.api.lifecycle.OnLoad;
 import io.yupiik.uship.persistence.impl.test.EnableH2;
 import org.junit.jupiter.api.Test;
 
@@ -85,6 +88,55 @@ class EntityImplTest {
                         .collect(toList()));
     }
 
+    @Test
+    @EnableH2
+    void mapping(final DataSource dataSource) throws SQLException {
+        final var database = Database.of(new Configuration().setDataSource(dataSource));
+        try (final var connection = dataSource.getConnection();
+             final var stmt = connection.createStatement()) {
+            for (final var sql : database.getOrCreateEntity(WithCallbacks.class).ddl()) {
+                stmt.execute(sql);
+            }
+        }
+
+        final var entity = new WithCallbacks();
+        entity.id = "1";
+        entity.age = 42;
+        database.insert(entity);
+        assertEquals("1", entity.name); // @OnInsert called before the binding
+
+        // columns in another order than the fields, primitive read without boxing and @OnLoad called
+        final var loaded = database.querySingle(WithCallbacks.class, "select name, CB_AGE, id from WITH_CALLBACKS", StatementBinder.NONE).orElseThrow();
+        assertEquals(List.of("1", "1", "42", "true"), List.of(loaded.id, loaded.name, Integer.toString(loaded.age), Boolean.toString(loaded.loaded)));
+
+        database.execute("update WITH_CALLBACKS set CB_AGE = null", StatementBinder.NONE);
+        assertEquals(0, database.findById(WithCallbacks.class, "1").age); // getInt semantic for a null primitive
+    }
+
+    @Table("WITH_CALLBACKS")
+    public static class WithCallbacks {
+        @Id
+        private String id;
+
+        @Column
+        private String name;
+
+        @Column(name = "CB_AGE")
+        private int age;
+
+        private boolean loaded;
+
+        @OnInsert
+        private void onInsert() {
+            name = id;
+        }
+
+        @OnLoad
+        private void onLoad() {
+            loaded = true;
+        }
+    }
+
     @Table("SIMPLE_FLAT_ENTITY")
     public static class SimpleFlatEntity {
         @Id
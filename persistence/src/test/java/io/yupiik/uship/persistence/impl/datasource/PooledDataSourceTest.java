@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.datasource;
+
+import io.yupiik.uship.persistence.impl.test.EnableH2;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledDataSourceTest {
+    @Test
+    @EnableH2
+    void releasedConnectionIsUnusable(final DataSource dataSource) throws SQLException {
+        try (final var pool = new PooledDataSource(dataSource, 1)) {
+            final var connection = pool.getConnection();
+            connection.close();
+            assertTrue(connection.isClosed());
+            assertThrows(SQLException.class, connection::createStatement);
+            assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+            assertThrows(SQLException.class, connection::commit);
+            assertThrows(SQLClientInfoException.class, () -> connection.setClientInfo("ApplicationName", "test"));
+
+            try (final var reused = pool.getConnection()) { // same physical connection, still usable
+                assertTrue(reused.isValid(1));
+            }
+            assertEquals(1, pool.getCreatedCount());
+        }
+    }
+
+    @Test
+    @EnableH2
+    void maxWait(final DataSource dataSource) throws SQLException {
+        try (final var pool = new PooledDataSource(dataSource, 1).setMaxWait(100)) {
+            try (final var connection = pool.getConnection()) {
+                final var start = System.nanoTime();
+                assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+                assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 100);
+                assertEquals(1, pool.getTimeoutCount());
+            }
+            try (final var connection = pool.getConnection()) { // released so available again
+                assertTrue(connection.isValid(1));
+            }
+        }
+    }
+
+    @Test
+    @EnableH2
+    void concurrentBorrows(final DataSource dataSource) {
+        final var executor = Executors.newFixedThreadPool(8);
+        try (final var pool = new PooledDataSource(dataSource, 2)) {
+            final var tasks = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        try (final var connection = pool.getConnection();
+                             final var stmt = connection.createStatement();
+                             final var rset = stmt.executeQuery("select 1")) {
+                            assertTrue(rset.next());
+                            assertTrue(pool.getActive() <= 2);
+                        } catch (final SQLException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }, executor));
+            }
+            assertTimeoutPreemptively(Duration.ofMinutes(1), () -> CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).get());
+            assertEquals(400, pool.getBorrowedCount());
+            assertTrue(pool.getCreatedCount() <= 2, () -> Long.toString(pool.getCreatedCount()));
+            assertEquals(0, pool.getActive());
+            assertEquals(0, pool.getTimeoutCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @EnableH2
+    void validation(final DataSource dataSource) throws SQLException {
+        try (final var pool = new PooledDataSource(dataSource, 1).setValidationInterval(0)) {
+            try (final var connection = pool.getConnection()) {
+                DelegatingConnection.class.cast(connection).getDelegate().close(); // broken physical connection
+            }
+            try (final var connection = pool.getConnection()) {
+                assertTrue(connection.isValid(1));
+            }
+            assertEquals(2, pool.getCreatedCount());
+            assertEquals(1, pool.getDestroyedCount());
+        }
+    }
+
+    @Test
+    @EnableH2
+    void eviction(final DataSource dataSource) throws SQLException, InterruptedException {
+        try (final var pool = new PooledDataSource(dataSource, 4).setIdleTimeout(1)) {
+            pool.getConnection().close();
+            assertEquals(1, pool.getIdle());
+            Thread.sleep(10);
+            pool.evict();
+            assertEquals(0, pool.getSize());
+            assertEquals(1, pool.getDestroyedCount());
+
+            pool.setMinIdle(2).evict();
+            assertEquals(2, pool.getIdle());
+        }
+    }
+
+    @Test
+    @EnableH2
+    void evictionExecutor(final DataSource dataSource) throws SQLException {
+        final var evictions = new ArrayList<Runnable>();
+        try (final var pool = new PooledDataSource(dataSource, 4)
+                .setMinIdle(2)
+                .setEvictionInterval(0)
+                .setEvictionExecutor(evictions::add)) {
+            pool.getConnection().close();
+            assertEquals(1, pool.getSize()); // minIdle is not filled by the caller thread
+            assertTrue(!evictions.isEmpty());
+
+            evictions.get(0).run();
+            assertEquals(2, pool.getSize());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.query;
+
+import io.yupiik.uship.persistence.api.PersistenceException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlTemplateTest {
+    @Test
+    void parse() {
+        final var template = SqlTemplate.parse("select * from t where a = :a and b in (:b) or c = :a");
+        assertTrue(template.hasNamedParameters());
+        assertEquals("select * from t where a = ? and b in (?) or c = ?", template.getSql());
+        assertEquals(2, template.getParameterCount());
+        assertEquals(0, template.indexOf("a"));
+        assertEquals(1, template.indexOf("b"));
+        assertArrayEquals(new int[]{0, 1, 0}, template.getSlots());
+        assertThrows(PersistenceException.class, () -> template.indexOf("missing"));
+    }
+
+    @Test
+    void ignoredColons() {
+        for (final var sql : List.of(
+                "select ':a', \":b\", `:c` from t",
+                "select a::text from t",
+                "select arr[1:n] from t",
+                "select 1 -- :a\nfrom t",
+                "select 1 /* :a */ from t",
+                "create function f() returns void as $$ begin perform :a; end $$ language plpgsql",
+                "create function f() returns void as $body$ begin perform :a; end $body$ language plpgsql")) {
+            final var template = SqlTemplate.parse(sql);
+            assertFalse(template.hasNamedParameters(), sql);
+            assertEquals(sql, template.getSql());
+        }
+    }
+
+    @Test
+    void positional() {
+        final var template = SqlTemplate.positional("select * from t where a = :a");
+        assertFalse(template.hasNamedParameters());
+        assertEquals("select * from t where a = :a", template.getSql());
+    }
+
+    @Test
+    void expand() {
+        final var template = SqlTemplate.parse("select * from t where a = :a and b in (:b)");
+        final var shape = template.shape(new Object[]{1, List.of(1, 2, 3)});
+        assertArrayEquals(new int[]{-1, 4}, shape);
+        assertEquals("select * from t where a = ? and b in (?, ?, ?, ?)", template.getSql(shape));
+        assertEquals("select * from t where a = ? and b in (?, ?)", template.getSql(template.shape(new Object[]{1, new Object[]{1, 2}})));
+        assertEquals(template.getSql(), template.getSql(template.shape(new Object[]{1, 2})));
+    }
+
+    @Test
+    void emptyCollection() {
+        final var template = SqlTemplate.parse("select * from t where b not in (:b)");
+        final var error = assertThrows(PersistenceException.class, () -> template.shape(new Object[]{List.of()}));
+        assertTrue(error.getMessage().contains("'b'"), error.getMessage());
+    }
+
+    @Test
+    void bucket() {
+        assertEquals(1, SqlTemplate.bucket(1));
+        assertEquals(2, SqlTemplate.bucket(2));
+        assertEquals(4, SqlTemplate.bucket(3));
+        assertEquals(8, SqlTemplate.bucket(5));
+        assertEquals(8, SqlTemplate.bucket(8));
+    }
+}
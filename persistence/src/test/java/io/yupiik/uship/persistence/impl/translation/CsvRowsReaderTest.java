@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2021-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.uship.persistence.impl.translation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvRowsReaderTest {
+    @Test
+    void nullAndEmpty() throws IOException {
+        assertEquals(",\"\",\"a\"\n", csv(new Object[]{null, "", "a"}));
+    }
+
+    @Test
+    void quotesAndNewLines() throws IOException {
+        assertEquals("\"say \"\"hi\"\"\",\"line1\nline2\",\"a,b\"\n", csv(new Object[]{"say \"hi\"", "line1\nline2", "a,b"}));
+    }
+
+    @Test
+    void bytes() throws IOException {
+        assertEquals("\"\\x00ff10\",\"\\x\"\n", csv(new Object[]{new byte[]{0, (byte) 0xFF, 0x10}, new byte[0]}));
+    }
+
+    @Test
+    void dates() throws IOException {
+        final var zoned = ZonedDateTime.of(2024, 1, 2, 3, 4, 5, 0, ZoneId.of("Europe/Paris"));
+        final var date = Date.from(LocalDateTime.of(2024, 1, 2, 3, 4, 5).atZone(ZoneId.systemDefault()).toInstant());
+        assertEquals("\"2024-01-02T03:04:05+01:00\",\"2024-01-02 03:04:05.0\"\n", csv(new Object[]{zoned, date}));
+    }
+
+    @Test
+    void rows() throws IOException {
+        final var reader = new CsvRowsReader(List.of(new Object[]{1, "a"}, new Object[]{2, "b"}).iterator());
+        final var out = new StringWriter();
+        final var chunk = new char[3]; // smaller than a row
+        int read;
+        while ((read = reader.read(chunk, 0, chunk.length)) >= 0) {
+            out.write(chunk, 0, read);
+        }
+        assertEquals("\"1\",\"a\"\n\"2\",\"b\"\n", out.toString());
+        assertEquals(2, reader.getCount());
+    }
+
+    private String csv(final Object[] row) throws IOException {
+        final var out = new StringWriter();
+        try (final var reader = new CsvRowsReader(List.<Object[]>of(row).iterator())) {
+            reader.transferTo(out);
+        }
+        return out.toString();
+    }
+}